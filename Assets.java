@@ -0,0 +1,125 @@
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.net.URL;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.imageio.ImageIO;
+
+/**
+ * The game's images, loaded once and shared by every {@link GameGUI} and every restart.
+ * <P>
+ * {@link #preload()} starts reading all images in parallel on background threads, so the window
+ * can be built while they load; the getters wait only for an image that is not ready yet. Each
+ * image is looked up as a file in the working directory first, then on the classpath (e.g. inside
+ * a jar), converted to the screen's pixel format and scaled once to the size it is drawn.
+ */
+public class Assets
+{
+    /** Size the player is drawn at. */
+    public static final int PLAYER_SIZE = 40;
+
+    private static CompletableFuture<BufferedImage> grid;
+    private static CompletableFuture<BufferedImage> coin;
+    private static CompletableFuture<BufferedImage> player;
+
+    private Assets()
+    {
+    }
+
+    /**
+     * Start loading every image in the background. Safe to call more than once.
+     */
+    public static synchronized void preload()
+    {
+        if (grid != null) return;
+        ExecutorService loader = Executors.newFixedThreadPool(3, r -> {
+            Thread t = new Thread(r, "asset-loader");
+            t.setDaemon(true);
+            return t;
+        });
+        grid = CompletableFuture.supplyAsync(() -> load("grid.png", 0), loader);
+        coin = CompletableFuture.supplyAsync(() -> load("coin.png", 0), loader);
+        // player image, student can customize this image by changing file on disk
+        player = CompletableFuture.supplyAsync(() -> load("player.png", PLAYER_SIZE), loader);
+        loader.shutdown();
+    }
+
+    /** @return the background grid, or null if it could not be loaded */
+    public static BufferedImage grid()
+    {
+        preload();
+        return grid.join();
+    }
+
+    /** @return the prize image, or null if it could not be loaded */
+    public static BufferedImage coin()
+    {
+        preload();
+        return coin.join();
+    }
+
+    /** @return the player image scaled to PLAYER_SIZE, or null if it could not be loaded */
+    public static BufferedImage player()
+    {
+        preload();
+        return player.join();
+    }
+
+    /*
+     * Read an image from a file or the classpath, scaled to size x size unless size is 0
+     */
+    private static BufferedImage load(String name, int size)
+    {
+        try
+        {
+            BufferedImage image;
+            File file = new File(name);
+            if (file.isFile())
+            {
+                image = ImageIO.read(file);
+            }
+            else
+            {
+                URL resource = Assets.class.getResource("/" + name);
+                image = resource == null ? null : ImageIO.read(resource);
+            }
+            if (image == null)
+            {
+                System.err.println("Could not open file " + name);
+                return null;
+            }
+            return prepare(image, size == 0 ? image.getWidth() : size, size == 0 ? image.getHeight() : size);
+        }
+        catch (Exception e)
+        {
+            System.err.println("Could not open file " + name);
+            return null;
+        }
+    }
+
+    /*
+     * Copy the image into the screen's pixel format at the given size, so drawing it needs no conversion or scaling
+     */
+    private static BufferedImage prepare(BufferedImage image, int width, int height)
+    {
+        BufferedImage prepared;
+        if (GraphicsEnvironment.isHeadless())
+        {
+            prepared = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        }
+        else
+        {
+            GraphicsConfiguration gc = GraphicsEnvironment.getLocalGraphicsEnvironment()
+                    .getDefaultScreenDevice().getDefaultConfiguration();
+            prepared = gc.createCompatibleImage(width, height, image.getTransparency());
+        }
+        Graphics2D g = prepared.createGraphics();
+        g.drawImage(image, 0, 0, width, height, null);
+        g.dispose();
+        return prepared;
+    }
+}
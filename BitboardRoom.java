@@ -0,0 +1,106 @@
+/**
+ * The room of the normal game: the {@link Board} of bitmasks generated by {@link BoardGenerator},
+ * with the traps and prizes still live in two more masks, so every lookup is a single bit test.
+ * The solver, packed sessions and journals read these masks straight from here.
+ */
+public final class BitboardRoom implements Room
+{
+    final Board board = new Board();
+    long liveTraps;  // traps not yet sprung or removed
+    long livePrizes; // prizes not yet picked up
+
+    @Override
+    public int getWidth()
+    {
+        return Board.COLS;
+    }
+
+    @Override
+    public int getHeight()
+    {
+        return Board.ROWS;
+    }
+
+    @Override
+    public void generate(long seed, int walls, int traps, int prizes)
+    {
+        BoardGenerator.generate(board, seed, walls, traps, prizes);
+        restore();
+    }
+
+    @Override
+    public long getSeed()
+    {
+        return board.getSeed();
+    }
+
+    @Override
+    public void restore()
+    {
+        liveTraps = board.traps;
+        livePrizes = board.prizes;
+    }
+
+    @Override
+    public boolean isRestored()
+    {
+        return liveTraps == board.traps && livePrizes == board.prizes;
+    }
+
+    @Override
+    public long sweep(int cell, int dir, int cells)
+    {
+        int sweep = board.sweep(cell, dir, cells);
+        return (long)Board.stopReason(sweep) << 32 | Board.stopCell(sweep);
+    }
+
+    @Override
+    public boolean isLiveTrap(int cell)
+    {
+        return (liveTraps >>> cell & 1) != 0;
+    }
+
+    @Override
+    public boolean removeTrap(int cell)
+    {
+        long bit = 1L << cell;
+        if ((liveTraps & bit) == 0) return false;
+        liveTraps &= ~bit;
+        return true;
+    }
+
+    @Override
+    public boolean removePrize(int cell)
+    {
+        long bit = 1L << cell;
+        if ((livePrizes & bit) == 0) return false;
+        livePrizes &= ~bit;
+        return true;
+    }
+
+    @Override
+    public int adjacentTraps(int cell)
+    {
+        return Board.adjacent(cell, liveTraps);
+    }
+
+    /** The whole room is one viewport, so col and row are always 0. */
+    @Override
+    public void viewport(int col, int row, Board dst)
+    {
+        dst.setWalls(board.wallsRight, board.wallsDown);
+        dst.traps = liveTraps;
+        dst.prizes = livePrizes;
+        dst.seed = board.seed;
+    }
+
+    /**
+     * Make this room a copy of another: same layout, same live traps and prizes.
+     */
+    void copyFrom(BitboardRoom other)
+    {
+        board.copyFrom(other.board);
+        liveTraps = other.liveTraps;
+        livePrizes = other.livePrizes;
+    }
+}
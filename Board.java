@@ -0,0 +1,330 @@
+/**
+ * The layout of an escape room stored as bitboards.
+ * The board is only {@value #COLS} x {@value #ROWS} cells, so every layer (traps, prizes,
+ * wall edges) fits in a single <code>long</code> with one bit per cell. Cell
+ * <code>c</code> is bit <code>c</code>, where <code>c = row * COLS + col</code>.
+ * <P>
+ * A Board only describes where things are; which traps have been sprung and which prizes
+ * have been picked up is tracked by {@link GameEngine}.
+ * <P>
+ * When a layout is finished, {@link #compile()} turns the walls into one blocked-edge mask per
+ * direction, so {@link #sweep(int, int, int)} can resolve a move of any length with one bit
+ * test per cell crossed, however many walls the board has.
+ */
+public class Board
+{
+    public static final int COLS = GameEngine.GRID_W;
+    public static final int ROWS = GameEngine.GRID_H;
+    public static final int CELLS = COLS * ROWS;
+
+    /** every cell of the board */
+    public static final long ALL_CELLS = (1L << CELLS) - 1;
+
+    // directions, in the order find and check report them
+    public static final int RIGHT = 0;
+    public static final int LEFT = 1;
+    public static final int UP = 2;
+    public static final int DOWN = 3;
+
+    // reasons a sweep stopped
+    public static final int CLEAR = 0;
+    public static final int WALL = 1;
+    public static final int OFF_GRID = 2;
+
+    // cell index change of one step in each direction
+    private static final int[] STEP = { 1, -1, -COLS, COLS };
+
+    private static final long FIRST_COL = firstColumn();
+    private static final long LAST_COL = FIRST_COL << (COLS - 1);
+
+    // layout layers, one bit per cell
+    long traps;
+    long prizes;
+    long wallsRight; // wall on the right edge of the cell
+    long wallsDown;  // wall on the bottom edge of the cell
+
+    // cells whose edge in each direction has a wall, built by compile()
+    private final long[] blocked = new long[4];
+
+    // changes every time a layout is compiled
+    private int version;
+
+    // the seed the layout was generated from, see BoardGenerator
+    long seed;
+
+    /**
+     * @return the cell index of the given column and row
+     */
+    public static int cell(int col, int row)
+    {
+        return row * COLS + col;
+    }
+
+    /**
+     * @return the column of the given cell
+     */
+    public static int col(int cell)
+    {
+        return cell % COLS;
+    }
+
+    /**
+     * @return the row of the given cell
+     */
+    public static int row(int cell)
+    {
+        return cell / COLS;
+    }
+
+    /**
+     * @return true if the column and row are on the board
+     */
+    public static boolean onBoard(int col, int row)
+    {
+        return col >= 0 && col < COLS && row >= 0 && row < ROWS;
+    }
+
+    /**
+     * @return the cell one step from the given cell in the direction, which may be off the board
+     */
+    public static int neighbor(int cell, int dir)
+    {
+        return cell + STEP[dir];
+    }
+
+    /**
+     * @return how many steps the cell can move in the direction before leaving the board
+     */
+    public static int distanceToEdge(int cell, int dir)
+    {
+        switch (dir)
+        {
+            case RIGHT: return COLS - 1 - col(cell);
+            case LEFT:  return col(cell);
+            case UP:    return row(cell);
+            default:    return ROWS - 1 - row(cell);
+        }
+    }
+
+    /**
+     * @return true if a wall is on the edge of the cell in the direction
+     */
+    public boolean isBlocked(int cell, int dir)
+    {
+        return (blocked[dir] & (1L << cell)) != 0;
+    }
+
+    /**
+     * Resolve a straight move of several cells in one pass.
+     * <P>
+     * The reason is OFF_GRID if the destination is off the board, otherwise WALL if a wall is
+     * crossed on the way, otherwise CLEAR. The stop cell is the farthest cell reachable before
+     * the first wall or the edge of the board, which is the destination when the path is clear.
+     * <P>
+     * @param cell the starting cell
+     * @param dir the direction to move
+     * @param cells how many cells to move
+     * @return the packed result, read it with {@link #stopCell(int)}, {@link #cellsMoved(int)} and {@link #stopReason(int)}
+     */
+    public int sweep(int cell, int dir, int cells)
+    {
+        int edge = distanceToEdge(cell, dir);
+        int reach = Math.min(cells, edge);
+        long walls = blocked[dir];
+        int step = STEP[dir];
+        int moved = 0;
+        int reason = cells > edge ? OFF_GRID : CLEAR;
+        while (moved < reach)
+        {
+            if ((walls & (1L << cell)) != 0)
+            {
+                if (reason == CLEAR) reason = WALL;
+                break;
+            }
+            cell += step;
+            moved++;
+        }
+        return (reason << 16) | (moved << 8) | cell;
+    }
+
+    /** @return the cell a sweep stopped on */
+    public static int stopCell(int sweep)
+    {
+        return sweep & 0xFF;
+    }
+
+    /** @return how many cells a sweep moved */
+    public static int cellsMoved(int sweep)
+    {
+        return (sweep >> 8) & 0xFF;
+    }
+
+    /** @return why a sweep stopped: CLEAR, WALL or OFF_GRID */
+    public static int stopReason(int sweep)
+    {
+        return sweep >> 16;
+    }
+
+    /**
+     * @return a number that changes whenever a new layout is compiled, so renderers can tell when to redraw
+     */
+    public int getVersion()
+    {
+        return version;
+    }
+
+    /**
+     * Every cell the player can walk to from a cell. Traps do not block, walls and the edge of the board do.
+     * The search floods all directions at once with shifts of the blocked-edge masks.
+     * <P>
+     * @param from the starting cell
+     * @return the reachable cells, including the starting cell
+     */
+    public long reachable(int from)
+    {
+        return reachable(from, 0);
+    }
+
+    /**
+     * Every cell the player can walk to from a cell without entering any of the avoided cells.
+     * <P>
+     * @param from the starting cell
+     * @param avoid cells the walk may not enter
+     * @return the reachable cells, including the starting cell
+     */
+    public long reachable(int from, long avoid)
+    {
+        long open = ALL_CELLS & ~avoid;
+        long reach = 1L << from;
+        long last = 0;
+        while (reach != last)
+        {
+            last = reach;
+            reach |= step(last) & open;
+        }
+        return reach;
+    }
+
+    /**
+     * @return the cells one step from any of the given cells, without crossing a wall or leaving the board
+     */
+    public long step(long cells)
+    {
+        return (cells & ~blocked[RIGHT] & ~LAST_COL) << 1
+             | (cells & ~blocked[LEFT] & ~FIRST_COL) >>> 1
+             | ((cells & ~blocked[DOWN]) << COLS | (cells & ~blocked[UP]) >>> COLS) & ALL_CELLS;
+    }
+
+    /**
+     * The directions in which the cell's neighbours are among the given cells, walls or not, e.g.
+     * the traps next to the player. Costs a few shifts however many cells are given.
+     * <P>
+     * @return a mask with bit RIGHT, LEFT, UP or DOWN set for each such neighbour
+     */
+    public static int adjacent(int cell, long cells)
+    {
+        return (int)((cells & ~FIRST_COL) >>> 1 >>> cell & 1) << RIGHT
+             | (int)((cells & ~LAST_COL) << 1 >>> cell & 1) << LEFT
+             | (int)(cells << COLS >>> cell & 1) << UP
+             | (int)(cells >>> COLS >>> cell & 1) << DOWN;
+    }
+
+    /**
+     * @return the cells next to any of the given cells, walls or not
+     */
+    public static long neighbors(long cells)
+    {
+        return (cells & ~LAST_COL) << 1 | (cells & ~FIRST_COL) >>> 1 | (cells << COLS | cells >>> COLS) & ALL_CELLS;
+    }
+
+    /**
+     * @return the seed this layout was generated from
+     */
+    public long getSeed()
+    {
+        return seed;
+    }
+
+    /** @return the cells holding a trap */
+    public long getTraps()
+    {
+        return traps;
+    }
+
+    /** @return the cells holding a prize */
+    public long getPrizes()
+    {
+        return prizes;
+    }
+
+    /** @return the cells with a wall along their right edge */
+    public long getWallsRight()
+    {
+        return wallsRight;
+    }
+
+    /** @return the cells with a wall along their bottom edge */
+    public long getWallsDown()
+    {
+        return wallsDown;
+    }
+
+    /**
+     * Remove everything from the board.
+     */
+    void clear()
+    {
+        traps = 0;
+        prizes = 0;
+        wallsRight = 0;
+        wallsDown = 0;
+        compile();
+    }
+
+    /**
+     * Make this board a copy of another layout.
+     */
+    void copyFrom(Board other)
+    {
+        traps = other.traps;
+        prizes = other.prizes;
+        wallsRight = other.wallsRight;
+        wallsDown = other.wallsDown;
+        seed = other.seed;
+        compile();
+    }
+
+    /**
+     * Build the blocked-edge masks from the walls. Must be called after the walls change.
+     * A wall on the right edge of a cell also blocks the left edge of its neighbor, and a
+     * wall on the bottom edge also blocks the top edge of the cell below.
+     */
+    void compile()
+    {
+        blocked[RIGHT] = wallsRight;
+        blocked[LEFT] = (wallsRight << 1) & ~FIRST_COL & ALL_CELLS;
+        blocked[DOWN] = wallsDown;
+        blocked[UP] = (wallsDown << COLS) & ALL_CELLS;
+        version++;
+    }
+
+    /**
+     * Set the walls and compile them, unless they are the walls the board already has, so the
+     * version only changes when the walls do.
+     */
+    void setWalls(long right, long down)
+    {
+        if (version != 0 && right == wallsRight && down == wallsDown) return;
+        wallsRight = right;
+        wallsDown = down;
+        compile();
+    }
+
+    private static long firstColumn()
+    {
+        long mask = 0;
+        for (int row = 0; row < ROWS; row++)
+            mask |= 1L << cell(0, row);
+        return mask;
+    }
+}
@@ -0,0 +1,153 @@
+/**
+ * Generates random board layouts that can always be won.
+ * <P>
+ * A layout is fully determined by its seed, so a board can be reproduced from {@link Board#getSeed()}.
+ * Generation is generate-and-test: a layout is rejected and drawn again when a wall blocks the path
+ * from the start to either finish cell or to a prize. The test is a flood fill over the bitboards,
+ * so thousands of boards can be checked per millisecond.
+ */
+public class BoardGenerator
+{
+    /** Layouts drawn before walls are removed from the last one to open it up. */
+    public static final int MAX_ATTEMPTS = 1000;
+
+    // the finish is top-right or bottom-right and changes on replay, so both must be reachable
+    private static final long FINISH_CELLS = (1L << Board.cell(Board.COLS - 1, 0))
+                                           | (1L << Board.cell(Board.COLS - 1, Board.ROWS - 1));
+
+    // the random stream of the board being generated on each thread, reused from board to board
+    private static final ThreadLocal<SplitMix> RANDOM = ThreadLocal.withInitial(SplitMix::new);
+
+    private BoardGenerator()
+    {
+    }
+
+    /**
+     * Fill a board with a random solvable layout.
+     * <P>
+     * @param board the board to fill
+     * @param seed the seed of the layout
+     * @param walls number of walls to place; overlapping walls count once
+     * @param traps number of traps, each on its own cell
+     * @param prizes number of prizes, each on its own cell
+     * @return how many layouts were drawn
+     */
+    public static int generate(Board board, long seed, int walls, int traps, int prizes)
+    {
+        SplitMix rand = RANDOM.get();
+        rand.state = seed;
+        board.seed = seed;
+        for (int attempt = 1; ; attempt++)
+        {
+            board.clear();
+            board.traps = randomCells(traps, rand);
+            board.prizes = randomCells(prizes, rand);
+            addWalls(board, walls, rand);
+            board.compile();
+            if (isSolvable(board)) return attempt;
+            if (attempt == MAX_ATTEMPTS)
+            {
+                openUp(board);
+                return attempt;
+            }
+        }
+    }
+
+    /**
+     * @return true if the player can walk from the start to both finish cells and every prize
+     */
+    public static boolean isSolvable(Board board)
+    {
+        long required = FINISH_CELLS | board.prizes;
+        return (board.reachable(GameEngine.START_CELL) & required) == required;
+    }
+
+    /*
+     * Pick count distinct random cells
+     */
+    private static long randomCells(int count, SplitMix rand)
+    {
+        long cells = 0;
+        for (int n = 0; n < count && n < Board.CELLS; n++)
+        {
+            long cell;
+            do
+            {
+                int h = rand.nextInt(Board.ROWS);
+                int w = rand.nextInt(Board.COLS);
+                cell = 1L << Board.cell(w, h);
+            } while ((cells & cell) != 0);
+            cells |= cell;
+        }
+        return cells;
+    }
+
+    /*
+     * Add walls to the board in random locations
+     */
+    private static void addWalls(Board board, int walls, SplitMix rand)
+    {
+        for (int numWalls = 0; numWalls < walls; numWalls++)
+        {
+            int h = rand.nextInt(Board.ROWS);
+            int w = rand.nextInt(Board.COLS);
+
+            long cell = 1L << Board.cell(w, h);
+            if (rand.nextInt(2) == 0)
+            {
+                // vertical wall
+                board.wallsRight |= cell;
+            }
+            else
+            {
+                // horizontal
+                board.wallsDown |= cell;
+            }
+        }
+    }
+
+    /*
+     * Remove walls, in cell order, until the board is solvable; a board without walls always is
+     */
+    private static void openUp(Board board)
+    {
+        while (!isSolvable(board))
+        {
+            long right = Long.lowestOneBit(board.wallsRight);
+            long down = Long.lowestOneBit(board.wallsDown);
+            if (right != 0 && (down == 0 || Long.compareUnsigned(right, down) < 0))
+                board.wallsRight &= ~right;
+            else
+                board.wallsDown &= ~down;
+            board.compile();
+        }
+    }
+
+    /*
+     * The values of a SplittableRandom(seed) with the state in a reusable object, so generating a
+     * board allocates nothing
+     */
+    private static final class SplitMix
+    {
+        long state;
+
+        int nextInt(int bound)
+        {
+            int r = nextInt();
+            int m = bound - 1;
+            if ((bound & m) == 0) return r & m;
+            for (int u = r >>> 1; u + m - (r = u % bound) < 0; u = nextInt() >>> 1)
+            {
+                // reject the values that would favor the low results
+            }
+            return r;
+        }
+
+        private int nextInt()
+        {
+            long z = state += 0x9E3779B97F4A7C15L;
+            z = (z ^ (z >>> 33)) * 0x62A9D9ED799705F5L;
+            return (int)(((z ^ (z >>> 28)) * 0xCB24D0A5C88C35B3L) >>> 32);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/**
+ * Every command the game understands, with the words that can be typed for it.
+ * A command's opcode is its ordinal. Input is delivered as a packed int holding the opcode
+ * and a repeat count, see {@link CommandParser}.
+ */
+public enum Command
+{
+    RIGHT(Board.RIGHT, true, "right", "r"),
+    LEFT(Board.LEFT, true, "left", "l"),
+    UP(Board.UP, true, "up", "u"),
+    DOWN(Board.DOWN, true, "down", "d"),
+    SPRING_MODE(-1, false, "t"),
+    JUMP_MODE(-1, false, "space", "jump"),
+    JUMP_RIGHT(Board.RIGHT, true, "jr"),
+    JUMP_LEFT(Board.LEFT, true, "jumpleft", "jl"),
+    JUMP_UP(Board.UP, true, "jumpup", "ju"),
+    JUMP_DOWN(Board.DOWN, true, "jumpdown", "jd"),
+    SPRING_RIGHT(Board.RIGHT, false, "springr", "sr"),
+    SPRING_LEFT(Board.LEFT, false, "springl", "sl"),
+    SPRING_UP(Board.UP, false, "springu", "su"),
+    SPRING_DOWN(Board.DOWN, false, "springd", "sd"),
+    PICKUP(-1, false, "pickup", "p"),
+    FIND(-1, false, "find"),
+    CHECK(-1, false, "check", "c"),
+    REMOVE_TRAP(-1, false, "removetrap", "rt"),
+    YES(-1, false, "yes", "y"),
+    NO(-1, false, "no", "n"),
+    SCORE(-1, false, "score", "status"),
+    QUIT(-1, false, "quit", "q"),
+    REPLAY(-1, false, "replay"),
+    HELP(-1, false, "help", "?", "h"),
+    RESTART(-1, false, "restart"),
+    HINT(-1, false, "hint");
+
+    /** Packed value delivered for input that is not a command. */
+    public static final int INVALID = -1;
+
+    private static final Command[] VALUES = values();
+
+    // the move, jump and spring command for each direction, the last two for the t and space modes
+    private static final Command[] MOVES = { RIGHT, LEFT, UP, DOWN };
+    private static final Command[] JUMPS = { JUMP_RIGHT, JUMP_LEFT, JUMP_UP, JUMP_DOWN };
+    private static final Command[] SPRINGS = { SPRING_RIGHT, SPRING_LEFT, SPRING_UP, SPRING_DOWN };
+
+    private final int dir;
+    private final boolean repeatable;
+    private final String[] aliases;
+
+    Command(int dir, boolean repeatable, String... aliases)
+    {
+        this.dir = dir;
+        this.repeatable = repeatable;
+        this.aliases = aliases;
+    }
+
+    /**
+     * @return the direction of a move, jump or spring command, -1 for other commands
+     */
+    public int dir()
+    {
+        return dir;
+    }
+
+    /**
+     * @return true if the command accepts a count prefix, e.g. r5 or jr3
+     */
+    public boolean isRepeatable()
+    {
+        return repeatable;
+    }
+
+    /**
+     * @return true for the plain one-cell moves RIGHT, LEFT, UP and DOWN
+     */
+    public boolean isMove()
+    {
+        return ordinal() <= DOWN.ordinal();
+    }
+
+    /**
+     * @return the words that can be typed for this command
+     */
+    String[] aliases()
+    {
+        return aliases;
+    }
+
+    /**
+     * @return this command packed with a repeat count of one
+     */
+    public int packed()
+    {
+        return pack(this, 1);
+    }
+
+    /**
+     * @param dir Board.RIGHT, Board.LEFT, Board.UP or Board.DOWN
+     * @return the single move in the direction
+     */
+    public static Command move(int dir)
+    {
+        return MOVES[dir];
+    }
+
+    /**
+     * The command a direction command becomes after t (spring) or space (jump).
+     * <P>
+     * @param mode SPRING_MODE, JUMP_MODE or null
+     * @return the spring or jump in this command's direction, or this command when there is no mode
+     */
+    public Command withMode(Command mode)
+    {
+        if (mode == SPRING_MODE) return SPRINGS[dir];
+        if (mode == JUMP_MODE) return JUMPS[dir];
+        return this;
+    }
+
+    /**
+     * @return the packed form of a command and its repeat count
+     */
+    public static int pack(Command command, int count)
+    {
+        return (count << 8) | command.ordinal();
+    }
+
+    /**
+     * @return the command of a packed value, which must not be INVALID
+     */
+    public static Command of(int packed)
+    {
+        return VALUES[packed & 0xFF];
+    }
+
+    /**
+     * @return the repeat count of a packed value
+     */
+    public static int count(int packed)
+    {
+        return packed >>> 8;
+    }
+}
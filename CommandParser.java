@@ -0,0 +1,103 @@
+/**
+ * Turns a typed line into a packed command.
+ * <P>
+ * The aliases of every {@link Command} are compiled once into an open addressing hash table, and
+ * a line is matched in place, ignoring case and surrounding spaces, so parsing allocates nothing.
+ * A repeatable command may carry a count suffix: <code>r5</code> moves right five times and
+ * <code>jr3</code> jumps right three times.
+ */
+public class CommandParser
+{
+    /** Largest repeat count accepted after a command. */
+    public static final int MAX_COUNT = 99;
+
+    private static final int TABLE_SIZE = 128;
+    private static final char[][] KEYS = new char[TABLE_SIZE][];
+    private static final Command[] COMMANDS = new Command[TABLE_SIZE];
+
+    static
+    {
+        for (Command command : Command.values())
+            for (String alias : command.aliases())
+            {
+                int slot = hash(alias, 0, alias.length()) & (TABLE_SIZE - 1);
+                while (KEYS[slot] != null)
+                    slot = (slot + 1) & (TABLE_SIZE - 1);
+                KEYS[slot] = alias.toCharArray();
+                COMMANDS[slot] = command;
+            }
+    }
+
+    private CommandParser()
+    {
+    }
+
+    /**
+     * Parse one line of input.
+     * <P>
+     * @param line the typed text
+     * @return the packed command (see {@link Command#of(int)} and {@link Command#count(int)}), or Command.INVALID
+     */
+    public static int parse(CharSequence line)
+    {
+        int start = 0;
+        int end = line.length();
+        while (start < end && Character.isWhitespace(line.charAt(start))) start++;
+        while (end > start && Character.isWhitespace(line.charAt(end - 1))) end--;
+
+        // split off a count suffix
+        int digits = end;
+        while (digits > start && isDigit(line.charAt(digits - 1))) digits--;
+        int count = 1;
+        if (digits < end)
+        {
+            if (end - digits > 2) return Command.INVALID;
+            count = 0;
+            for (int i = digits; i < end; i++)
+                count = count * 10 + (line.charAt(i) - '0');
+            if (count < 1 || count > MAX_COUNT) return Command.INVALID;
+        }
+
+        Command command = lookup(line, start, digits);
+        if (command == null) return Command.INVALID;
+        if (digits < end && !command.isRepeatable()) return Command.INVALID;
+        return Command.pack(command, count);
+    }
+
+    /*
+     * The command whose alias equals line[start, end) ignoring case, or null
+     */
+    private static Command lookup(CharSequence line, int start, int end)
+    {
+        int length = end - start;
+        if (length == 0) return null;
+        int slot = hash(line, start, end) & (TABLE_SIZE - 1);
+        for (char[] key = KEYS[slot]; key != null; key = KEYS[slot])
+        {
+            if (key.length == length && matches(key, line, start))
+                return COMMANDS[slot];
+            slot = (slot + 1) & (TABLE_SIZE - 1);
+        }
+        return null;
+    }
+
+    private static boolean matches(char[] key, CharSequence line, int start)
+    {
+        for (int i = 0; i < key.length; i++)
+            if (key[i] != Character.toLowerCase(line.charAt(start + i))) return false;
+        return true;
+    }
+
+    private static int hash(CharSequence s, int start, int end)
+    {
+        int h = 0;
+        for (int i = start; i < end; i++)
+            h = 31 * h + Character.toLowerCase(s.charAt(i));
+        return h ^ (h >>> 7);
+    }
+
+    private static boolean isDigit(char c)
+    {
+        return c >= '0' && c <= '9';
+    }
+}
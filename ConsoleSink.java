@@ -0,0 +1,69 @@
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Prints the message of every event on its own line, as the game always has.
+ * <P>
+ * The messages are ASCII and written as bytes from a reused buffer: println would allocate a char
+ * buffer for every line.
+ */
+public class ConsoleSink implements EventSink
+{
+    private static final byte[] NEWLINE = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+
+    private final PrintStream out;
+    private final byte[] line = new byte[128];
+    private int length;
+
+    /**
+     * @param out where to print
+     */
+    public ConsoleSink(PrintStream out)
+    {
+        this.out = out;
+    }
+
+    @Override
+    public void onEvent(GameEvent event, int a, int b)
+    {
+        length = 0;
+        int args = event.arguments();
+        for (int i = 0; i <= args; i++)
+        {
+            append(event.text(i));
+            if (i < args) append(i == 0 ? a : b);
+        }
+        System.arraycopy(NEWLINE, 0, line, length, NEWLINE.length);
+        out.write(line, 0, length + NEWLINE.length);
+    }
+
+    /*------------------- private methods -------------------*/
+
+    private void append(String text)
+    {
+        for (int i = 0; i < text.length(); i++)
+            line[length++] = (byte)text.charAt(i);
+    }
+
+    private void append(int number)
+    {
+        if (number < 0)
+        {
+            line[length++] = '-';
+            number = -number;
+        }
+        int start = length;
+        do
+        {
+            line[length++] = (byte)('0' + number % 10);
+            number /= 10;
+        } while (number > 0);
+        // the digits came out lowest first
+        for (int i = start, j = length - 1; i < j; i++, j--)
+        {
+            byte digit = line[i];
+            line[i] = line[j];
+            line[j] = digit;
+        }
+    }
+}
@@ -1,168 +1,177 @@
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.SplittableRandom;
 
 public class EscapeRoom
 {
-    public static ConcurrentLinkedQueue<String> inputQueue = new ConcurrentLinkedQueue<>();
-    public static void enqueueCommand(String cmd) { if (cmd != null) inputQueue.add(cmd); }
+    /** Keyboard and terminal input waiting for the game thread, as packed commands. */
+    public static final InputQueue inputQueue = new InputQueue(256);
+
+    public static void enqueueCommand(String cmd) { if (cmd != null) inputQueue.offer(CommandParser.parse(cmd)); }
+
+    /**
+     * Play the game in a window, with commands also typed in the terminal, or in the terminal alone.
+     * <P>
+     * @param args <code>-journal FILE</code> to record the game for {@link JournalReplayer},
+     *             <code>-terminal</code> to draw the board in the terminal instead of a window,
+     *             <code>-seed N</code> to play the board of a seed, e.g. one a leaderboard assigned
+     *             with {@link SubmissionVerifier#assignSeed(CharSequence)},
+     *             <code>-width W -height H</code> to play in a larger room, see {@link LargeBoard},
+     *             and any {@link GameConfig} setting, e.g. <code>-traps 50000</code>
+     */
+    public static void main(String[] args) throws IOException
+    {
+        Path journalFile = null;
+        boolean terminal = false;
+        long seed = new SplittableRandom().nextLong();
+        int width = GameEngine.GRID_W;
+        int height = GameEngine.GRID_H;
+        GameConfig config = new GameConfig();
+        for (int i = 0; i < args.length; i++)
+        {
+            if (args[i].equals("-journal")) journalFile = Paths.get(args[++i]);
+            else if (args[i].equals("-terminal")) terminal = true;
+            else if (args[i].equals("-seed")) seed = Long.parseLong(args[++i]);
+            else if (args[i].equals("-width")) width = Integer.parseInt(args[++i]);
+            else if (args[i].equals("-height")) height = Integer.parseInt(args[++i]);
+            else if (args[i].startsWith("-")) config.set(args[i].substring(1), Integer.parseInt(args[++i]));
+        }
+        boolean large = width != GameEngine.GRID_W || height != GameEngine.GRID_H;
+        if (large && journalFile != null) throw new IllegalArgumentException("journals are only kept on the normal board");
+
+        GameEngine engine = new GameEngine(seed);
+        engine.setConfig(config);
+        engine.setSize(width, height);
+        if (terminal) playInTerminal(engine, journalFile);
+        else playInWindow(engine, journalFile);
+    }
+
+    /*
+     * Play with the board drawn in a window, see GameGUI
+     */
+    private static void playInWindow(GameEngine engine, Path journalFile) throws IOException
+    {
+        printWelcome(System.out);
 
-    public static void main(String[] args) 
-    {      
-        System.out.println("Welcome to EscapeRoom!");
-        System.out.println("Get to the other side of the room, avoiding walls and invisible traps,");
-        System.out.println("pick up all the prizes.\n");
+        startTerminalReader();
 
-        GameGUI game = new GameGUI();
+        GameGUI game = new GameGUI(engine);
+        // publish the first frame before the window can paint
         game.createBoard();
+        game.openWindow();
         System.out.println("Traps on this board: " + game.getTotalTraps());
 
-        int m = 60; // move size
-        int movesCount = 0;
-        int score = 0;
-
-        String[] validCommands = { "right","left","up","down","r","l","u","d","t","space",
-                "jump","jr","jumpleft","jl","jumpup","ju","jumpdown","jd",
-                "pickup","p","find","springr","springl","springu","springd","sr","sl","su","sd",
-                "removetrap","rt","yes","no","y","n",
-                "score","status","quit","q","replay","help","?","h","c","check","restart"};
-
-        boolean play = true;
-        boolean springMode = false;
-        boolean jumpMode = false;
-
-        while (play)
+        GameSession session = new GameSession(game.getEngine(), System.out);
+        game.getEngine().getEvents().subscribe(game);
+        if (GameMetrics.METRICS != null) game.getEngine().getEvents().subscribe(GameMetrics.METRICS);
+        JournalWriter journal = journalFile == null ? null : new JournalWriter(journalFile, session);
+        session.setCommandLog(journal);
+        closeOnExit(journal);
+        GameLoop loop = new GameLoop(session, inputQueue, game);
+        game.onWindowClosing(loop::stop);
+        session.begin();
+        try
         {
-            System.out.print("> ");
-            String cmd = UserInput.getValidInput(validCommands);
-            movesCount++;
-
-            // Mode activation
-            if (cmd.equals("t")) { springMode = true; jumpMode = false; System.out.println("Spring mode: choose direction"); }
-            else if (cmd.equals("space")) { jumpMode = true; springMode = false; System.out.println("Jump mode: choose direction"); }
+            loop.run();
+        }
+        finally
+        {
+            game.getEngine().getEvents().close();
+            if (journal != null) journal.close();
+            game.close();
+        }
+    }
 
-            // Move commands
-            int delta = 0;
-            switch(cmd)
+    /*
+     * Play with the board drawn in the terminal, see TerminalRenderer; no AWT class is loaded
+     */
+    private static void playInTerminal(GameEngine engine, Path journalFile) throws IOException
+    {
+        engine.createBoard();
+        TerminalRenderer screen = new TerminalRenderer(engine, System.out);
+        screen.start();
+        // give the terminal its scrolling back however the game ends: quit, an exception or Ctrl-C
+        Runtime.getRuntime().addShutdownHook(new Thread(screen::close, "terminal-reset"));
+        try
+        {
+            printWelcome(System.out);
+            System.out.println("Traps on this board: " + engine.getTotalTraps());
+
+            startTerminalReader();
+
+            GameSession session = new GameSession(engine, System.out);
+            if (GameMetrics.METRICS != null) engine.getEvents().subscribe(GameMetrics.METRICS);
+            JournalWriter journal = journalFile == null ? null : new JournalWriter(journalFile, session);
+            session.setCommandLog(journal);
+            closeOnExit(journal);
+            screen.render(0);
+            session.begin();
+            try
             {
-                case "right": case "r":
-                    if (springMode) { delta = game.springTrap(m,0); springMode=false; }
-                    else if (jumpMode) { delta = jump(game, m,0); jumpMode=false; }
-                    else delta = game.movePlayer(m,0);
-                    break;
-                case "left": case "l":
-                    if (springMode) { delta = game.springTrap(-m,0); springMode=false; }
-                    else if (jumpMode) { delta = jump(game,-m,0); jumpMode=false; }
-                    else delta = game.movePlayer(-m,0);
-                    break;
-                case "up": case "u":
-                    if (springMode) { delta = game.springTrap(0,-m); springMode=false; }
-                    else if (jumpMode) { delta = jump(game,0,-m); jumpMode=false; }
-                    else delta = game.movePlayer(0,-m);
-                    break;
-                case "down": case "d":
-                    if (springMode) { delta = game.springTrap(0,m); springMode=false; }
-                    else if (jumpMode) { delta = jump(game,0,m); jumpMode=false; }
-                    else delta = game.movePlayer(0,m);
-                    break;
-                case "pickup": case "p": delta = game.pickupPrize(); break;
-                case "find": delta = findTraps(game,m); break;
-                case "check": case "c": delta = checkTraps(game,m); break;
-                case "replay": delta = game.replay(); break;
-                case "restart": 
-                    delta = game.restart(); 
-                    score = 0; // reset score to 0
-                    System.out.println("Your Score and steps have reset");
-                    break;
-                case "score": case "status":
-                    System.out.println("Score: " + score + ", Steps: " + game.getSteps() +
-                            ", Trap Collisions: " + game.getTrapCollisions() + "/6, Trap Removals: " + game.getTrapRemovals());
-                    break;
-                case "quit": case "q": play=false; break;
-                case "help": case "?": case "h": printHelp(); break;
-                default: break;
+                new GameLoop(session, inputQueue, screen).run();
             }
-
-            score += delta;
-
-            if (game.hasPendingTrapCollision())
+            finally
             {
-                System.out.print("Detrap for 5 points? (y/n): ");
-                String[] yesNo = {"y","n","yes","no"};
-                String resp = UserInput.getValidInput(yesNo);
-                if (resp.equals("y") || resp.equals("yes"))
-                {
-                    score += game.removeTrap();
-                }
-                else
-                {
-                    // decline detrap: apply -1 now, but do NOT consume a removal chance
-                    score -= 1;
-                }
-                game.clearPendingTrapCollision();
+                engine.getEvents().close();
+                if (journal != null) journal.close();
             }
-
-            if (game.isAtFinish()) { System.out.println("Finish: reached the exit"); break; }
-            System.out.println("Score now: " + score);
         }
-
-        score += game.endGame();
-        System.out.println("Final score: " + score);
-        System.out.println("Total steps: " + game.getSteps());
-    }
-
-    private static int jump(GameGUI game, int dx, int dy)
-    {
-        int first = game.movePlayer(dx,dy);
-        int second = 0;
-        if (first == 0) second = game.movePlayer(dx,dy);
-        return first + second;
+        finally
+        {
+            screen.close();
+        }
     }
 
-    private static int findTraps(GameGUI game,int m)
+    /**
+     * Print the greeting shown when a game starts.
+     */
+    public static void printWelcome(PrintStream out)
     {
-        boolean any;
-        boolean rTrap = game.isTrap(m,0);
-        boolean lTrap = game.isTrap(-m,0);
-        boolean uTrap = game.isTrap(0,-m);
-        boolean dTrap = game.isTrap(0,m);
-        any = rTrap || lTrap || uTrap || dTrap;
-        if (any)
-        {
-            System.out.print("Find Trap: ");
-            if (rTrap) System.out.print("right ");
-            if (lTrap) System.out.print("left ");
-            if (uTrap) System.out.print("up ");
-            if (dTrap) System.out.print("down ");
-            System.out.println();
-        }
-        else System.out.println("Find Trap: no traps adjacent");
-        return 0;
+        out.println("Welcome to EscapeRoom!");
+        out.println("Get to the other side of the room, avoiding walls and invisible traps,");
+        out.println("pick up all the prizes.\n");
     }
 
-    private static int checkTraps(GameGUI game,int m)
+    /*
+     * Close the journal when the JVM exits before the game is over, e.g. on Ctrl-C
+     */
+    private static void closeOnExit(JournalWriter journal)
     {
-        boolean any;
-        boolean rTrap = game.isTrap(m,0);
-        boolean lTrap = game.isTrap(-m,0);
-        boolean uTrap = game.isTrap(0,-m);
-        boolean dTrap = game.isTrap(0,m);
-        any = rTrap || lTrap || uTrap || dTrap;
-        if (any)
-        {
-            System.out.print("Check: ");
-            if (rTrap) System.out.print("right ");
-            if (lTrap) System.out.print("left ");
-            if (uTrap) System.out.print("up ");
-            if (dTrap) System.out.print("down ");
-            System.out.println();
-        }
-        else System.out.println("Check: no traps adjacent");
-        return -1; // check costs 1 point
+        if (journal == null) return;
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try
+            {
+                journal.close();
+            }
+            catch (IOException e)
+            {
+                System.err.println("Journal not written: " + e.getMessage());
+            }
+        }, "journal-close"));
     }
 
-    private static void printHelp()
+    /*
+     * Forward lines typed in the terminal to the input queue
+     */
+    private static void startTerminalReader()
     {
-        System.out.println("Commands: right/left/up/down (r/l/u/d). Keyboard: WASD/Arrows for movement");
-        System.out.println("jump (jr/jl/ju/jd or space + direction), pickup (p), find, check (c), spring (t + direction)");
-        System.out.println("removetrap (rt), score, replay, restart (r), quit (q)");
+        Thread reader = new Thread(() -> {
+            BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+            try
+            {
+                for (String line = in.readLine(); line != null; line = in.readLine())
+                    enqueueCommand(line);
+            }
+            catch (IOException e)
+            {
+                System.err.println("Terminal input closed: " + e.getMessage());
+            }
+        }, "terminal-input");
+        reader.setDaemon(true);
+        reader.start();
     }
 }
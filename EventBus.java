@@ -0,0 +1,393 @@
+import java.io.PrintStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Collects the {@link GameEvent}s of a game and hands them to its sinks in batches, on a thread
+ * of its own.
+ * <P>
+ * Posting an event stores three ints in preallocated arrays and never blocks, prints or
+ * allocates. {@link #flush()}, which a {@link GameSession} calls at the end of every command,
+ * swaps the batch with a second, empty one and hands it to the bus's delivery thread, which calls
+ * the sinks while the game thread goes on; writing the messages to a terminal or a socket is
+ * never done on the game thread. Text {@link #print(PrintStream, String) printed} through the bus
+ * goes through the same thread, so it comes out in order with the events around it. A bus that
+ * fills up before it is flushed flushes itself.
+ * <P>
+ * Posting and flushing never wait for the delivery thread. While it is still busy with earlier
+ * batches, e.g. on a slow terminal or socket, flushed batches queue up behind it and posting goes
+ * on into a new batch, up to {@link #MAX_BATCHES}. An event posted to a full batch while all of
+ * them are queued is dropped until one has been delivered, and counted in {@link #getDropped()}.
+ * Text is never dropped: printing to a full batch then waits for the oldest queued batch to be
+ * delivered, as {@link #drain()} and {@link #close()} wait for all of them.
+ * <P>
+ * The delivery thread is started by the first flush that has something to deliver and runs until
+ * {@link #close()}. A bus created without a thread factory has no delivery thread and delivers on
+ * the thread that flushes. Posting and flushing happen on the game thread; sinks can be added and removed
+ * from any thread. An engine without a bus, as in simulations, skips all of this with one null
+ * check per event.
+ */
+public class EventBus
+{
+    /** Events and texts held before the bus flushes itself. */
+    public static final int CAPACITY = 256;
+
+    /** Batches a bus may hold at once, the one being posted to included. */
+    public static final int MAX_BATCHES = 64;
+
+    private static final ThreadFactory DAEMON_THREADS = r -> {
+        Thread t = new Thread(r, "game-events");
+        t.setDaemon(true);
+        return t;
+    };
+
+    private final ThreadFactory threads;
+    private volatile EventSink[] sinks = new EventSink[0];
+
+    // the batch being posted to, and the events dropped while every batch was queued
+    private Batch posting = new Batch();
+    private volatile long dropped;
+
+    // guarded by handoff
+    private final Object handoff = new Object();
+    private final ArrayDeque<Batch> queued = new ArrayDeque<>(MAX_BATCHES); // handed off, oldest being delivered
+    private final ArrayDeque<Batch> free = new ArrayDeque<>(MAX_BATCHES);   // empty, to post to next
+    private int batches = 2;  // created so far, posting included
+    private Thread deliverer; // started by the first flush with something to deliver
+    private boolean closed;
+
+    /**
+     * A bus delivering on a daemon thread of its own.
+     */
+    public EventBus()
+    {
+        this(DAEMON_THREADS);
+    }
+
+    /**
+     * @param threads creates the delivery thread, or null to deliver on the thread that flushes, e.g.
+     *        a server's session thread that writes to its own socket
+     */
+    public EventBus(ThreadFactory threads)
+    {
+        this.threads = threads;
+        free.add(new Batch());
+    }
+
+    /**
+     * A bus that prints every event, see {@link ConsoleSink}.
+     * <P>
+     * @param out where to print
+     * @return the new bus
+     */
+    public static EventBus console(PrintStream out)
+    {
+        EventBus bus = new EventBus();
+        bus.subscribe(new ConsoleSink(out));
+        return bus;
+    }
+
+    /**
+     * @param sink receives every event delivered from now on
+     */
+    public synchronized void subscribe(EventSink sink)
+    {
+        EventSink[] copy = Arrays.copyOf(sinks, sinks.length + 1);
+        copy[sinks.length] = sink;
+        sinks = copy;
+    }
+
+    /**
+     * @param sink a sink to stop sending events to
+     */
+    public synchronized void unsubscribe(EventSink sink)
+    {
+        EventSink[] current = sinks;
+        for (int i = 0; i < current.length; i++)
+        {
+            if (current[i] != sink) continue;
+            EventSink[] copy = Arrays.copyOf(current, current.length - 1);
+            System.arraycopy(current, i + 1, copy, i, current.length - i - 1);
+            sinks = copy;
+            return;
+        }
+    }
+
+    /**
+     * Add an event to the batch.
+     * <P>
+     * @param event what happened
+     * @param a the event's first number
+     * @param b the event's second number
+     */
+    public void post(GameEvent event, int a, int b)
+    {
+        if (posting.count == CAPACITY && !handOff())
+        {
+            dropped++;
+            return;
+        }
+        Batch batch = posting;
+        int i = batch.count++;
+        batch.events[i] = event;
+        batch.first[i] = a;
+        batch.second[i] = b;
+    }
+
+    /**
+     * Add text to the batch, to be printed on a stream by the delivery thread after the events
+     * posted before it, e.g. what a session reports after a command. If every batch is full and
+     * queued, this waits for the delivery thread to free one rather than lose the text.
+     * <P>
+     * @param out where to print
+     * @param text what to print
+     */
+    public void print(PrintStream out, String text)
+    {
+        while (posting.count == CAPACITY && !handOff())
+            awaitFree();
+        Batch batch = posting;
+        int i = batch.count++;
+        batch.events[i] = null;
+        batch.streams[i] = out;
+        batch.texts[i] = text;
+    }
+
+    /**
+     * Hand everything posted since the last flush to the delivery thread, which passes the events
+     * to every sink and prints the texts, in order. If every batch is already queued, the posted
+     * ones stay in the batch and go with the next flush. After {@link #close()} this delivers on
+     * the calling thread.
+     */
+    public void flush()
+    {
+        if (posting.count > 0) handOff();
+    }
+
+    /**
+     * Flush, then wait until everything has been delivered, e.g. before writing to the same
+     * stream directly or flushing it.
+     */
+    public void drain()
+    {
+        flush();
+        synchronized (handoff)
+        {
+            awaitDelivered();
+        }
+        if (posting.count == 0) return;
+        // what had to stay in the batch while every batch was queued
+        flush();
+        synchronized (handoff)
+        {
+            awaitDelivered();
+        }
+    }
+
+    /**
+     * Deliver everything posted so far and stop the delivery thread. Anything posted later is
+     * delivered on the thread that flushes it.
+     */
+    public void close()
+    {
+        drain();
+        synchronized (handoff)
+        {
+            closed = true;
+            handoff.notifyAll();
+        }
+    }
+
+    /**
+     * @return the number of events and texts waiting for a flush
+     */
+    public int size()
+    {
+        return posting.count;
+    }
+
+    /**
+     * @return the number of events dropped because every batch was waiting for delivery
+     */
+    public long getDropped()
+    {
+        return dropped;
+    }
+
+    /*------------------- private methods -------------------*/
+
+    /*
+     * Queue the batch being posted to for delivery and post to an empty one; false, changing
+     * nothing, if every batch is queued already
+     */
+    private boolean handOff()
+    {
+        synchronized (handoff)
+        {
+            if (closed || threads == null)
+            {
+                deliver(posting);
+                return true;
+            }
+            Batch next = free.poll();
+            if (next == null)
+            {
+                if (batches == MAX_BATCHES) return false;
+                next = new Batch();
+                batches++;
+            }
+            queued.addLast(posting);
+            posting = next;
+            if (deliverer == null)
+            {
+                deliverer = threads.newThread(this::deliverAll);
+                deliverer.start();
+            }
+            handoff.notifyAll();
+            return true;
+        }
+    }
+
+    /*
+     * Wait until the delivery thread has finished every queued batch; the caller holds handoff
+     */
+    private void awaitDelivered()
+    {
+        boolean interrupted = false;
+        while (!queued.isEmpty())
+        {
+            try
+            {
+                handoff.wait();
+            }
+            catch (InterruptedException e)
+            {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    /*
+     * Wait until the delivery thread has emptied a batch to post to
+     */
+    private void awaitFree()
+    {
+        boolean interrupted = false;
+        synchronized (handoff)
+        {
+            while (free.isEmpty() && !queued.isEmpty() && !closed)
+            {
+                try
+                {
+                    handoff.wait();
+                }
+                catch (InterruptedException e)
+                {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    /*
+     * The delivery thread: deliver each batch handed off until the bus is closed
+     */
+    private void deliverAll()
+    {
+        while (true)
+        {
+            Batch batch;
+            synchronized (handoff)
+            {
+                while (queued.isEmpty() && !closed)
+                {
+                    try
+                    {
+                        handoff.wait();
+                    }
+                    catch (InterruptedException e)
+                    {
+                        // only close() stops delivery
+                    }
+                }
+                if (queued.isEmpty()) return;
+                batch = queued.peekFirst();
+            }
+            deliver(batch);
+            synchronized (handoff)
+            {
+                queued.removeFirst();
+                free.addLast(batch);
+                handoff.notifyAll();
+            }
+        }
+    }
+
+    /*
+     * Pass a batch to the sinks and print its texts, in order, and empty it. A sink or stream
+     * that throws misses that event or text only; the others still get it.
+     */
+    private void deliver(Batch batch)
+    {
+        EventSink[] targets = sinks;
+        for (int i = 0; i < batch.count; i++)
+        {
+            GameEvent event = batch.events[i];
+            if (event == null)
+            {
+                try
+                {
+                    batch.streams[i].print(batch.texts[i]);
+                }
+                catch (RuntimeException e)
+                {
+                    System.err.println("Game output failed: " + e);
+                }
+                batch.streams[i] = null;
+                batch.texts[i] = null;
+                continue;
+            }
+            for (EventSink sink : targets)
+            {
+                try
+                {
+                    sink.onEvent(event, batch.first[i], batch.second[i]);
+                }
+                catch (RuntimeException e)
+                {
+                    System.err.println("Event sink failed on " + event + ": " + e);
+                }
+            }
+        }
+        batch.count = 0;
+        for (EventSink sink : targets)
+        {
+            try
+            {
+                sink.onFlush();
+            }
+            catch (RuntimeException e)
+            {
+                System.err.println("Event sink failed after a batch: " + e);
+            }
+        }
+    }
+
+    /*------------------- private classes -------------------*/
+
+    /*
+     * One buffer of posted events and texts; an entry with a null event is a text
+     */
+    private static final class Batch
+    {
+        final GameEvent[] events = new GameEvent[CAPACITY];
+        final int[] first = new int[CAPACITY];
+        final int[] second = new int[CAPACITY];
+        final PrintStream[] streams = new PrintStream[CAPACITY];
+        final String[] texts = new String[CAPACITY];
+        int count;
+    }
+}
@@ -0,0 +1,35 @@
+/**
+ * Receives the events of an {@link EventBus}, in the order they were posted, after the bus is flushed.
+ * <P>
+ * Sinks are called on the bus's delivery thread, one batch at a time, never on the game thread.
+ * One that updates a window should collect what it needs from the events and hand it to the
+ * window's thread once per batch, in {@link #onFlush()}.
+ */
+public interface EventSink
+{
+    /**
+     * @param event what happened
+     * @param a the event's first number, 0 if it has none
+     * @param b the event's second number, 0 if it has none
+     */
+    void onEvent(GameEvent event, int a, int b);
+
+    /**
+     * Called after the events of a batch have been delivered. Does nothing unless overridden.
+     */
+    default void onFlush()
+    {
+    }
+
+    /**
+     * @param logger where to log
+     * @return a sink that logs every event at INFO level
+     */
+    static EventSink log(System.Logger logger)
+    {
+        return (event, a, b) -> {
+            if (logger.isLoggable(System.Logger.Level.INFO))
+                logger.log(System.Logger.Level.INFO, event.name() + ": " + event.format(a, b));
+        };
+    }
+}
@@ -0,0 +1,123 @@
+/**
+ * A board configuration and set of scoring constants, applied to an engine with
+ * {@link GameEngine#setConfig(GameConfig)}.
+ * <P>
+ * A new GameConfig holds the defaults of a new {@link GameEngine}. Each value can also be set by
+ * name with {@link #set(String, int)}, e.g. from a command line.
+ * <P>
+ * Counts and scores are never negative and the collision limit is at least 1: rewards that lose
+ * points would break the {@link Solver}'s search, and a collision count is stored in 10 bits.
+ * Setting a value out of range throws IllegalArgumentException.
+ */
+public class GameConfig
+{
+    /** Largest collision limit: the collision past it must still fit the engine's packed state. */
+    public static final int MAX_COLLISION_LIMIT = GameEngine.MAX_COLLISIONS - 1;
+
+    private int walls = 20;
+    private int traps = 8;
+    private int prizes = 3;
+    private int prizeVal = 10;
+    private int trapVal = 5;
+    private int endVal = 10;
+    private int trapRemovalCost = 5;
+    private int collisionLimit = 6;
+    private int stepPenalty = 1;
+    private int declineCost = 1;
+
+    /**
+     * Set a value by its name: walls, traps, prizes, prizeVal, trapVal, endVal, trapRemovalCost,
+     * collisionLimit, stepPenalty or declineCost.
+     * <P>
+     * @param name the name of the value
+     * @param value the new value
+     * @throws IllegalArgumentException if there is no value with that name or the value is out of range
+     */
+    public void set(String name, int value)
+    {
+        switch (name)
+        {
+            case "walls": walls = check(name, value); break;
+            case "traps": traps = check(name, value); break;
+            case "prizes": prizes = check(name, value); break;
+            case "prizeVal": prizeVal = check(name, value); break;
+            case "trapVal": trapVal = check(name, value); break;
+            case "endVal": endVal = check(name, value); break;
+            case "trapRemovalCost": trapRemovalCost = check(name, value); break;
+            case "collisionLimit": collisionLimit = check(name, value); break;
+            case "stepPenalty": stepPenalty = check(name, value); break;
+            case "declineCost": declineCost = check(name, value); break;
+            default: throw new IllegalArgumentException("unknown setting " + name);
+        }
+    }
+
+    public int getWalls() { return walls; }
+    public int getTraps() { return traps; }
+    public int getPrizes() { return prizes; }
+    public int getPrizeVal() { return prizeVal; }
+    public int getTrapVal() { return trapVal; }
+    public int getEndVal() { return endVal; }
+    public int getTrapRemovalCost() { return trapRemovalCost; }
+    public int getCollisionLimit() { return collisionLimit; }
+    public int getStepPenalty() { return stepPenalty; }
+    public int getDeclineCost() { return declineCost; }
+
+    public void setWalls(int walls) { this.walls = check("walls", walls); }
+    public void setTraps(int traps) { this.traps = check("traps", traps); }
+    public void setPrizes(int prizes) { this.prizes = check("prizes", prizes); }
+    public void setPrizeVal(int prizeVal) { this.prizeVal = check("prizeVal", prizeVal); }
+    public void setTrapVal(int trapVal) { this.trapVal = check("trapVal", trapVal); }
+    public void setEndVal(int endVal) { this.endVal = check("endVal", endVal); }
+    public void setTrapRemovalCost(int trapRemovalCost) { this.trapRemovalCost = check("trapRemovalCost", trapRemovalCost); }
+    public void setCollisionLimit(int collisionLimit) { this.collisionLimit = check("collisionLimit", collisionLimit); }
+    public void setStepPenalty(int stepPenalty) { this.stepPenalty = check("stepPenalty", stepPenalty); }
+    public void setDeclineCost(int declineCost) { this.declineCost = check("declineCost", declineCost); }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if (!(o instanceof GameConfig)) return false;
+        GameConfig c = (GameConfig)o;
+        return walls == c.walls && traps == c.traps && prizes == c.prizes
+            && prizeVal == c.prizeVal && trapVal == c.trapVal && endVal == c.endVal
+            && trapRemovalCost == c.trapRemovalCost && collisionLimit == c.collisionLimit
+            && stepPenalty == c.stepPenalty && declineCost == c.declineCost;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        int h = walls;
+        h = 31 * h + traps;
+        h = 31 * h + prizes;
+        h = 31 * h + prizeVal;
+        h = 31 * h + trapVal;
+        h = 31 * h + endVal;
+        h = 31 * h + trapRemovalCost;
+        h = 31 * h + collisionLimit;
+        h = 31 * h + stepPenalty;
+        return 31 * h + declineCost;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "walls=" + walls + " traps=" + traps + " prizes=" + prizes
+             + " prizeVal=" + prizeVal + " trapVal=" + trapVal + " endVal=" + endVal
+             + " trapRemovalCost=" + trapRemovalCost + " collisionLimit=" + collisionLimit
+             + " stepPenalty=" + stepPenalty + " declineCost=" + declineCost;
+    }
+
+    /*
+     * The value if it is in range for the named setting
+     */
+    private static int check(String name, int value)
+    {
+        boolean limit = name.equals("collisionLimit");
+        int min = limit ? 1 : 0;
+        int max = limit ? MAX_COLLISION_LIMIT : Integer.MAX_VALUE;
+        if (value < min || value > max)
+            throw new IllegalArgumentException(name + " must be between " + min + " and " + max + ", not " + value);
+        return value;
+    }
+}
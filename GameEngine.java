@@ -0,0 +1,1163 @@
+import java.io.PrintStream;
+import java.util.SplittableRandom;
+
+/**
+ * The rules of the escape room, independent of any window or image.
+ * A GameEngine owns the board (walls, prizes, traps), the player location and
+ * all scoring counters. {@link GameGUI} only renders an engine, so an engine can
+ * be created and played on its own, e.g. in a test or a headless batch run.
+ * <P>
+ * The engine plays in a {@link Room}, which holds the layout and the traps and prizes still in
+ * play. The normal game's room is a {@link BitboardRoom}, a {@link Board} of bitmasks with two more
+ * masks, so every lookup is a single bit test and no objects are created while playing. After
+ * {@link #setSize(int, int)} the same rules play in a {@link LargeBoard} of up to 10,000 x 10,000
+ * cells; renderers then see the Board.COLS x Board.ROWS cells around the player, see
+ * {@link #getBoard()}. Searches, packed games and journals are only for the normal board.
+ * <P>
+ * Everything random (layouts and finish locations) comes from one seeded stream, so a game
+ * created with {@link #GameEngine(long)} is reproducible, and {@link BoardGenerator} only hands
+ * out boards where the finish and every prize can be reached.
+ *
+ * @author PLTW
+ * @version 1.0
+ */
+public class GameEngine
+{
+  public static final int WIDTH = 510;
+  public static final int HEIGHT = 360;
+  public static final int SPACE_SIZE = 60;
+  public static final int GRID_W = 8;
+  public static final int GRID_H = 5;
+  public static final int START_LOC_X = 15;
+  public static final int START_LOC_Y = 15;
+
+  static final int START_CELL = Board.cell((START_LOC_X / SPACE_SIZE), (START_LOC_Y / SPACE_SIZE));
+
+  // what finishing costs after more than the collision limit of trap collisions; deliberately not in
+  // GameConfig, so journal headers keep their values, and named in GameEvent.TOO_MANY_COLLISIONS
+  static final int TOO_MANY_COLLISIONS_PENALTY = 5;
+
+  // initial placement of player
+  private int playerCell = START_CELL;
+
+  // player info
+  private int playerSteps;
+
+  // walls, prizes, traps
+  private int totalWalls;
+  private int totalPrizes;
+  private int totalTraps;
+  private final BitboardRoom small = new BitboardRoom(); // the room of the normal game
+  private Room room = small;
+
+  // the cells around the player renderers see of a large room, and its top-left corner
+  private final Board view = new Board();
+  private int viewCol;
+  private int viewRow;
+
+  // scores, sometimes awarded as (negative) penalties
+  private int prizeVal = 10;
+  private int trapVal = 5;
+  private int endVal = 10;
+  private int offGridVal = 5; // penalty only
+  private int hitWallVal = 5;  // penalty only
+  private int trapRemovalCost = 5;
+  private int collisionLimit = 6;
+  private int stepPenalty = 1;
+  private int declineCost = 1; // penalty only, for answering no to detrap
+
+  // trap collision tracking
+  private int trapCollisions = 0;
+  private int trapRemovals = 0;
+  private int removalChancesUsed = 0; // counts YES detrap uses only (max 2)
+  private boolean finishLocationTop = false; // false = bottom-right, true = top-right
+  private boolean pendingTrapCollision = false;
+  private boolean onTrapAfterRemovals = false; // true when standing on trap after 2 removals used
+  private boolean stepPenaltyActive = false; // true after 2 removals used and next trap hit
+
+  // source of every layout and finish location: a SplitMix64 state, the same stream as a
+  // SplittableRandom(seed) but held in one long so it can be packed with the rest of the game
+  private long seed;
+  private long randState;
+  private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+  // where events are posted, null for none; closed when replaced if the engine created it
+  private EventBus events;
+  private boolean ownsEvents;
+
+  /**
+   * Constructor for the GameEngine class.
+   * Sets the default board configuration; call {@link #createBoard()} before playing.
+   */
+  public GameEngine()
+  {
+    this(new SplittableRandom().nextLong());
+  }
+
+  /**
+   * Create a game whose boards and finish locations all follow from a seed.
+   * <P>
+   * @param seed the seed of the game
+   */
+  public GameEngine(long seed)
+  {
+    this(seed, EventBus.console(System.out));
+    ownsEvents = true;
+  }
+
+  /**
+   * Create a game whose boards and finish locations all follow from a seed, posting its events to
+   * a bus instead of printing them on System.out.
+   * <P>
+   * @param seed the seed of the game
+   * @param events the bus to post events to, or null to play silently; the caller closes it
+   */
+  public GameEngine(long seed, EventBus events)
+  {
+    this.events = events;
+
+    // set default config
+    totalWalls = 20;
+    totalPrizes = 3;
+    totalTraps = 8;
+
+    setSeed(seed);
+  }
+
+  /**
+   * Restart the random stream of the game from a seed; the next {@link #createBoard()} and finish
+   * locations follow from it.
+   * <P>
+   * @param seed the seed of the game
+   */
+  public void setSeed(long seed)
+  {
+    this.seed = seed;
+    randState = seed;
+
+    // randomize finish location (top-right or bottom-right)
+    finishLocationTop = nextBoolean();
+  }
+
+  /**
+   * Start a fresh game from a seed, reusing this engine: the same game as a new GameEngine(seed)
+   * with the same configuration followed by {@link #createBoard()}.
+   * <P>
+   * @param seed the seed of the game
+   */
+  public void newGame(long seed)
+  {
+    setSeed(seed);
+    createBoard();
+    resetPlayer();
+  }
+
+  /**
+   * @return true if the game is exactly as {@link #newGame(long)} leaves it for the game's seed:
+   *         the board and random stream of that seed and nothing played yet
+   */
+  public boolean isNewGame()
+  {
+    long played = randState;
+    randState = seed;
+    boolean top = nextBoolean();
+    long layout = nextLong();
+    boolean fresh = randState == played && top == finishLocationTop && layout == room.getSeed();
+    randState = played;
+    return fresh && playerCell == START_CELL && playerSteps == 0
+        && trapCollisions == 0 && trapRemovals == 0 && removalChancesUsed == 0
+        && !onTrapAfterRemovals && !stepPenaltyActive && !pendingTrapCollision
+        && room.isRestored();
+  }
+
+  /**
+   * Report events ("A WALL IS IN THE WAY", "TRAP IS SPRUNG!", ...) on a stream, on a new bus with a
+   * {@link ConsoleSink}.
+   * <P>
+   * @param out where to report events, or null to play silently
+   */
+  public void setOutput(PrintStream out)
+  {
+    setEvents(out == null ? null : EventBus.console(out));
+    ownsEvents = out != null;
+  }
+
+  /**
+   * Post events to a bus from now on. What was posted to the bus before is delivered first; that
+   * bus is closed if the engine created it, e.g. the console bus of {@link #setOutput(PrintStream)},
+   * and otherwise left open for its caller to close.
+   * <P>
+   * @param events the bus to post events to, or null to play silently
+   */
+  public void setEvents(EventBus events)
+  {
+    if (this.events != null && this.events != events)
+    {
+      if (ownsEvents) this.events.close();
+      else this.events.drain();
+    }
+    this.events = events;
+    ownsEvents = false;
+  }
+
+  /** @return the bus events are posted to, null if the engine is silent */
+  public EventBus getEvents()
+  {
+    return events;
+  }
+
+  /**
+   * Hand the events posted so far to the bus's sinks, e.g. before printing something that must
+   * come after them.
+   */
+  public void flushEvents()
+  {
+    if (events != null) events.flush();
+  }
+
+  /**
+   * Hand the events posted so far to the bus's sinks and wait until they have been delivered,
+   * e.g. before flushing the stream they are printed on.
+   */
+  public void drainEvents()
+  {
+    if (events != null) events.drain();
+  }
+
+  /**
+   * @return the seed the game was started from
+   */
+  public long getSeed()
+  {
+    return seed;
+  }
+
+  /**
+   * Play in a room of another size, e.g. a large map. The normal size is {@value #GRID_W} x
+   * {@value #GRID_H}. A new size puts the player back at the start with the counters reset and
+   * the view at the top-left corner; {@link #createBoard()} must follow to lay out the new room
+   * before playing.
+   * <P>
+   * @param width columns, from GRID_W to LargeBoard.MAX_SIDE
+   * @param height rows, from GRID_H to LargeBoard.MAX_SIDE
+   * @throws IllegalArgumentException if the size is out of range
+   */
+  public void setSize(int width, int height)
+  {
+    if (width < GRID_W || width > LargeBoard.MAX_SIDE || height < GRID_H || height > LargeBoard.MAX_SIDE)
+      throw new IllegalArgumentException("board size " + width + " x " + height + " is not between "
+          + GRID_W + " x " + GRID_H + " and " + LargeBoard.MAX_SIDE + " x " + LargeBoard.MAX_SIDE);
+    if (width == room.getWidth() && height == room.getHeight()) return;
+    resetPlayer();
+    viewCol = 0;
+    viewRow = 0;
+    if (width == GRID_W && height == GRID_H)
+      room = small;
+    else
+      room = new LargeBoard(width, height, Math.max(totalWalls, Math.max(totalTraps, totalPrizes)));
+  }
+
+  /** @return the number of columns of the room */
+  public int getWidth()
+  {
+    return room.getWidth();
+  }
+
+  /** @return the number of rows of the room */
+  public int getHeight()
+  {
+    return room.getHeight();
+  }
+
+  /** @return true if the game is played in a room larger than the normal board */
+  public boolean isLargeRoom()
+  {
+    return room != small;
+  }
+
+ /**
+  * Adds the walls, prizes, and traps to the gameboard.
+  * Every trap is on a cell of its own, one bit per trap, and so is every prize; a trap and
+  * a prize are placed independently and may share a cell.
+  */
+  public void createBoard()
+  {
+    room.generate(nextLong(), totalWalls, totalTraps, totalPrizes);
+  }
+
+  /**
+   * Increment/decrement the player location by the amount designated.
+   * This method checks for bumping into walls, going off the grid, and trap collisions.
+   * <P>
+   * precondition: the move is along one axis and is a multiple of SPACE_SIZE
+   * postcondition: increases number of steps even if the player did not actually move (e.g. bumping into a wall)
+   * <P>
+   * @param incrx amount to move player in x direction
+   * @param incry amount to move player in y direction
+   * @return penalty score for hitting a wall, going off grid, or trap collision, 0 otherwise
+   */
+  public int movePlayer(int incrx, int incry)
+  {
+    return move(direction(incrx, incry), (Math.abs(incrx) + Math.abs(incry)) / SPACE_SIZE);
+  }
+
+  /**
+   * Move the player a number of cells in a direction. This is {@link #movePlayer(int, int)} in board units.
+   * <P>
+   * @param dir Board.RIGHT, Board.LEFT, Board.UP or Board.DOWN
+   * @param cells how many cells to move
+   * @return penalty score for a trap collision or trap step penalties, 0 otherwise
+   */
+  public int move(int dir, int cells)
+  {
+      int perStepStickyPenalty = 0;
+      // Apply continuous -1 per step while currently standing on a trap after removals
+      if (trapRemovals >= 2 && isOnTrap())
+      {
+        perStepStickyPenalty -= stepPenalty;
+      }
+      // increment regardless of whether player really moves
+      playerSteps++;
+
+      long sweep = room.sweep(playerCell, dir, cells);
+
+      // check if off grid horizontally and vertically
+      if (Room.stopReason(sweep) == Board.OFF_GRID)
+      {
+        post(GameEvent.OFF_GRID, 0, 0);
+        return perStepStickyPenalty; // no score penalty beyond the trap step penalty
+      }
+
+      // determine if a wall is in the way
+      if (Room.stopReason(sweep) == Board.WALL)
+      {
+        post(GameEvent.WALL_HIT, 0, 0);
+        return perStepStickyPenalty; // no score penalty beyond the trap step penalty
+      }
+
+      // all is well, move player
+      playerCell = Room.stopCell(sweep);
+
+      // Check for trap collision at new location
+      int trapPenalty = checkTrapCollision();
+
+      // After both removals are used and next trap is hit, apply -1 on every step
+      if (stepPenaltyActive)
+      {
+        trapPenalty -= stepPenalty;
+      }
+
+      return perStepStickyPenalty + trapPenalty;
+  }
+
+  /**
+   * Jump two spaces: the player moves once and, if that move cost nothing, moves again
+   * in the same direction.
+   * <P>
+   * precondition: incrx and incry must be the amount a player regularly moves
+   * <P>
+   * @param incrx amount of one move in x direction
+   * @param incry amount of one move in y direction
+   * @return the combined penalty score of both moves
+   */
+  public int jump(int incrx, int incry)
+  {
+    return jump(direction(incrx, incry));
+  }
+
+  /**
+   * Jump two cells in a direction, see {@link #jump(int, int)}.
+   * <P>
+   * @param dir Board.RIGHT, Board.LEFT, Board.UP or Board.DOWN
+   * @return the combined penalty score of both moves
+   */
+  public int jump(int dir)
+  {
+    int first = move(dir, 1);
+    int second = 0;
+    if (first == 0) second = move(dir, 1);
+    return first + second;
+  }
+
+  /**
+   * Check the space adjacent to the player for a trap. The adjacent location is one space away from the player,
+   * designated by newx, newy.
+   * <P>
+   * precondition: newx and newy must be the amount a player regularly moves, otherwise an existing trap may go undetected
+   * <P>
+   * @param newx a location indicating the space to the right or left of the player
+   * @param newy a location indicating the space above or below the player
+   * @return true if the new location has a trap that has not been sprung, false otherwise
+   */
+  public boolean isTrap(int newx, int newy)
+  {
+    return isTrapAt(cellAt(newx, newy));
+  }
+
+  /**
+   * Check the cell next to the player in a direction for a trap, see {@link #isTrap(int, int)}.
+   * <P>
+   * @param dir Board.RIGHT, Board.LEFT, Board.UP or Board.DOWN
+   * @return true if that cell has a trap that has not been sprung, false otherwise
+   */
+  public boolean isTrap(int dir)
+  {
+    return isTrapAt(neighbor(dir));
+  }
+
+  /*
+   * Check a cell, -1 for one off the grid, for a live trap
+   */
+  private boolean isTrapAt(int cell)
+  {
+    // if new location of player has a live trap, return true
+    if (cell >= 0 && room.isLiveTrap(cell))
+    {
+      post(GameEvent.TRAP_AHEAD, 0, 0);
+      return true;
+    }
+    // there is no trap where player wants to go
+    return false;
+  }
+
+  /**
+   * Spring the trap. Traps can only be sprung once and attempts to spring
+   * a sprung task results in a penalty.
+   * <P>
+   * precondition: newx and newy must be the amount a player regularly moves, otherwise an existing trap may go unsprung
+   * <P>
+   * @param newx a location indicating the space to the right or left of the player
+   * @param newy a location indicating the space above or below the player
+   * @return a positive score if a trap is sprung, otherwise a negative penalty for trying to spring a non-existent trap
+   */
+  public int springTrap(int newx, int newy)
+  {
+    return springTrapAt(cellAt(newx, newy));
+  }
+
+  /**
+   * Spring the trap next to the player in a direction, see {@link #springTrap(int, int)}.
+   * <P>
+   * @param dir Board.RIGHT, Board.LEFT, Board.UP or Board.DOWN
+   * @return a positive score if a trap is sprung, otherwise a negative penalty
+   */
+  public int springTrap(int dir)
+  {
+    return springTrapAt(neighbor(dir));
+  }
+
+  /*
+   * Spring the trap in a cell, -1 for one off the grid
+   */
+  private int springTrapAt(int cell)
+  {
+    // sprung traps are no longer live, cannot spring again
+    if (cell >= 0 && room.removeTrap(cell))
+    {
+      post(GameEvent.TRAP_SPRUNG, 0, 0);
+      return trapVal;
+    }
+    // no trap here, penalty
+    post(GameEvent.NO_TRAP_TO_SPRING, 0, 0);
+    return -trapVal;
+  }
+
+  /**
+   * Pickup a prize and score points. If no prize is in that location, this results in a penalty.
+   * <P>
+   * @return positive score if a location had a prize to be picked up, otherwise a negative penalty
+   */
+  public int pickupPrize()
+  {
+    // if location has a prize, pick it up
+    if (room.removePrize(playerCell))
+    {
+      post(GameEvent.PRIZE_PICKED, 0, 0);
+      return prizeVal;
+    }
+    post(GameEvent.NO_PRIZE, 0, 0);
+    return 0; // no penalty for trying to pick up when no prize is present
+  }
+
+  /**
+   * Return the numbers of steps the player has taken.
+   * <P>
+   * @return the number of steps
+   */
+  public int getSteps()
+  {
+    return playerSteps;
+  }
+
+  /**
+   * Check if player is currently on a trap and handle collision
+   * @return penalty score for trap collision, 0 if no collision
+   */
+  public int checkTrapCollision()
+  {
+    if (room.isLiveTrap(playerCell))
+    {
+      trapCollisions++;
+      post(GameEvent.TRAP_COLLISION, trapCollisions, collisionLimit);
+      if (removalChancesUsed >= 2)
+      {
+        // After both removals are used, activate step penalty on next trap hit
+        stepPenaltyActive = true;
+        return -stepPenalty;
+      }
+      else
+      {
+        // still have removals left: prompt caller whether to detrap
+        pendingTrapCollision = true;
+        return 0;
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Whether the last move resulted in a trap collision that requires prompting.
+   */
+  public boolean hasPendingTrapCollision()
+  {
+    return pendingTrapCollision;
+  }
+
+  /**
+   * Clear the pending trap collision flag after it has been handled by the caller.
+   */
+  public void clearPendingTrapCollision()
+  {
+    pendingTrapCollision = false;
+  }
+
+  /**
+   * Check if player is currently on a trap
+   * @return true if player is on a trap, false otherwise
+   */
+  public boolean isOnTrap()
+  {
+    return room.isLiveTrap(playerCell);
+  }
+
+  /**
+   * Remove trap at player's current location
+   * @return cost of removal (negative score), or penalty if no trap or limit exceeded
+   */
+  public int removeTrap()
+  {
+    if (trapRemovals >= 2)
+    {
+      post(GameEvent.REMOVAL_LIMIT, 0, 0);
+      return -trapRemovalCost;
+    }
+
+    if (room.removeTrap(playerCell))
+    {
+      trapRemovals++;
+      removalChancesUsed++;
+      post(GameEvent.TRAP_REMOVED, trapRemovals, 0);
+      return -trapRemovalCost;
+    }
+
+    post(GameEvent.NO_TRAP_TO_REMOVE, 0, 0);
+    return -trapRemovalCost;
+  }
+
+  /**
+   * Answer the detrap question of a pending trap collision and clear it.
+   * Answering yes removes the trap (see {@link #removeTrap()}); answering no costs a point
+   * but does NOT consume a removal chance.
+   * <P>
+   * @param detrap true to remove the trap
+   * @return the score change of the answer
+   */
+  public int resolveTrapCollision(boolean detrap)
+  {
+    int delta = detrap ? removeTrap() : -declineCost;
+    pendingTrapCollision = false;
+    return delta;
+  }
+
+  /**
+   * Get trap collision count
+   * @return number of trap collisions
+   */
+  public int getTrapCollisions()
+  {
+    return trapCollisions;
+  }
+
+  /**
+   * Get trap removal count
+   * @return number of trap removals used
+   */
+  public int getTrapRemovals()
+  {
+    return trapRemovals;
+  }
+
+  /**
+   * @return the points removing a trap costs
+   */
+  public int getTrapRemovalCost()
+  {
+    return trapRemovalCost;
+  }
+
+  /**
+   * Get the number of trap collisions allowed before finishing costs points
+   * @return the collision limit
+   */
+  public int getCollisionLimit()
+  {
+    return collisionLimit;
+  }
+
+  /**
+   * Return total number of traps configured on the board.
+   */
+  public int getTotalTraps()
+  {
+    return totalTraps;
+  }
+
+  /**
+   * Consume a removal chance without removing a trap (user declined).
+   */
+  public void consumeRemovalChance()
+  {
+    if (removalChancesUsed < 2) removalChancesUsed++;
+  }
+
+  /**
+   * Set the designated number of prizes in the game.  This can be used to customize the gameboard configuration.
+   * <P>
+   * precondition p must be a positive, non-zero integer
+   * <P>
+   * @param p number of prizes to create
+   */
+  public void setPrizes(int p)
+  {
+    totalPrizes = p;
+  }
+
+  /**
+   * Set the designated number of traps in the game. This can be used to customize the gameboard configuration.
+   * <P>
+   * precondition t must be a positive, non-zero integer
+   * <P>
+   * @param t number of traps to create
+   */
+  public void setTraps(int t)
+  {
+    totalTraps = t;
+  }
+
+  /**
+   * Set the designated number of walls in the game. This can be used to customize the gameboard configuration.
+   * <P>
+   * precondition t must be a positive, non-zero integer
+   * <P>
+   * @param w number of walls to create
+   */
+  public void setWalls(int w)
+  {
+    totalWalls = w;
+  }
+
+  /**
+   * Set the board configuration and every scoring constant at once. Takes effect from the next
+   * {@link #createBoard()} for the board and immediately for the scores.
+   * <P>
+   * @param config the configuration to copy
+   */
+  public void setConfig(GameConfig config)
+  {
+    totalWalls = config.getWalls();
+    totalTraps = config.getTraps();
+    totalPrizes = config.getPrizes();
+    prizeVal = config.getPrizeVal();
+    trapVal = config.getTrapVal();
+    endVal = config.getEndVal();
+    trapRemovalCost = config.getTrapRemovalCost();
+    collisionLimit = config.getCollisionLimit();
+    stepPenalty = config.getStepPenalty();
+    declineCost = config.getDeclineCost();
+  }
+
+  /**
+   * @return a copy of the board configuration and scoring constants of the game
+   */
+  public GameConfig getConfig()
+  {
+    GameConfig config = new GameConfig();
+    config.setWalls(totalWalls);
+    config.setTraps(totalTraps);
+    config.setPrizes(totalPrizes);
+    config.setPrizeVal(prizeVal);
+    config.setTrapVal(trapVal);
+    config.setEndVal(endVal);
+    config.setTrapRemovalCost(trapRemovalCost);
+    config.setCollisionLimit(collisionLimit);
+    config.setStepPenalty(stepPenalty);
+    config.setDeclineCost(declineCost);
+    return config;
+  }
+
+  /**
+   * Reset the board to replay existing game. The method can be called at any time but results in a penalty if called
+   * before the player reaches the finish location.
+   * <P>
+   * @return positive score for reaching the finish location, penalty otherwise
+   */
+  public int replay()
+  {
+    int win = playerAtEnd();
+
+    // "reactivate" every prize and trap of the layout
+    room.restore();
+
+    // move player to start of board and reset counters
+    resetPlayer();
+
+    // randomize finish location for replay
+    finishLocationTop = nextBoolean();
+
+    return win;
+  }
+
+  /**
+   * Create a completely new board layout (for restart when player spawns on trap)
+   * @return 0 (no score change for restart)
+   */
+  public int restart()
+  {
+    // create new board with different layout
+    createBoard();
+
+    // move player to start of board and reset counters
+    resetPlayer();
+
+    // randomize finish location for restart
+    finishLocationTop = nextBoolean();
+
+    return 0; // no score change for restart
+  }
+
+ /**
+  * End the game, checking if the player made it to the far right wall.
+  * <P>
+  * @return positive score for reaching the far right wall, penalty otherwise
+  */
+  public int endGame()
+  {
+    return playerAtEnd();
+  }
+
+  /**
+   * Check if the player is currently at the randomized finish location.
+   * @return true if at finish, false otherwise
+   */
+  public boolean isAtFinish()
+  {
+    return playerCell == finishCell();
+  }
+
+  /**
+   * The traps next to the player, as find and check report them. Unlike {@link #isTrap(int)} this
+   * says nothing and is a few bit operations, read off the live traps that springing, removing and
+   * restarting already keep up to date.
+   * <P>
+   * @return a mask with bit Board.RIGHT, LEFT, UP or DOWN set for each direction with a live trap
+   */
+  public int getAdjacentTraps()
+  {
+    return room.adjacentTraps(playerCell);
+  }
+
+  /*------------------- read-only view for renderers -------------------*/
+
+  // Renderers draw Board.COLS x Board.ROWS cells. On the normal board that is the whole room and
+  // these are the engine's own cells; in a large room it is the view around the player, which
+  // scrolls as the player moves, and cells are numbered within the view as on a Board.
+
+  /**
+   * @return the cell of the randomized finish location, top-right or bottom-right, -1 if it is
+   *         out of the view
+   */
+  public int getFinishCell()
+  {
+    if (room == small) return finishCell();
+    scrollView();
+    return toView(finishCell());
+  }
+
+  /** @return the x pixel location of the player */
+  public int getPlayerX()
+  {
+    return Board.col(getPlayerCell()) * SPACE_SIZE + START_LOC_X;
+  }
+
+  /** @return the y pixel location of the player */
+  public int getPlayerY()
+  {
+    return Board.row(getPlayerCell()) * SPACE_SIZE + START_LOC_Y;
+  }
+
+  /** @return the cell the player is on */
+  public int getPlayerCell()
+  {
+    if (room == small) return playerCell;
+    scrollView();
+    return toView(playerCell);
+  }
+
+  /**
+   * @return the layout of the board, or of the view around the player in a large room, with the
+   *         view's live traps and prizes as its traps and prizes
+   */
+  public Board getBoard()
+  {
+    if (room == small) return small.board;
+    scrollView();
+    room.viewport(viewCol, viewRow, view);
+    return view;
+  }
+
+  /** @return the cells holding a trap that has not been sprung or removed */
+  public long getLiveTraps()
+  {
+    return room == small ? small.liveTraps : getBoard().traps;
+  }
+
+  /** @return the cells holding a prize that has not been picked up */
+  public long getLivePrizes()
+  {
+    return room == small ? small.livePrizes : getBoard().prizes;
+  }
+
+  /** @return the column of the room shown in the left column of the view, 0 on the normal board */
+  public int getViewCol()
+  {
+    if (room == small) return 0;
+    scrollView();
+    return viewCol;
+  }
+
+  /** @return the row of the room shown in the top row of the view, 0 on the normal board */
+  public int getViewRow()
+  {
+    if (room == small) return 0;
+    scrollView();
+    return viewRow;
+  }
+
+  /**
+   * @return an immutable copy of the layout's walls, the live traps and prizes and the player, for
+   *         a renderer on another thread
+   */
+  public GameSnapshot snapshot()
+  {
+    if (room == small)
+      return new GameSnapshot(small.board.getVersion(), small.board.getWallsRight(), small.board.getWallsDown(),
+          small.liveTraps, small.livePrizes, playerCell, playerSteps, trapCollisions);
+    Board board = getBoard();
+    return new GameSnapshot(board.getVersion(), board.getWallsRight(), board.getWallsDown(), board.traps, board.prizes,
+        toView(playerCell), playerSteps, trapCollisions);
+  }
+
+  /** @return true if the finish is top-right, false if it is bottom-right */
+  public boolean isFinishLocationTop()
+  {
+    return finishLocationTop;
+  }
+
+  /*------------------- state transfer for searches -------------------*/
+
+  // bit layout of saveState(): first long
+  static final int CELL_SHIFT = 40;
+  static final int REMOVALS_SHIFT = 46;
+  static final int CHANCES_SHIFT = 48;
+  static final int STEP_PENALTY_BIT = 50;
+  static final int PENDING_BIT = 51;
+  static final int FINISH_TOP_BIT = 52;
+  static final int ON_TRAP_BIT = 53;
+  static final int COLLISIONS_SHIFT = 54;
+  static final int MAX_COLLISIONS = (1 << 10) - 1;
+  // second long
+  static final int STEPS_SHIFT = 40;
+  static final int MAX_STEPS = (1 << 24) - 1;
+
+  /**
+   * Write the play state (player, live traps and prizes, counters and flags, but not the layout,
+   * configuration or random stream) into two longs. Collisions and steps saturate at
+   * MAX_COLLISIONS and MAX_STEPS.
+   */
+  void saveState(long[] dst, int off)
+  {
+    dst[off] = small.liveTraps
+        | (long)playerCell << CELL_SHIFT
+        | (long)trapRemovals << REMOVALS_SHIFT
+        | (long)removalChancesUsed << CHANCES_SHIFT
+        | (stepPenaltyActive ? 1L << STEP_PENALTY_BIT : 0)
+        | (pendingTrapCollision ? 1L << PENDING_BIT : 0)
+        | (finishLocationTop ? 1L << FINISH_TOP_BIT : 0)
+        | (onTrapAfterRemovals ? 1L << ON_TRAP_BIT : 0)
+        | (long)Math.min(trapCollisions, MAX_COLLISIONS) << COLLISIONS_SHIFT;
+    dst[off + 1] = small.livePrizes | (long)Math.min(playerSteps, MAX_STEPS) << STEPS_SHIFT;
+  }
+
+  /**
+   * Restore the play state written by {@link #saveState(long[], int)}.
+   */
+  void loadState(long[] src, int off)
+  {
+    long a = src[off];
+    long b = src[off + 1];
+    small.liveTraps = a & Board.ALL_CELLS;
+    playerCell = (int)(a >>> CELL_SHIFT) & 0x3F;
+    trapRemovals = (int)(a >>> REMOVALS_SHIFT) & 3;
+    removalChancesUsed = (int)(a >>> CHANCES_SHIFT) & 3;
+    stepPenaltyActive = (a & 1L << STEP_PENALTY_BIT) != 0;
+    pendingTrapCollision = (a & 1L << PENDING_BIT) != 0;
+    finishLocationTop = (a & 1L << FINISH_TOP_BIT) != 0;
+    onTrapAfterRemovals = (a & 1L << ON_TRAP_BIT) != 0;
+    trapCollisions = (int)(a >>> COLLISIONS_SHIFT);
+    small.livePrizes = b & Board.ALL_CELLS;
+    playerSteps = (int)(b >>> STEPS_SHIFT);
+  }
+
+  /**
+   * Make this engine a copy of another on the normal board: same layout, configuration and play
+   * state. The random stream and output are not copied.
+   */
+  void copyFrom(GameEngine other)
+  {
+    other.requireSmall();
+    room = small;
+    small.copyFrom(other.small);
+    totalWalls = other.totalWalls;
+    totalPrizes = other.totalPrizes;
+    totalTraps = other.totalTraps;
+    prizeVal = other.prizeVal;
+    trapVal = other.trapVal;
+    endVal = other.endVal;
+    offGridVal = other.offGridVal;
+    hitWallVal = other.hitWallVal;
+    trapRemovalCost = other.trapRemovalCost;
+    collisionLimit = other.collisionLimit;
+    stepPenalty = other.stepPenalty;
+    declineCost = other.declineCost;
+    playerCell = other.playerCell;
+    playerSteps = other.playerSteps;
+    trapCollisions = other.trapCollisions;
+    trapRemovals = other.trapRemovals;
+    removalChancesUsed = other.removalChancesUsed;
+    finishLocationTop = other.finishLocationTop;
+    pendingTrapCollision = other.pendingTrapCollision;
+    onTrapAfterRemovals = other.onTrapAfterRemovals;
+    stepPenaltyActive = other.stepPenaltyActive;
+  }
+
+  /**
+   * The most points the rest of the game can still earn: every live prize the player can walk to, every
+   * live trap next to such a cell sprung, and the finish. A search keeps the same walkable cells for
+   * a whole game, usually those reachable without stepping on the finish, which ends the game.
+   * <P>
+   * @param walkable cells the player can still stand on
+   * @return the bound on the points still to be earned
+   */
+  int rewardBound(long walkable)
+  {
+    long springable = walkable | Board.neighbors(walkable);
+    return prizeVal * Long.bitCount(small.livePrizes & walkable) + trapVal * Long.bitCount(small.liveTraps & springable) + endVal;
+  }
+
+  /*------------------- packed games -------------------*/
+
+  /** Number of longs {@link #storePacked(long[], int)} writes. */
+  public static final int PACKED_WORDS = 5;
+
+  /**
+   * Store the whole game in PACKED_WORDS longs: the play state of the player, the seed of the board
+   * layout, the random stream and the seed of the game. The board itself is not stored, so a parked
+   * game costs 40 bytes; {@link #loadPacked(long[], int)} generates the layout again from its seed.
+   * Collisions and steps saturate at MAX_COLLISIONS and MAX_STEPS.
+   * <P>
+   * @param dst where to store the game
+   * @param off index of the first long
+   * @throws IllegalStateException if the game is played in a large room
+   */
+  public void storePacked(long[] dst, int off)
+  {
+    requireSmall();
+    saveState(dst, off);
+    dst[off + 2] = small.getSeed();
+    dst[off + 3] = randState;
+    dst[off + 4] = seed;
+  }
+
+  /**
+   * Continue a game stored by {@link #storePacked(long[], int)}. The layout is generated again with this
+   * engine's wall, trap and prize counts, unless the board already holds it, so the game must have been
+   * stored by an engine with the same configuration.
+   * <P>
+   * @param src where the game is stored
+   * @param off index of the first long
+   * @throws IllegalStateException if the engine plays in a large room
+   */
+  public void loadPacked(long[] src, int off)
+  {
+    requireSmall();
+    long layout = src[off + 2];
+    Board board = small.board;
+    if (board.getVersion() == 0 || board.getSeed() != layout)
+      BoardGenerator.generate(board, layout, totalWalls, totalTraps, totalPrizes);
+    loadState(src, off);
+    randState = src[off + 3];
+    seed = src[off + 4];
+  }
+
+  /*------------------- private methods -------------------*/
+
+  /*
+   * The next values of the random stream, exactly those of SplittableRandom
+   */
+  private long nextLong()
+  {
+    long z = randState += GOLDEN_GAMMA;
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+
+  private boolean nextBoolean()
+  {
+    long z = randState += GOLDEN_GAMMA;
+    z = (z ^ (z >>> 33)) * 0x62A9D9ED799705F5L;
+    return (int)(((z ^ (z >>> 28)) * 0xCB24D0A5C88C35B3L) >>> 32) < 0;
+  }
+
+  /*
+   * Post an event if there is a bus
+   */
+  private void post(GameEvent event, int a, int b)
+  {
+    if (events != null) events.post(event, a, b);
+  }
+
+  /*
+   * Move player to start of board and reset counters
+   */
+  private void resetPlayer()
+  {
+    playerCell = START_CELL;
+    playerSteps = 0;
+    trapCollisions = 0;
+    trapRemovals = 0;
+    removalChancesUsed = 0;
+    onTrapAfterRemovals = false;
+    stepPenaltyActive = false;
+    pendingTrapCollision = false;
+  }
+
+  /*
+   * The cell at the given pixel offset from the player, -1 if that is off the grid
+   */
+  private int cellAt(int dx, int dy)
+  {
+    int width = room.getWidth();
+    int col = playerCell % width + dx / SPACE_SIZE;
+    int row = playerCell / width + dy / SPACE_SIZE;
+    return col >= 0 && col < width && row >= 0 && row < room.getHeight() ? row * width + col : -1;
+  }
+
+  /*
+   * The cell next to the player in a direction, -1 if that is off the grid
+   */
+  private int neighbor(int dir)
+  {
+    if (room == small) return Board.distanceToEdge(playerCell, dir) > 0 ? Board.neighbor(playerCell, dir) : -1;
+    switch (dir)
+    {
+      case Board.RIGHT: return cellAt(SPACE_SIZE, 0);
+      case Board.LEFT: return cellAt(-SPACE_SIZE, 0);
+      case Board.UP: return cellAt(0, -SPACE_SIZE);
+      default: return cellAt(0, SPACE_SIZE);
+    }
+  }
+
+  /*
+   * The cell of the randomized finish location in the room
+   */
+  private int finishCell()
+  {
+    int width = room.getWidth();
+    return (finishLocationTop ? 0 : (room.getHeight() - 1) * width) + width - 1;
+  }
+
+  /*
+   * Scroll the view of a large room to keep the player in its middle, clamped to the room
+   */
+  private void scrollView()
+  {
+    int width = room.getWidth();
+    viewCol = Math.max(0, Math.min(playerCell % width - Board.COLS / 2, width - Board.COLS));
+    viewRow = Math.max(0, Math.min(playerCell / width - Board.ROWS / 2, room.getHeight() - Board.ROWS));
+  }
+
+  /*
+   * The cell of the view showing a cell of a large room, -1 if it is out of the view
+   */
+  private int toView(int cell)
+  {
+    int width = room.getWidth();
+    int col = cell % width - viewCol;
+    int row = cell / width - viewRow;
+    return Board.onBoard(col, row) ? Board.cell(col, row) : -1;
+  }
+
+  private void requireSmall()
+  {
+    if (room != small) throw new IllegalStateException("only a game on the normal board can be searched or packed");
+  }
+
+  /*
+   * The board direction of a move given as pixel amounts
+   */
+  private static int direction(int incrx, int incry)
+  {
+    if (incrx < 0) return Board.LEFT;
+    if (incry < 0) return Board.UP;
+    if (incry > 0) return Board.DOWN;
+    return Board.RIGHT;
+  }
+
+  /**
+   * Checks if player is at the finish location (randomized top-right or bottom-right)
+   * @return positive score for reaching finish, penalty otherwise
+   */
+  private int playerAtEnd()
+  {
+    int score;
+
+    if (isAtFinish())
+    {
+      // Check collision limit
+      if (trapCollisions > collisionLimit) {
+        post(GameEvent.TOO_MANY_COLLISIONS, 0, 0);
+        score = -TOO_MANY_COLLISIONS_PENALTY;
+      } else {
+        post(GameEvent.FINISHED, 0, 0);
+        score = endVal;
+      }
+    }
+    else
+    {
+      post(GameEvent.QUIT_EARLY, 0, 0);
+      score = -endVal;
+    }
+    return score;
+  }
+}
@@ -0,0 +1,61 @@
+/**
+ * Everything the engine reports while a game is played, posted to an {@link EventBus} instead of
+ * being printed where it happens.
+ * <P>
+ * An event carries up to two numbers, e.g. the collisions so far and the limit. Its message is
+ * kept as the text around those numbers, so a sink can write it without building a String.
+ */
+public enum GameEvent
+{
+    OFF_GRID("OFF THE GRID!"),
+    WALL_HIT("A WALL IS IN THE WAY"),
+    TRAP_AHEAD("A TRAP IS AHEAD"),
+    TRAP_SPRUNG("TRAP IS SPRUNG!"),
+    NO_TRAP_TO_SPRING("THERE IS NO TRAP HERE TO SPRING"),
+    PRIZE_PICKED("YOU PICKED UP A PRIZE!"),
+    NO_PRIZE("OOPS, NO PRIZE HERE"),
+    TRAP_COLLISION("TRAP COLLISION! (", "/", ")"),          // collisions, limit
+    TRAP_REMOVED("TRAP REMOVED! (", "/2 removals used)"),   // removals
+    REMOVAL_LIMIT("TRAP REMOVAL LIMIT REACHED! Traps are now permanent."),
+    NO_TRAP_TO_REMOVE("NO TRAP HERE TO REMOVE!"),
+    TOO_MANY_COLLISIONS("TOO MANY TRAP COLLISIONS! Pay 5 points to finish anyway."),
+    FINISHED("YOU MADE IT!"),
+    QUIT_EARLY("OOPS, YOU QUIT TOO SOON!");
+
+    private final String[] text;
+
+    GameEvent(String... text)
+    {
+        this.text = text;
+    }
+
+    /**
+     * @return how many numbers the message shows, 0 to 2
+     */
+    public int arguments()
+    {
+        return text.length - 1;
+    }
+
+    /**
+     * @param i 0 to arguments()
+     * @return the text before number i, or after the last number for i == arguments()
+     */
+    public String text(int i)
+    {
+        return text[i];
+    }
+
+    /**
+     * @return the message with the event's numbers filled in
+     */
+    public String format(int a, int b)
+    {
+        switch (arguments())
+        {
+            case 0: return text[0];
+            case 1: return text[0] + a + text[1];
+            default: return text[0] + a + text[1] + b + text[2];
+        }
+    }
+}
@@ -2,110 +2,114 @@ import java.awt.Color;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.Image;
-import java.awt.Point;
-import java.awt.Rectangle;
+import java.awt.GraphicsConfiguration;
+import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
-import java.io.File;
-import java.util.Random;
-import javax.imageio.ImageIO;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import javax.swing.JComponent;
 import javax.swing.JFrame;
+import javax.swing.SwingUtilities;
 
 /**
  * A Game board on which to place and move players.
+ * The rules live in {@link GameEngine}; this component only renders an engine
+ * and forwards the game API to it.
  * 
  * @author PLTW
  * @version 1.0
  */
-public class GameGUI extends JComponent
+public class GameGUI extends JComponent implements GameLoop.View, EventSink
 {
   static final long serialVersionUID = 141L; // problem 1.4.1
 
-  private static final int WIDTH = 510;
-  private static final int HEIGHT = 360;
-  private static final int SPACE_SIZE = 60;
-  private static final int GRID_W = 8;
-  private static final int GRID_H = 5;
-  private static final int START_LOC_X = 15;
-  private static final int START_LOC_Y = 15;
-  
-  // initial placement of player
-  int x = START_LOC_X; 
-  int y = START_LOC_Y;
-
-  // grid image to show in background
-  private Image bgImage;
-
-  // player image and info
-  private Image player;
-  private Point playerLoc;
-  private int playerSteps;
-
-  // walls, prizes, traps
-  private int totalWalls;
-  private Rectangle[] walls; 
-  private Image prizeImage;
-  private int totalPrizes;
-  private Rectangle[] prizes;
-  private int totalTraps;
-  private Rectangle[] traps;
-
-  // scores, sometimes awarded as (negative) penalties
-  private int prizeVal = 10;
-  private int trapVal = 5;
-  private int endVal = 10;
-  private int offGridVal = 5; // penalty only
-  private int hitWallVal = 5;  // penalty only
-  private int trapRemovalCost = 5;
-  private int collisionLimit = 6;
-  private int stepPenalty = 1;
-  
-  // trap collision tracking
-  private int trapCollisions = 0;
-  private int trapRemovals = 0;
-  private int removalChancesUsed = 0; // counts YES detrap uses only (max 2)
-  private boolean finishLocationTop = false; // false = bottom-right, true = top-right
-  private boolean pendingTrapCollision = false;
-  private boolean onTrapAfterRemovals = false; // true when standing on trap after 2 removals used
-  private boolean stepPenaltyActive = false; // true after 2 removals used and next trap hit
-  
-
-  // game frame
+  private static final int WIDTH = GameEngine.WIDTH;
+  private static final int HEIGHT = GameEngine.HEIGHT;
+  private static final int SPACE_SIZE = GameEngine.SPACE_SIZE;
+
+  // packed commands sent for keys
+  private static final int KEY_UP = Command.UP.packed();
+  private static final int KEY_LEFT = Command.LEFT.packed();
+  private static final int KEY_RIGHT = Command.RIGHT.packed();
+  private static final int KEY_DOWN = Command.DOWN.packed();
+  private static final int KEY_SPRING = Command.SPRING_MODE.packed();
+  private static final int KEY_SPACE = Command.JUMP_MODE.packed();
+  private static final int KEY_HELP = Command.HELP.packed();
+  private static final int KEY_QUIT = Command.QUIT.packed();
+  private static final int KEY_YES = Command.YES.packed();
+  private static final int KEY_NO = Command.NO.packed();
+  private static final int KEY_PICKUP = Command.PICKUP.packed();
+  private static final int KEY_CHECK = Command.CHECK.packed();
+  private static final int KEY_RESTART = Command.RESTART.packed();
+
+  // the rules and state of the game being shown
+  private final GameEngine engine;
+
+  // cached board layers: grid and walls, and that plus the prizes still in play
+  private Image staticLayer;
+  private Image sceneLayer;
+  private int staticVersion = -1;
+  private long scenePrizes = -1;
+
+  // share of the remaining distance to the player's cell the sprite covers each tick
+  private static final double FOLLOW = 0.35;
+
+  // the sprite while a GameLoop animates it, in pixels: where it is and where it was a tick ago
+  private double spriteX = -1;
+  private double spriteY;
+  private double lastSpriteX;
+  private double lastSpriteY;
+  private int spriteVersion = -1;
+  private int spriteViewCol; // the view of a large room the sprite moved in
+  private int spriteViewRow;
+
+  // the last frame the game thread published for the event thread to paint, null before the first
+  private volatile Frame published;
+
+  // game frame, null when rendering without a window
   private JFrame frame;
 
+  // the last event of the batch being delivered, for the title; only used on the bus's thread
+  private GameEvent titleEvent;
+  private int titleA;
+  private int titleB;
+
   /**
    * Constructor for the GameGUI class.
    * Creates a frame with a background image and a player that will move around the board.
    */
   public GameGUI()
   {
-    
-    try {
-      bgImage = ImageIO.read(new File("grid.png"));      
-    } catch (Exception e) {
-      System.err.println("Could not open file grid.png");
-    }      
-    try {
-      prizeImage = ImageIO.read(new File("coin.png"));      
-    } catch (Exception e) {
-      System.err.println("Could not open file coin.png");
-    }
-  
-    // player image, student can customize this image by changing file on disk
-    try {
-      player = ImageIO.read(new File("player.png"));      
-    } catch (Exception e) {
-     System.err.println("Could not open file player.png");
-    }
-    // save player location
-    playerLoc = new Point(x,y);
+    this(new GameEngine());
+    openWindow();
+  }
 
+  /**
+   * Creates a component that renders the given engine without opening a window,
+   * e.g. to paint into an offscreen image.
+   * <P>
+   * @param engine the game to render
+   */
+  public GameGUI(GameEngine engine)
+  {
+    this.engine = engine;
+    // images are shared by every board and load in the background while the window is built
+    Assets.preload();
+  }
+
+  /**
+   * Open a window showing the board, with the keyboard sending commands to the input queue.
+   * Call at most once.
+   */
+  public void openWindow()
+  {
     // create the game frame
     frame = new JFrame();
     frame.setTitle("EscapeRoom");
     frame.setSize(WIDTH, HEIGHT);
-    frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+    frame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
     frame.add(this);
     frame.setResizable(false); 
     // Use KeyListener to capture real keyboard input
@@ -114,18 +118,17 @@ public class GameGUI extends JComponent
     frame.setVisible(true);
     this.requestFocusInWindow();
     frame.requestFocus();
+  }
 
-    // set default config
-    totalWalls = 20;
-    totalPrizes = 3;
-    totalTraps = 8;
-    
-    // randomize finish location (top-right or bottom-right)
-    Random rand = new Random();
-    finishLocationTop = rand.nextBoolean();
+  /**
+   * @return the engine holding the rules and state rendered by this component
+   */
+  public GameEngine getEngine()
+  {
+    return engine;
   }
 
-  /** Use a KeyListener to enqueue commands directly from keyboard events */
+  /** Use a KeyListener to enqueue packed commands directly from keyboard events */
   private void installKeyListener()
   {
     KeyAdapter adapter = new KeyAdapter()
@@ -138,46 +141,46 @@ public class GameGUI extends JComponent
         {
           case KeyEvent.VK_W:
           case KeyEvent.VK_UP:
-            EscapeRoom.enqueueCommand("u");
+            offer(KEY_UP);
             break;
           case KeyEvent.VK_A:
           case KeyEvent.VK_LEFT:
-            EscapeRoom.enqueueCommand("l");
+            offer(KEY_LEFT);
             break;
           case KeyEvent.VK_D:
           case KeyEvent.VK_RIGHT:
-            EscapeRoom.enqueueCommand("r");
+            offer(KEY_RIGHT);
             break;
           case KeyEvent.VK_S:
           case KeyEvent.VK_DOWN:
-            EscapeRoom.enqueueCommand("d");
+            offer(KEY_DOWN);
             break;
           case KeyEvent.VK_T:
-            EscapeRoom.enqueueCommand("t");
+            offer(KEY_SPRING);
             break;
           case KeyEvent.VK_SPACE:
-            EscapeRoom.enqueueCommand("space");
+            offer(KEY_SPACE);
             break;
           case KeyEvent.VK_H:
-            EscapeRoom.enqueueCommand("h");
+            offer(KEY_HELP);
             break;
           case KeyEvent.VK_Q:
-            EscapeRoom.enqueueCommand("q");
+            offer(KEY_QUIT);
             break;
           case KeyEvent.VK_Y:
-            EscapeRoom.enqueueCommand("y");
+            offer(KEY_YES);
             break;
           case KeyEvent.VK_N:
-            EscapeRoom.enqueueCommand("n");
+            offer(KEY_NO);
             break;
           case KeyEvent.VK_P:
-            EscapeRoom.enqueueCommand("p");
+            offer(KEY_PICKUP);
             break;
           case KeyEvent.VK_C:
-            EscapeRoom.enqueueCommand("c");
+            offer(KEY_CHECK);
             break;
           case KeyEvent.VK_R:
-            EscapeRoom.enqueueCommand("restart");
+            offer(KEY_RESTART);
             break;
           default:
             break;
@@ -189,249 +192,91 @@ public class GameGUI extends JComponent
     frame.addKeyListener(adapter);
   }
 
+  /*------------------- game API, delegated to the engine -------------------*/
+
  /**
   * After a GameGUI object is created, this method adds the walls, prizes, and traps to the gameboard.
-  * Note that traps and prizes may occupy the same location.
+  * Every trap is on a cell of its own, one bit per trap, and so is every prize; a trap and
+  * a prize are placed independently and may share a cell.
   */
   public void createBoard()
   {
-    traps = new Rectangle[totalTraps];
-    createTraps();
-    
-    prizes = new Rectangle[totalPrizes];
-    createPrizes();
-
-    walls = new Rectangle[totalWalls];
-    createWalls();
+    engine.createBoard();
+    refresh();
   }
 
   /**
    * Increment/decrement the player location by the amount designated.
-   * This method checks for bumping into walls, going off the grid, and trap collisions.
-   * <P>
-   * precondition: amount to move is not larger than the board, otherwise player may appear to disappear
-   * postcondition: increases number of steps even if the player did not actually move (e.g. bumping into a wall)
-   * <P>
-   * @param incrx amount to move player in x direction
-   * @param incry amount to move player in y direction
-   * @return penalty score for hitting a wall, going off grid, or trap collision, 0 otherwise
+   * @see GameEngine#movePlayer(int, int)
    */
   public int movePlayer(int incrx, int incry)
   {
-      int perStepStickyPenalty = 0;
-      // Apply continuous -1 per step while currently standing on a trap after removals
-      if (trapRemovals >= 2 && isOnTrap())
-      {
-        perStepStickyPenalty -= stepPenalty;
-      }
-      int newX = x + incrx;
-      int newY = y + incry;
-      
-      // increment regardless of whether player really moves
-      playerSteps++;
-
-      // check if off grid horizontally and vertically
-      if ( (newX < 0 || newX > WIDTH-SPACE_SIZE) || (newY < 0 || newY > HEIGHT-SPACE_SIZE) )
-      {
-        System.out.println ("OFF THE GRID!");
-        // apply trap step penalty if standing on a trap and removals are exhausted
-        if (trapRemovals >= 2 && isOnTrap()) return perStepStickyPenalty;
-        return perStepStickyPenalty; // otherwise no score penalty
-      }
-
-      // determine if a wall is in the way
-      for (Rectangle r: walls)
-      {
-        // this rect. location
-        int startX =  (int)r.getX();
-        int endX  =  (int)r.getX() + (int)r.getWidth();
-        int startY =  (int)r.getY();
-        int endY = (int) r.getY() + (int)r.getHeight();
-
-        // (Note: the following if statements could be written as huge conditional but who wants to look at that!?)
-        // moving RIGHT, check to the right
-        if ((incrx > 0) && (x <= startX) && (startX <= newX) && (y >= startY) && (y <= endY))
-        {
-          System.out.println("A WALL IS IN THE WAY");
-          // apply trap step penalty if standing on a trap and removals are exhausted
-          if (trapRemovals >= 2 && isOnTrap()) return perStepStickyPenalty;
-          return perStepStickyPenalty; // otherwise no score penalty for hitting a wall
-        }
-        // moving LEFT, check to the left
-        else if ((incrx < 0) && (x >= startX) && (startX >= newX) && (y >= startY) && (y <= endY))
-        {
-          System.out.println("A WALL IS IN THE WAY");
-          if (trapRemovals >= 2 && isOnTrap()) return perStepStickyPenalty;
-          return perStepStickyPenalty;
-        }
-        // moving DOWN check below
-        else if ((incry > 0) && (y <= startY && startY <= newY && x >= startX && x <= endX))
-        {
-          System.out.println("A WALL IS IN THE WAY");
-          if (trapRemovals >= 2 && isOnTrap()) return perStepStickyPenalty;
-          return perStepStickyPenalty;
-        }
-        // moving UP check above
-        else if ((incry < 0) && (y >= startY) && (startY >= newY) && (x >= startX) && (x <= endX))
-        {
-          System.out.println("A WALL IS IN THE WAY");
-          if (trapRemovals >= 2 && isOnTrap()) return -stepPenalty;
-          return 0;
-        }     
-      }
-
-      // all is well, move player
-      x += incrx;
-      y += incry;
-      
-      // Check for trap collision at new location
-      int trapPenalty = checkTrapCollision();
+    int delta = engine.movePlayer(incrx, incry);
+    refresh();
+    return delta;
+  }
 
-      // After both removals are used and next trap is hit, apply -1 on every step
-      if (stepPenaltyActive)
-      {
-        trapPenalty -= stepPenalty;
-      }
-      
-      repaint();   
-      return perStepStickyPenalty + trapPenalty;   
+  /**
+   * Jump two spaces in one direction, repainting once.
+   * @see GameEngine#jump(int, int)
+   */
+  public int jump(int incrx, int incry)
+  {
+    int delta = engine.jump(incrx, incry);
+    refresh();
+    return delta;
   }
 
   /**
-   * Check the space adjacent to the player for a trap. The adjacent location is one space away from the player, 
-   * designated by newx, newy.
-   * <P>
-   * precondition: newx and newy must be the amount a player regularly moves, otherwise an existing trap may go undetected
-   * <P>
-   * @param newx a location indicating the space to the right or left of the player
-   * @param newy a location indicating the space above or below the player
-   * @return true if the new location has a trap that has not been sprung, false otherwise
+   * Check the space adjacent to the player for a trap.
+   * @see GameEngine#isTrap(int, int)
    */
   public boolean isTrap(int newx, int newy)
   {
-    double px = x + newx;
-    double py = y + newy;
-
-
-    for (Rectangle r: traps)
-    {
-      // DEBUG: System.out.println("trapx:" + r.getX() + " trapy:" + r.getY() + "\npx: " + px + " py:" + py);
-      // zero size traps have already been sprung, ignore
-      if (r.getWidth() > 0)
-      {
-        // if new location of player has a trap, return true
-        if (r.contains(px, py))
-        {
-          System.out.println("A TRAP IS AHEAD");
-          return true;
-        }
-      }
-    }
-    // there is no trap where player wants to go
-    return false;
+    boolean trap = engine.isTrap(newx, newy);
+    engine.flushEvents();
+    return trap;
   }
 
   /**
-   * Spring the trap. Traps can only be sprung once and attempts to spring
-   * a sprung task results in a penalty.
-   * <P>
-   * precondition: newx and newy must be the amount a player regularly moves, otherwise an existing trap may go unsprung
-   * <P>
-   * @param newx a location indicating the space to the right or left of the player
-   * @param newy a location indicating the space above or below the player
-   * @return a positive score if a trap is sprung, otherwise a negative penalty for trying to spring a non-existent trap
+   * Spring the trap next to the player.
+   * @see GameEngine#springTrap(int, int)
    */
   public int springTrap(int newx, int newy)
   {
-    double px = x + newx;
-    double py = y + newy;
-
-    // check all traps, some of which may be already sprung
-    for (Rectangle r: traps)
-    {
-      // DEBUG: System.out.println("trapx:" + r.getX() + " trapy:" + r.getY() + "\npx: " + px + " py:" + py);
-      if (r.contains(px, py))
-      {
-        // zero size traps indicate it has been sprung, cannot spring again, so ignore
-        if (r.getWidth() > 0)
-        {
-          r.setSize(0,0);
-          System.out.println("TRAP IS SPRUNG!");
-          return trapVal;
-        }
-      }
-    }
-    // no trap here, penalty
-    System.out.println("THERE IS NO TRAP HERE TO SPRING");
-    return -trapVal;
+    int delta = engine.springTrap(newx, newy);
+    refresh();
+    return delta;
   }
 
   /**
-   * Pickup a prize and score points. If no prize is in that location, this results in a penalty.
-   * <P>
-   * @return positive score if a location had a prize to be picked up, otherwise a negative penalty
+   * Pickup a prize and score points.
+   * @see GameEngine#pickupPrize()
    */
   public int pickupPrize()
   {
-    double px = x;
-    double py = y;
-
-    for (Rectangle p: prizes)
-    {
-      // DEBUG: System.out.println("prizex:" + p.getX() + " prizey:" + p.getY() + "\npx: " + px + " py:" + py);
-      // if location has a prize, pick it up
-      if (p.getWidth() > 0 && p.contains(px, py))
-      {
-        System.out.println("YOU PICKED UP A PRIZE!");
-        p.setSize(0,0);
-        repaint();
-        return prizeVal;
-      }
-    }
-    System.out.println("OOPS, NO PRIZE HERE");
-    return 0; // no penalty for trying to pick up when no prize is present  
+    int delta = engine.pickupPrize();
+    refresh();
+    return delta;
   }
 
   /**
    * Return the numbers of steps the player has taken.
-   * <P>
-   * @return the number of steps
    */
   public int getSteps()
   {
-    return playerSteps;
+    return engine.getSteps();
   }
-  
+
   /**
-   * Check if player is currently on a trap and handle collision
-   * @return penalty score for trap collision, 0 if no collision
+   * Check if player is currently on a trap and handle collision.
+   * @see GameEngine#checkTrapCollision()
    */
   public int checkTrapCollision()
   {
-    double px = x;
-    double py = y;
-    
-    for (Rectangle t: traps)
-    {
-      if (t.getWidth() > 0 && t.contains(px, py))
-      {
-        trapCollisions++;
-        System.out.println("TRAP COLLISION! (" + trapCollisions + "/" + collisionLimit + ")");
-        if (removalChancesUsed >= 2)
-        {
-          // After both removals are used, activate step penalty on next trap hit
-          stepPenaltyActive = true;
-          return -stepPenalty;
-        }
-        else
-        {
-          // still have removals left: prompt caller whether to detrap
-          pendingTrapCollision = true;
-          return 0;
-        }
-      }
-    }
-    return 0;
+    int delta = engine.checkTrapCollision();
+    engine.flushEvents();
+    return delta;
   }
 
   /**
@@ -439,7 +284,7 @@ public class GameGUI extends JComponent
    */
   public boolean hasPendingTrapCollision()
   {
-    return pendingTrapCollision;
+    return engine.hasPendingTrapCollision();
   }
 
   /**
@@ -447,75 +292,42 @@ public class GameGUI extends JComponent
    */
   public void clearPendingTrapCollision()
   {
-    pendingTrapCollision = false;
+    engine.clearPendingTrapCollision();
   }
-  
+
   /**
-   * Check if player is currently on a trap
-   * @return true if player is on a trap, false otherwise
+   * Check if player is currently on a trap.
    */
   public boolean isOnTrap()
   {
-    double px = x;
-    double py = y;
-    
-    for (Rectangle t: traps)
-    {
-      if (t.getWidth() > 0 && t.contains(px, py))
-      {
-        return true;
-      }
-    }
-    return false;
+    return engine.isOnTrap();
   }
-  
+
   /**
-   * Remove trap at player's current location
-   * @return cost of removal (negative score), or penalty if no trap or limit exceeded
+   * Remove trap at player's current location.
+   * @see GameEngine#removeTrap()
    */
   public int removeTrap()
   {
-    if (trapRemovals >= 2)
-    {
-      System.out.println("TRAP REMOVAL LIMIT REACHED! Traps are now permanent.");
-      return -trapRemovalCost;
-    }
-    
-    double px = x;
-    double py = y;
-    
-    for (Rectangle t: traps)
-    {
-      if (t.getWidth() > 0 && t.contains(px, py))
-      {
-        t.setSize(0, 0); // remove trap
-        trapRemovals++;
-        removalChancesUsed++;
-        System.out.println("TRAP REMOVED! (" + trapRemovals + "/2 removals used)");
-        return -trapRemovalCost;
-      }
-    }
-    
-    System.out.println("NO TRAP HERE TO REMOVE!");
-    return -trapRemovalCost;
+    int delta = engine.removeTrap();
+    refresh();
+    return delta;
   }
-  
+
   /**
    * Get trap collision count
-   * @return number of trap collisions
    */
   public int getTrapCollisions()
   {
-    return trapCollisions;
+    return engine.getTrapCollisions();
   }
-  
+
   /**
    * Get trap removal count
-   * @return number of trap removals used
    */
   public int getTrapRemovals()
   {
-    return trapRemovals;
+    return engine.getTrapRemovals();
   }
 
   /**
@@ -523,7 +335,7 @@ public class GameGUI extends JComponent
    */
   public int getTotalTraps()
   {
-    return totalTraps;
+    return engine.getTotalTraps();
   }
 
   /**
@@ -531,282 +343,376 @@ public class GameGUI extends JComponent
    */
   public void consumeRemovalChance()
   {
-    if (removalChancesUsed < 2) removalChancesUsed++;
+    engine.consumeRemovalChance();
   }
-  
+
   /**
-   * Set the designated number of prizes in the game.  This can be used to customize the gameboard configuration.
-   * <P>
-   * precondition p must be a positive, non-zero integer
-   * <P>
-   * @param p number of prizes to create
+   * Set the designated number of prizes in the game.
    */
   public void setPrizes(int p) 
   {
-    totalPrizes = p;
+    engine.setPrizes(p);
   }
-  
+
   /**
-   * Set the designated number of traps in the game. This can be used to customize the gameboard configuration.
-   * <P>
-   * precondition t must be a positive, non-zero integer
-   * <P>
-   * @param t number of traps to create
+   * Set the designated number of traps in the game.
    */
   public void setTraps(int t) 
   {
-    totalTraps = t;
+    engine.setTraps(t);
   }
-  
+
   /**
-   * Set the designated number of walls in the game. This can be used to customize the gameboard configuration.
-   * <P>
-   * precondition t must be a positive, non-zero integer
-   * <P>
-   * @param w number of walls to create
+   * Set the designated number of walls in the game.
    */
   public void setWalls(int w) 
   {
-    totalWalls = w;
+    engine.setWalls(w);
   }
 
   /**
-   * Reset the board to replay existing game. The method can be called at any time but results in a penalty if called
-   * before the player reaches the finish location.
-   * <P>
-   * @return positive score for reaching the finish location, penalty otherwise
+   * Reset the board to replay existing game.
+   * @see GameEngine#replay()
    */
   public int replay()
   {
-    int win = playerAtEnd();
-  
-    // resize prizes and traps to "reactivate" them
-    for (Rectangle p: prizes)
-      p.setSize(SPACE_SIZE/3, SPACE_SIZE/3);
-    for (Rectangle t: traps)
-      t.setSize(SPACE_SIZE/3, SPACE_SIZE/3);
-
-    // move player to start of board and reset counters
-    x = START_LOC_X;
-    y = START_LOC_Y;
-    playerSteps = 0;
-    trapCollisions = 0;
-    trapRemovals = 0;
-    removalChancesUsed = 0;
-    onTrapAfterRemovals = false;
-    stepPenaltyActive = false;
-    
-    // randomize finish location for replay
-    Random rand = new Random();
-    finishLocationTop = rand.nextBoolean();
-    
-    repaint();
+    int win = engine.replay();
+    refresh();
     return win;
   }
 
   /**
-   * Create a completely new board layout (for restart when player spawns on trap)
-   * @return 0 (no score change for restart)
+   * Create a completely new board layout.
+   * @see GameEngine#restart()
    */
   public int restart()
   {
-    // create new board with different layout
-    createBoard();
-    
-    // move player to start of board and reset counters
-    x = START_LOC_X;
-    y = START_LOC_Y;
-    playerSteps = 0;
-    trapCollisions = 0;
-    trapRemovals = 0;
-    removalChancesUsed = 0;
-    onTrapAfterRemovals = false;
-    stepPenaltyActive = false;
-    stepPenaltyActive = false;
-    
-    // randomize finish location for restart
-    Random rand = new Random();
-    finishLocationTop = rand.nextBoolean();
-    
-    repaint();
-    return 0; // no score change for restart
+    int delta = engine.restart();
+    refresh();
+    return delta;
   }
 
  /**
-  * End the game, checking if the player made it to the far right wall.
+  * End the game, checking if the player made it to the far right wall, and close the window.
   * <P>
   * @return positive score for reaching the far right wall, penalty otherwise
   */
   public int endGame() 
   {
-    int win = playerAtEnd();
-  
-    setVisible(false);
-    frame.dispose();
+    int win = engine.endGame();
+    engine.flushEvents();
+    close();
     return win;
   }
 
-  /*------------------- public methods not to be called as part of API -------------------*/
+  /**
+   * Hide the board and close its window.
+   */
+  public void close()
+  {
+    setVisible(false);
+    if (frame != null) frame.dispose();
+  }
 
-  /** 
-   * For internal use and should not be called directly: Users graphics buffer to paint board elements.
+  /**
+   * Run an action on the event thread when the player closes the window, e.g. to stop the game
+   * loop so the game can shut down in order. Closing the window only disposes it.
    */
-  public void paintComponent(Graphics g) {
-    super.paintComponent(g);
-    Graphics2D g2 = (Graphics2D)g;
+  public void onWindowClosing(Runnable action)
+  {
+    if (frame == null) return;
+    frame.addWindowListener(new WindowAdapter()
+    {
+      @Override
+      public void windowClosing(WindowEvent e)
+      {
+        action.run();
+      }
+    });
+  }
+
+  /**
+   * Check if the player is currently at the randomized finish location.
+   */
+  public boolean isAtFinish()
+  {
+    return engine.isAtFinish();
+  }
+
+  /**
+   * Publish the game as it is now for painting and repaint what changed since the last call:
+   * everything after a new board or a prize pickup, otherwise only where the player was and is.
+   * Must be called on the thread that changes the engine.
+   */
+  public void refresh()
+  {
+    engine.flushEvents();
+    if (spriteX < 0) publish(engine.getPlayerX(), engine.getPlayerY());
+    else publish((int)Math.round(spriteX), (int)Math.round(spriteY));
+  }
 
-    // draw grid
-    g.drawImage(bgImage, 0, 0, null);
+  /**
+   * Move the sprite a share of the way to the player's cell, so a move glides over a few ticks
+   * and a held key never leaves it far behind. A new board, replay or restart, or a large room's view
+   * scrolling under it, puts it on the player's cell at once.
+   * <P>
+   * @return true while the sprite is gliding, false once it rests on the player's cell
+   */
+  @Override
+  public boolean tick()
+  {
+    int x = engine.getPlayerX();
+    int y = engine.getPlayerY();
+    lastSpriteX = spriteX;
+    lastSpriteY = spriteY;
+    int viewCol = engine.getViewCol();
+    int viewRow = engine.getViewRow();
+    if (spriteX < 0 || engine.getBoard().getVersion() != spriteVersion || engine.getSteps() == 0
+        || viewCol != spriteViewCol || viewRow != spriteViewRow)
+    {
+      spriteVersion = engine.getBoard().getVersion();
+      spriteViewCol = viewCol;
+      spriteViewRow = viewRow;
+      spriteX = lastSpriteX = x;
+      spriteY = lastSpriteY = y;
+      return false;
+    }
+    spriteX += (x - spriteX) * FOLLOW;
+    spriteY += (y - spriteY) * FOLLOW;
+    if (Math.abs(x - spriteX) < 0.5) spriteX = x;
+    if (Math.abs(y - spriteY) < 0.5) spriteY = y;
+    return spriteX != lastSpriteX || spriteY != lastSpriteY;
+  }
 
-    // add (invisible) traps
-    for (Rectangle t : traps)
+  /**
+   * Repaint what changed: the board layers as {@link #refresh()} does, and the sprite where it
+   * was drawn and where it is now, between its last two ticks.
+   */
+  @Override
+  public void render(double alpha)
+  {
+    if (spriteX < 0)
     {
-      g2.setPaint(Color.WHITE); 
-      g2.fill(t);
+      refresh();
+      return;
     }
+    publish((int)Math.round(lastSpriteX + (spriteX - lastSpriteX) * alpha),
+            (int)Math.round(lastSpriteY + (spriteY - lastSpriteY) * alpha));
+  }
+
+  /**
+   * Remember the latest event for the window's title, e.g. after subscribing to the engine's
+   * {@link GameEngine#getEvents() events}. Does nothing without a window.
+   */
+  @Override
+  public void onEvent(GameEvent event, int a, int b)
+  {
+    if (frame == null) return;
+    titleEvent = event;
+    titleA = a;
+    titleB = b;
+  }
+
+  /**
+   * Show the last event of the batch in the window's title, one title update per batch.
+   */
+  @Override
+  public void onFlush()
+  {
+    if (titleEvent == null) return;
+    String title = "EscapeRoom - " + titleEvent.format(titleA, titleB);
+    titleEvent = null;
+    SwingUtilities.invokeLater(() -> frame.setTitle(title));
+  }
+
+  /*------------------- public methods not to be called as part of API -------------------*/
 
-    // add prizes
-    for (Rectangle p : prizes)
+  /** 
+   * For internal use and should not be called directly: Users graphics buffer to paint board elements.
+   * The grid and walls are drawn from a cached layer that is rebuilt only for a new board, and the
+   * prizes from a second layer rebuilt only when a prize is picked up or the board is reset.
+   * Everything is drawn from the last published frame, so the game thread can keep changing the
+   * engine while this paints. In a window nothing but the background is drawn until the first
+   * frame is published; only offscreen, with no game thread, is the engine read directly.
+   */
+  public void paintComponent(Graphics g) {
+    GameMetrics metrics = GameMetrics.METRICS;
+    long start = metrics == null ? 0 : System.nanoTime();
+    long key = metrics == null ? 0 : metrics.paintStarted();
+    super.paintComponent(g);
+    Frame shown = published;
+    if (shown == null)
     {
-      // picked up prizes are 0 size so don't render
-      if (p.getWidth() > 0) 
+      if (SwingUtilities.getWindowAncestor(this) != null)
       {
-      int px = (int)p.getX();
-      int py = (int)p.getY();
-      g.drawImage(prizeImage, px, py, null);
+        // the game thread is still building the board
+        g.setColor(getBackground() == null ? Color.WHITE : getBackground());
+        g.fillRect(0, 0, getWidth(), getHeight());
+        if (metrics != null) metrics.painted(start, key);
+        return;
       }
+      shown = new Frame(engine.snapshot(), engine.getPlayerX(), engine.getPlayerY());
     }
 
-    // add walls
-    for (Rectangle r : walls) 
+    // draw grid, walls and prizes
+    do
     {
-      g2.setPaint(Color.BLACK);
-      g2.fill(r);
-    }
-   
-    // draw player, saving its location
-    g.drawImage(player, x, y, 40,40, null);
-    playerLoc.setLocation(x,y);
+      g.drawImage(sceneLayer(shown.game), 0, 0, null);
+    } while (contentsLost(sceneLayer) || contentsLost(staticLayer));
+
+    // draw player
+    g.drawImage(Assets.player(), shown.spriteX, shown.spriteY, null);
+    if (metrics != null) metrics.painted(start, key);
   }
 
   /*------------------- private methods -------------------*/
 
   /*
-   * Add randomly placed prizes to be picked up.
-   * Note:  prizes and traps may occupy the same location, with traps hiding prizes
+   * Send a key's command to the game
    */
-  private void createPrizes()
+  private static void offer(int packed)
   {
-    int s = SPACE_SIZE; 
-    Random rand = new Random();
-     for (int numPrizes = 0; numPrizes < totalPrizes; numPrizes++)
-     {
-      int h = rand.nextInt(GRID_H);
-      int w = rand.nextInt(GRID_W);
-
-      Rectangle r;
-      r = new Rectangle((w*s + 15),(h*s + 15), 15, 15);
-      prizes[numPrizes] = r;
-     }
+    if (EscapeRoom.inputQueue.offer(packed) && GameMetrics.METRICS != null) GameMetrics.METRICS.keyPressed();
   }
 
   /*
-   * Add randomly placed traps to the board. They will be painted white and appear invisible.
-   * Note:  prizes and traps may occupy the same location, with traps hiding prizes
+   * Publish a frame of the engine with the sprite at x, y and ask for the parts that changed to be
+   * repainted. Nothing is published when nothing changed, so an idle game allocates nothing.
    */
-  private void createTraps()
+  private void publish(int x, int y)
   {
-    int s = SPACE_SIZE; 
-    Random rand = new Random();
-     for (int numTraps = 0; numTraps < totalTraps; numTraps++)
-     {
-      int h = rand.nextInt(GRID_H);
-      int w = rand.nextInt(GRID_W);
-
-      Rectangle r;
-      r = new Rectangle((w*s + 15),(h*s + 15), 15, 15);
-      traps[numTraps] = r;
-     }
+    Frame old = published;
+    Board board = engine.getBoard();
+    boolean sameScene = old != null && old.game.getBoardVersion() == board.getVersion()
+        && old.game.getPrizes() == engine.getLivePrizes();
+    if (sameScene && old.spriteX == x && old.spriteY == y && old.game.getPlayerCell() == engine.getPlayerCell()
+        && old.game.getTraps() == engine.getLiveTraps() && old.game.getSteps() == engine.getSteps())
+      return;
+    published = new Frame(engine.snapshot(), x, y);
+    if (GameMetrics.METRICS != null) GameMetrics.METRICS.framePublished();
+    if (!sameScene)
+    {
+      repaint();
+    }
+    else if (old.spriteX != x || old.spriteY != y)
+    {
+      repaint(old.spriteX, old.spriteY, Assets.PLAYER_SIZE, Assets.PLAYER_SIZE);
+      repaint(x, y, Assets.PLAYER_SIZE, Assets.PLAYER_SIZE);
+    }
   }
 
   /*
-   * Add walls to the board in random locations 
-   */
-  private void createWalls()
-  {
-     int s = SPACE_SIZE; 
-
-     Random rand = new Random();
-     for (int numWalls = 0; numWalls < totalWalls; numWalls++)
-     {
-      int h = rand.nextInt(GRID_H);
-      int w = rand.nextInt(GRID_W);
-
-      Rectangle r;
-       if (rand.nextInt(2) == 0) 
-       {
-         // vertical wall
-         r = new Rectangle((w*s + s - 5),h*s, 8,s);
-       }
-       else
-       {
-         /// horizontal
-         r = new Rectangle(w*s,(h*s + s - 5), s, 8);
-       }
-       walls[numWalls] = r;
-     }
-  }
-
-  /**
-   * Checks if player is at the finish location (randomized top-right or bottom-right)
-   * @return positive score for reaching finish, penalty otherwise
-   */
-  private int playerAtEnd() 
-  {
-    int score;
-    double px = x;
-    double py = y;
-    
-    // Check if at far right
-    boolean atRight = px > (WIDTH - 2*SPACE_SIZE);
-    
-    // Check if at correct vertical position based on finish location
-    boolean atCorrectY;
-    if (finishLocationTop) {
-      atCorrectY = py < SPACE_SIZE; // top area
-    } else {
-      atCorrectY = py > (HEIGHT - 2*SPACE_SIZE); // bottom area
+   * The grid with the walls, redrawn only when the board has a new layout
+   */
+  private Image staticLayer(GameSnapshot board)
+  {
+    if (!isValid(staticLayer))
+    {
+      staticLayer = createLayer();
+      staticVersion = -1;
     }
-    
-    if (atRight && atCorrectY)
+    if (board.getBoardVersion() != staticVersion)
     {
-      // Check collision limit
-      if (trapCollisions > collisionLimit) {
-        System.out.println("TOO MANY TRAP COLLISIONS! Pay 5 points to finish anyway.");
-        score = -5; // penalty for too many collisions
-      } else {
-        System.out.println("YOU MADE IT!");
-        score = endVal;
+      staticVersion = board.getBoardVersion();
+      scenePrizes = -1;
+      Graphics2D g2 = (Graphics2D)staticLayer.getGraphics();
+      g2.setColor(getBackground() == null ? Color.WHITE : getBackground());
+      g2.fillRect(0, 0, WIDTH, HEIGHT);
+      g2.drawImage(Assets.grid(), 0, 0, null);
+
+      // traps are painted white on the white grid cells and stay invisible, so they need no drawing
+      int s = SPACE_SIZE;
+      g2.setPaint(Color.BLACK);
+      for (long r = board.getWallsRight(); r != 0; r &= r - 1)
+      {
+        int c = Long.numberOfTrailingZeros(r);
+        // vertical wall
+        g2.fillRect(Board.col(c)*s + s - 5, Board.row(c)*s, 8, s);
       }
+      for (long r = board.getWallsDown(); r != 0; r &= r - 1)
+      {
+        int c = Long.numberOfTrailingZeros(r);
+        // horizontal wall
+        g2.fillRect(Board.col(c)*s, Board.row(c)*s + s - 5, s, 8);
+      }
+      g2.dispose();
+    }
+    return staticLayer;
+  }
+
+  /*
+   * The static layer with the prizes still in play, redrawn only when a prize is picked up or reset
+   */
+  private Image sceneLayer(GameSnapshot game)
+  {
+    Image base = staticLayer(game);
+    if (!isValid(sceneLayer))
+    {
+      sceneLayer = createLayer();
+      scenePrizes = -1;
     }
-    else
+    if (game.getPrizes() != scenePrizes)
     {
-      System.out.println("OOPS, YOU QUIT TOO SOON!");
-      score = -endVal;
+      scenePrizes = game.getPrizes();
+      Graphics g = sceneLayer.getGraphics();
+      g.drawImage(base, 0, 0, null);
+      Image prizeImage = Assets.coin();
+      int s = SPACE_SIZE;
+      // picked up prizes are no longer live so don't render
+      for (long p = scenePrizes; p != 0; p &= p - 1)
+      {
+        int c = Long.numberOfTrailingZeros(p);
+        g.drawImage(prizeImage, Board.col(c)*s + 15, Board.row(c)*s + 15, null);
+      }
+      g.dispose();
     }
-    return score;
+    return sceneLayer;
   }
 
-  /**
-   * Check if the player is currently at the randomized finish location.
-   * @return true if at finish, false otherwise
+  /*
+   * Whether a cached layer exists and its contents survived
    */
-  public boolean isAtFinish()
+  private boolean isValid(Image layer)
+  {
+    if (!(layer instanceof VolatileImage)) return layer != null;
+    GraphicsConfiguration gc = getGraphicsConfiguration();
+    if (gc != null && ((VolatileImage)layer).validate(gc) == VolatileImage.IMAGE_OK) return true;
+    layer.flush();
+    return false;
+  }
+
+  /*
+   * A new layer: a volatile image when the component is on screen, a plain image when painting offscreen
+   */
+  private Image createLayer()
+  {
+    GraphicsConfiguration gc = getGraphicsConfiguration();
+    Image layer = gc == null ? null : gc.createCompatibleVolatileImage(WIDTH, HEIGHT);
+    return layer != null ? layer : new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+  }
+
+  private static boolean contentsLost(Image layer)
   {
-    double px = x;
-    double py = y;
-    boolean atRight = px > (WIDTH - 2*SPACE_SIZE);
-    boolean atCorrectY = finishLocationTop ? (py < SPACE_SIZE) : (py > (HEIGHT - 2*SPACE_SIZE));
-    return atRight && atCorrectY;
+    return layer instanceof VolatileImage && ((VolatileImage)layer).contentsLost();
+  }
+
+  /*------------------- private classes -------------------*/
+
+  /*
+   * What one paint shows: a snapshot of the engine and where the sprite is drawn. Immutable, so
+   * the event thread can paint it while the game thread publishes the next one.
+   */
+  private static final class Frame
+  {
+    final GameSnapshot game;
+    final int spriteX;
+    final int spriteY;
+
+    Frame(GameSnapshot game, int spriteX, int spriteY)
+    {
+      this.game = game;
+      this.spriteX = spriteX;
+      this.spriteY = spriteY;
+    }
   }
-}
\ No newline at end of file
+}
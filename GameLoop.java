@@ -0,0 +1,163 @@
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs a game at a fixed {@value #TICKS_PER_SECOND} ticks per second, keeping input, simulation and
+ * rendering apart.
+ * <P>
+ * Each tick drains every command waiting in the {@link InputQueue} into the {@link GameSession}
+ * and then advances the view's animation by one step, so commands never wait on a frame and a held
+ * key cannot back up the queue: its repeats are all run on the next tick. Between ticks the loop
+ * renders one frame with the fraction of the next tick already elapsed, so the view can draw the
+ * player between its previous and current position and movement stays smooth at any frame rate.
+ * <P>
+ * When a tick runs late, for instance after a long paint or a GC pause, the loop catches up with
+ * up to {@value #MAX_TICKS_PER_FRAME} ticks before it renders again, skipping frames rather than
+ * ticks. If it is still behind after that, the missed time is dropped, so a stall does not turn
+ * into a burst of catch-up ticks later. Input therefore waits at most one tick, plus one frame
+ * if the loop is busy rendering, before it runs.
+ * <P>
+ * The loop only ticks while something moves. Once a tick leaves the view still and no input is
+ * waiting, the loop parks on the InputQueue until the next command arrives or {@link #stop()} is
+ * called, so an idle game uses no CPU, and the first tick after it wakes runs at once.
+ */
+public class GameLoop
+{
+    public static final int TICKS_PER_SECOND = 60;
+    /** Ticks run back to back, without rendering in between, to catch up with the clock. */
+    public static final int MAX_TICKS_PER_FRAME = 5;
+
+    private static final long TICK_NANOS = 1_000_000_000L / TICKS_PER_SECOND;
+
+    /**
+     * What a game loop draws to.
+     */
+    public interface View
+    {
+        /**
+         * Advance animations by one tick, after the tick's commands have run.
+         * <P>
+         * @return true if anything moved during the tick, false if every frame would look the same
+         *         until the next command
+         */
+        boolean tick();
+
+        /**
+         * Draw a frame.
+         * <P>
+         * @param alpha the fraction of the next tick already elapsed, from 0 to 1, to draw moving
+         *              things between where they were at the last tick and where they are heading
+         */
+        void render(double alpha);
+    }
+
+    private final GameSession session;
+    private final InputQueue input;
+    private final View view;
+
+    private volatile boolean running;
+    // the thread in run(), to wake it from stop() while it waits for input
+    private volatile Thread thread;
+    private long ticks;
+    private long frames;
+    private long droppedTicks;
+    private long maxFrameNanos;
+
+    /**
+     * @param session the game to run the commands on
+     * @param input where the commands come from
+     * @param view what to animate and draw
+     */
+    public GameLoop(GameSession session, InputQueue input, View view)
+    {
+        this.session = session;
+        this.input = input;
+        this.view = view;
+    }
+
+    /**
+     * Run the game on this thread until it is over or {@link #stop()} is called.
+     */
+    public void run()
+    {
+        thread = Thread.currentThread();
+        running = true;
+        long next = System.nanoTime();
+        long lastFrame = next;
+        boolean moving = true;
+        while (running && session.isPlaying())
+        {
+            long now = System.nanoTime();
+            int caughtUp = 0;
+            while (now - next >= 0 && caughtUp < MAX_TICKS_PER_FRAME)
+            {
+                moving = tick();
+                next += TICK_NANOS;
+                caughtUp++;
+            }
+            if (now - next >= 0)
+            {
+                // still behind after the most ticks one frame may take, drop the rest
+                droppedTicks += (now - next) / TICK_NANOS + 1;
+                next = now + TICK_NANOS;
+            }
+
+            double alpha = 1 - (double)(next - now) / TICK_NANOS;
+            view.render(Math.max(0, Math.min(1, alpha)));
+            frames++;
+            long rendered = System.nanoTime();
+            maxFrameNanos = Math.max(maxFrameNanos, rendered - lastFrame);
+            lastFrame = rendered;
+
+            if (!moving && input.size() == 0)
+            {
+                // idle: wait for a command, then tick at once; stop() unparks this thread
+                if (running && session.isPlaying()) input.awaitInput();
+                next = lastFrame = System.nanoTime();
+                moving = true;
+                continue;
+            }
+            // sleep to the next tick; parkNanos may return early, which only costs another frame
+            long wait = next - System.nanoTime();
+            if (wait > 0) LockSupport.parkNanos(this, wait);
+        }
+        running = false;
+        thread = null;
+    }
+
+    /**
+     * Make {@link #run()} return after the current frame, waking it if it is waiting for input.
+     * Can be called from any thread.
+     */
+    public void stop()
+    {
+        running = false;
+        Thread t = thread;
+        if (t != null) LockSupport.unpark(t);
+    }
+
+    /** @return the number of ticks run */
+    public long getTicks() { return ticks; }
+
+    /** @return the number of frames rendered */
+    public long getFrames() { return frames; }
+
+    /** @return the number of ticks dropped because the loop could not catch up */
+    public long getDroppedTicks() { return droppedTicks; }
+
+    /** @return the longest time between two frames, in nanoseconds */
+    public long getMaxFrameNanos() { return maxFrameNanos; }
+
+    /*------------------- private methods -------------------*/
+
+    /*
+     * Run every command waiting, then advance the view one tick; true if anything moved
+     */
+    private boolean tick()
+    {
+        if (GameMetrics.METRICS != null) GameMetrics.METRICS.inputTaken(input);
+        for (int n = input.size(); n > 0 && session.isPlaying(); n--)
+            session.execute(input.take());
+        ticks++;
+        return view.tick();
+    }
+}
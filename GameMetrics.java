@@ -0,0 +1,256 @@
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Live metrics of a running game: how long each command takes, how long a keypress takes to show
+ * on screen, how long a paint takes, how deep the input queue gets, and counts of moves, wall
+ * hits, trap collisions and restarts.
+ * <P>
+ * Metrics are off unless the JVM is started with <code>-Descaperoom.metrics=true</code>. Then
+ * {@link #METRICS} is registered as an MBean, see {@link GameMetricsMBean}, and every command and
+ * paint is also committed as a JFR event for a flight recording to pick up. When they are off
+ * METRICS is null, and each place that records checks it once; the JIT folds the check away, so
+ * the game, simulations and benchmarks run as if the metrics were not there.
+ * <P>
+ * Keypress-to-paint latency runs from the first key pressed since the last frame to the end of the
+ * paint that shows the command: the game loop hands the key's time on when it takes the commands
+ * waiting, the GUI when it publishes the frame after them, and the paint that draws that frame
+ * records it. Any thread can record; GameSession is also used by {@link SessionServer}, which
+ * runs many sessions at once.
+ */
+public final class GameMetrics implements GameMetricsMBean, EventSink
+{
+    private static final Command[] COMMANDS = Command.values();
+
+    /** The metrics being recorded, null when they are off. */
+    public static final GameMetrics METRICS = Boolean.getBoolean("escaperoom.metrics") ? register(new GameMetrics()) : null;
+
+    private final LatencyHistogram commandLatency = new LatencyHistogram();
+    private final LatencyHistogram[] latencyByCommand = new LatencyHistogram[COMMANDS.length];
+    private final LatencyHistogram keyToPaint = new LatencyHistogram();
+    private final LatencyHistogram paintTime = new LatencyHistogram();
+
+    private final LongAdder commands = new LongAdder();
+    private final LongAdder moves = new LongAdder();
+    private final LongAdder wallHits = new LongAdder();
+    private final LongAdder trapCollisions = new LongAdder();
+    private final LongAdder restarts = new LongAdder();
+    private final AtomicLong maxQueueDepth = new AtomicLong();
+
+    // System.nanoTime() of the first key pressed since the game last took its commands, then once
+    // the game took it and once it published a frame after it; 0 for none
+    private final AtomicLong keyPressed = new AtomicLong();
+    private volatile long keyTaken;
+    private final AtomicLong keyPublished = new AtomicLong();
+
+    private GameMetrics()
+    {
+        for (int i = 0; i < latencyByCommand.length; i++)
+            latencyByCommand[i] = new LatencyHistogram();
+    }
+
+    /*------------------- recording -------------------*/
+
+    /**
+     * Record a command a session ran.
+     * <P>
+     * @param packed the packed command, or Command.INVALID
+     * @param start System.nanoTime() when it started
+     * @param stepsTaken how many steps the player took
+     */
+    public void commandDone(int packed, long start, int stepsTaken)
+    {
+        long nanos = System.nanoTime() - start;
+        commands.increment();
+        if (stepsTaken > 0) moves.add(stepsTaken);
+        commandLatency.record(nanos);
+        if (packed == Command.INVALID) return;
+        Command command = Command.of(packed);
+        latencyByCommand[command.ordinal()].record(nanos);
+        if (command == Command.RESTART) restarts.increment();
+
+        CommandEvent event = new CommandEvent();
+        if (event.shouldCommit())
+        {
+            event.command = command.name();
+            event.count = Command.count(packed);
+            event.latency = nanos;
+            event.commit();
+        }
+    }
+
+    /**
+     * Record a key sent to the input queue. Call it after the command is offered.
+     */
+    public void keyPressed()
+    {
+        keyPressed.compareAndSet(0, System.nanoTime());
+    }
+
+    /**
+     * Record the game thread taking the commands waiting in the input queue. Call it before
+     * taking them, so a key recorded here is among the commands taken. A key whose command
+     * changed nothing on screen is replaced by the next.
+     * <P>
+     * @param queue the input queue
+     */
+    public void inputTaken(InputQueue queue)
+    {
+        long key = keyPressed.getAndSet(0);
+        if (key != 0) keyTaken = key;
+        int depth = queue.size();
+        if (depth > maxQueueDepth.get()) maxQueueDepth.accumulateAndGet(depth, Math::max);
+    }
+
+    /**
+     * Record the game thread publishing a frame for painting, after the commands it took.
+     */
+    public void framePublished()
+    {
+        long key = keyTaken;
+        if (key == 0) return;
+        keyTaken = 0;
+        keyPublished.compareAndSet(0, key);
+    }
+
+    /**
+     * Call at the start of a paint, before reading the frame to paint.
+     * <P>
+     * @return the time of the keypress the frame shows, 0 if none, for {@link #painted(long, long)}
+     */
+    public long paintStarted()
+    {
+        return keyPublished.getAndSet(0);
+    }
+
+    /**
+     * Record a paint.
+     * <P>
+     * @param start System.nanoTime() when it started
+     * @param key what {@link #paintStarted()} returned
+     */
+    public void painted(long start, long key)
+    {
+        long end = System.nanoTime();
+        paintTime.record(end - start);
+        if (key != 0) keyToPaint.record(end - key);
+
+        PaintEvent event = new PaintEvent();
+        if (event.shouldCommit())
+        {
+            event.paintTime = end - start;
+            event.keyToPaint = key == 0 ? 0 : end - key;
+            event.commit();
+        }
+    }
+
+    /**
+     * Count wall hits and trap collisions from a game's events.
+     */
+    @Override
+    public void onEvent(GameEvent event, int a, int b)
+    {
+        if (event == GameEvent.WALL_HIT) wallHits.increment();
+        else if (event == GameEvent.TRAP_COLLISION) trapCollisions.increment();
+    }
+
+    /*------------------- GameMetricsMBean -------------------*/
+
+    @Override public long getCommands() { return commands.sum(); }
+    @Override public long getMoves() { return moves.sum(); }
+    @Override public long getWallHits() { return wallHits.sum(); }
+    @Override public long getTrapCollisions() { return trapCollisions.sum(); }
+    @Override public long getRestarts() { return restarts.sum(); }
+
+    @Override public int getInputQueueDepth() { return EscapeRoom.inputQueue.size(); }
+    @Override public int getMaxInputQueueDepth() { return (int)maxQueueDepth.get(); }
+
+    @Override public long getCommandLatencyP50() { return commandLatency.getPercentile(0.5); }
+    @Override public long getCommandLatencyP99() { return commandLatency.getPercentile(0.99); }
+    @Override public long getCommandLatencyMax() { return commandLatency.getMax(); }
+
+    @Override public long getKeyToPaintLatencyP50() { return keyToPaint.getPercentile(0.5); }
+    @Override public long getKeyToPaintLatencyP99() { return keyToPaint.getPercentile(0.99); }
+    @Override public long getKeyToPaintLatencyMax() { return keyToPaint.getMax(); }
+
+    @Override public long getPaintTimeP50() { return paintTime.getPercentile(0.5); }
+    @Override public long getPaintTimeP99() { return paintTime.getPercentile(0.99); }
+    @Override public long getPaintTimeMax() { return paintTime.getMax(); }
+
+    @Override
+    public String[] getCommandLatencies()
+    {
+        List<String> lines = new ArrayList<>();
+        for (Command command : COMMANDS)
+        {
+            LatencyHistogram histogram = latencyByCommand[command.ordinal()];
+            if (histogram.getCount() > 0) lines.add(command.name() + " " + histogram);
+        }
+        return lines.toArray(new String[0]);
+    }
+
+    @Override
+    public void reset()
+    {
+        commandLatency.reset();
+        for (LatencyHistogram histogram : latencyByCommand)
+            histogram.reset();
+        keyToPaint.reset();
+        paintTime.reset();
+        commands.reset();
+        moves.reset();
+        wallHits.reset();
+        trapCollisions.reset();
+        restarts.reset();
+        maxQueueDepth.set(0);
+    }
+
+    /*------------------- JFR events -------------------*/
+
+    @Name("escaperoom.Command")
+    @Label("Command")
+    @Category("EscapeRoom")
+    @Description("A command run by a game session")
+    static final class CommandEvent extends Event
+    {
+        @Label("Command") String command;
+        @Label("Count") int count;
+        @Label("Latency") @Timespan long latency;
+    }
+
+    @Name("escaperoom.Paint")
+    @Label("Paint")
+    @Category("EscapeRoom")
+    @Description("A paint of the game window")
+    static final class PaintEvent extends Event
+    {
+        @Label("Paint Time") @Timespan long paintTime;
+        @Label("Keypress to Paint") @Timespan long keyToPaint;
+    }
+
+    /*------------------- private methods -------------------*/
+
+    private static GameMetrics register(GameMetrics metrics)
+    {
+        try
+        {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, new ObjectName("EscapeRoom:type=GameMetrics"));
+        }
+        catch (JMException e)
+        {
+            System.err.println("Metrics not available over JMX: " + e.getMessage());
+        }
+        return metrics;
+    }
+}
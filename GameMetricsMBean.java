@@ -0,0 +1,33 @@
+/**
+ * What {@link GameMetrics} shows over JMX, under <code>EscapeRoom:type=GameMetrics</code>.
+ * Latencies are in nanoseconds.
+ */
+public interface GameMetricsMBean
+{
+    long getCommands();
+    long getMoves();
+    long getWallHits();
+    long getTrapCollisions();
+    long getRestarts();
+
+    int getInputQueueDepth();
+    int getMaxInputQueueDepth();
+
+    long getCommandLatencyP50();
+    long getCommandLatencyP99();
+    long getCommandLatencyMax();
+
+    long getKeyToPaintLatencyP50();
+    long getKeyToPaintLatencyP99();
+    long getKeyToPaintLatencyMax();
+
+    long getPaintTimeP50();
+    long getPaintTimeP99();
+    long getPaintTimeMax();
+
+    /** @return one line per command that has run, with its latency histogram */
+    String[] getCommandLatencies();
+
+    /** Start every count and histogram again from zero. */
+    void reset();
+}
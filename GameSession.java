@@ -0,0 +1,470 @@
+import java.io.PrintStream;
+
+/**
+ * One player's game: runs commands against a {@link GameEngine} and keeps the score.
+ * <P>
+ * This is the command loop of the game without the input: every packed command from
+ * {@link CommandParser} or the keyboard goes through {@link #execute(int)}, which dispatches on
+ * the {@link Command}, applies the t/space modes, repeats counted moves, asks the detrap
+ * question after a trap collision and reports the result on the session's output.
+ */
+public class GameSession
+{
+    private static final Runnable NOTHING = () -> {};
+    private static final CommandLog NO_LOG = (packed, delta) -> {};
+    // how find and check name each direction, in Board direction order
+    private static final String[] DIRECTION_NAMES = { "right ", "left ", "up ", "down " };
+
+    private final GameEngine engine;
+    private final PrintStream out;
+    private Runnable onChange = NOTHING;
+    private CommandLog log = NO_LOG;
+    private Solver solver;          // created by the first hint
+    private String detrapQuestion;  // asked for the removal cost in detrapCost
+    private int detrapCost = -1;
+
+    private int score;
+    private int commandCount;
+    private Command mode;           // SPRING_MODE or JUMP_MODE until a direction is given, otherwise null
+    private boolean awaitingDetrap; // a trap collision is waiting for a y/n answer
+    private boolean playing = true;
+    private long scannedCells;      // the cells the last find or check looked at
+    private long scannedTraps;      // and those of them that held a trap
+
+    /**
+     * @param engine the game to play, with its board already created
+     * @param out where to report what happens, or null to play silently
+     */
+    public GameSession(GameEngine engine, PrintStream out)
+    {
+        this.engine = engine;
+        this.out = out;
+    }
+
+    /**
+     * Start a new game from a seed in this session and its engine, as a new session over an engine
+     * given {@link GameEngine#newGame(long)} would.
+     * <P>
+     * @param seed the seed of the game
+     */
+    public void newGame(long seed)
+    {
+        engine.newGame(seed);
+        score = 0;
+        commandCount = 0;
+        mode = null;
+        awaitingDetrap = false;
+        playing = true;
+        scannedCells = 0;
+        scannedTraps = 0;
+    }
+
+    /**
+     * @param onChange called after every command that may have changed the board, e.g. to repaint
+     */
+    public void setOnChange(Runnable onChange)
+    {
+        this.onChange = onChange == null ? NOTHING : onChange;
+    }
+
+    /**
+     * @param log told every command the session accepts and its score change, e.g. a {@link JournalWriter}; null for none
+     */
+    public void setCommandLog(CommandLog log)
+    {
+        this.log = log == null ? NO_LOG : log;
+    }
+
+    /**
+     * Receives the commands a session accepts, in order. Invalid input, a counted move after t or
+     * space, and anything but yes or no while the detrap question is waiting are not accepted.
+     */
+    public interface CommandLog
+    {
+        /**
+         * @param packed the packed command
+         * @param delta how much the command changed the score, including the finish it may have reached
+         */
+        void record(int packed, int delta);
+    }
+
+    /**
+     * Show the prompt for the next command, or the detrap question if it is waiting, e.g. at the
+     * start of a game or after continuing a parked one.
+     */
+    public void begin()
+    {
+        print(awaitingDetrap ? detrapQuestion() : "> ");
+    }
+
+    /**
+     * Run one command, or answer the detrap question if one is waiting.
+     * <P>
+     * @param packed a packed command, or Command.INVALID
+     * @return true while the game is still being played
+     */
+    public boolean execute(int packed)
+    {
+        if (!playing) return false;
+        GameMetrics metrics = GameMetrics.METRICS;
+        long start = metrics == null ? 0 : System.nanoTime();
+        int steps = engine.getSteps();
+        int before = score;
+        boolean accepted = awaitingDetrap ? answerDetrap(packed) : run(packed);
+        if (accepted) log.record(packed, score - before);
+        engine.flushEvents();
+        if (metrics != null) metrics.commandDone(packed, start, engine.getSteps() - steps);
+        return playing;
+    }
+
+    /**
+     * @return the score so far
+     */
+    public int getScore()
+    {
+        return score;
+    }
+
+    /**
+     * @return the number of commands run, not counting detrap answers and invalid input
+     */
+    public int getCommandCount()
+    {
+        return commandCount;
+    }
+
+    /**
+     * @return the cells next to the player when find or check last ran, none before the first; not
+     *         kept when the session is packed
+     */
+    public long getScannedCells()
+    {
+        return scannedCells;
+    }
+
+    /**
+     * @return the cells among {@link #getScannedCells()} that held a trap when find or check ran
+     */
+    public long getScannedTraps()
+    {
+        return scannedTraps;
+    }
+
+    /**
+     * @return true if nothing has been played in this session or its engine since the game was
+     *         created, see {@link GameEngine#isNewGame()}
+     */
+    public boolean isNewGame()
+    {
+        return playing && score == 0 && commandCount == 0 && mode == null && !awaitingDetrap
+            && engine.isNewGame();
+    }
+
+    /**
+     * @return true while the game is still being played
+     */
+    public boolean isPlaying()
+    {
+        return playing;
+    }
+
+    /**
+     * @return true if the next command must answer the detrap question
+     */
+    public boolean isAwaitingDetrap()
+    {
+        return awaitingDetrap;
+    }
+
+    /**
+     * @return the engine this session plays
+     */
+    public GameEngine getEngine()
+    {
+        return engine;
+    }
+
+    /** Number of longs {@link #storePacked(long[], int)} writes. */
+    public static final int PACKED_WORDS = GameEngine.PACKED_WORDS + 1;
+
+    // bit layout of the session's own long: score in the low 32 bits, then these
+    private static final int COUNT_SHIFT = 32;
+    private static final int MAX_COUNT = (1 << 24) - 1;
+    private static final int MODE_SHIFT = 56;
+    private static final long DETRAP_BIT = 1L << 58;
+    private static final long PLAYING_BIT = 1L << 59;
+
+    /**
+     * Store the session and its game in PACKED_WORDS longs, see {@link GameEngine#storePacked(long[], int)}.
+     * The command count saturates at 2^24 - 1.
+     * <P>
+     * @param dst where to store the session
+     * @param off index of the first long
+     */
+    public void storePacked(long[] dst, int off)
+    {
+        engine.storePacked(dst, off);
+        int modeCode = mode == null ? 0 : mode == Command.SPRING_MODE ? 1 : 2;
+        dst[off + GameEngine.PACKED_WORDS] = (score & 0xFFFFFFFFL)
+                | (long)Math.min(commandCount, MAX_COUNT) << COUNT_SHIFT
+                | (long)modeCode << MODE_SHIFT
+                | (awaitingDetrap ? DETRAP_BIT : 0)
+                | (playing ? PLAYING_BIT : 0);
+    }
+
+    /**
+     * Continue a session stored by {@link #storePacked(long[], int)} in this session and its engine.
+     * <P>
+     * @param src where the session is stored
+     * @param off index of the first long
+     */
+    public void loadPacked(long[] src, int off)
+    {
+        engine.loadPacked(src, off);
+        long word = src[off + GameEngine.PACKED_WORDS];
+        score = (int)word;
+        commandCount = (int)(word >>> COUNT_SHIFT) & MAX_COUNT;
+        int modeCode = (int)(word >>> MODE_SHIFT) & 3;
+        mode = modeCode == 0 ? null : modeCode == 1 ? Command.SPRING_MODE : Command.JUMP_MODE;
+        awaitingDetrap = (word & DETRAP_BIT) != 0;
+        playing = (word & PLAYING_BIT) != 0;
+    }
+
+    /*------------------- private methods -------------------*/
+
+    /*
+     * Run a command; false if it is not a command, or a counted move after t or space
+     */
+    private boolean run(int packed)
+    {
+        Command command = packed == Command.INVALID ? null : Command.of(packed);
+        // a count repeats plain moves only: t r5 must not spring, and pay for, the same trap five times
+        if (command == null || mode != null && command.isMove() && Command.count(packed) > 1)
+        {
+            print("Invalid input. Please try again\n>");
+            return false;
+        }
+
+        commandCount++;
+        int delta = 0;
+        switch (command)
+        {
+            case SPRING_MODE:
+                mode = command;
+                println("Spring mode: choose direction");
+                break;
+            case JUMP_MODE:
+                mode = command;
+                println("Jump mode: choose direction");
+                break;
+            case RIGHT: case LEFT: case UP: case DOWN:
+                command = command.withMode(mode);
+                mode = null;
+                delta = repeat(command, Command.count(packed)); // count is 1 after a mode
+                break;
+            case JUMP_RIGHT: case JUMP_LEFT: case JUMP_UP: case JUMP_DOWN:
+                delta = repeat(command, Command.count(packed));
+                break;
+            case SPRING_RIGHT: case SPRING_LEFT: case SPRING_UP: case SPRING_DOWN:
+                delta = engine.springTrap(command.dir());
+                break;
+            case PICKUP: delta = engine.pickupPrize(); break;
+            case FIND: scanTraps("Find Trap: "); break;
+            case CHECK: scanTraps("Check: "); delta = -1; break; // check costs 1 point
+            case REMOVE_TRAP: delta = engine.removeTrap(); break;
+            case REPLAY: delta = engine.replay(); break;
+            case RESTART:
+                delta = engine.restart();
+                score = 0; // reset score to 0
+                println("Your Score and steps have reset");
+                break;
+            case SCORE:
+                if (printing())
+                    println("Score: " + score + ", Steps: " + engine.getSteps() +
+                            ", Trap Collisions: " + engine.getTrapCollisions() + "/" + engine.getCollisionLimit() + ", Trap Removals: " + engine.getTrapRemovals());
+                break;
+            case QUIT: playing = false; break;
+            case HELP: printHelp(); break;
+            case HINT: printHint(); break;
+            default: break; // yes/no outside of the detrap question
+        }
+
+        score += delta;
+        onChange.run();
+
+        if (engine.hasPendingTrapCollision())
+        {
+            print(detrapQuestion());
+            awaitingDetrap = true;
+            return true;
+        }
+        finishCommand();
+        return true;
+    }
+
+    /*
+     * Move or jump count times, stopping early at a trap collision or the finish
+     */
+    private int repeat(Command command, int count)
+    {
+        int delta = 0;
+        for (int i = 0; i < count; i++)
+        {
+            delta += perform(command);
+            if (engine.hasPendingTrapCollision() || engine.isAtFinish()) break;
+        }
+        return delta;
+    }
+
+    private int perform(Command command)
+    {
+        switch (command)
+        {
+            case RIGHT: case LEFT: case UP: case DOWN:
+                return engine.move(command.dir(), 1);
+            case JUMP_RIGHT: case JUMP_LEFT: case JUMP_UP: case JUMP_DOWN:
+                return engine.jump(command.dir());
+            default:
+                return engine.springTrap(command.dir());
+        }
+    }
+
+    private boolean answerDetrap(int packed)
+    {
+        Command answer = packed == Command.INVALID ? null : Command.of(packed);
+        if (answer != Command.YES && answer != Command.NO)
+        {
+            print("Invalid input. Please try again\n>");
+            return false;
+        }
+        // declining costs a point but does NOT consume a removal chance
+        score += engine.resolveTrapCollision(answer == Command.YES);
+        awaitingDetrap = false;
+        onChange.run();
+        finishCommand();
+        return true;
+    }
+
+    /*
+     * End the game at the finish, otherwise report the score and prompt for the next command
+     */
+    private void finishCommand()
+    {
+        if (engine.isAtFinish())
+        {
+            println("Finish: reached the exit");
+            endGame();
+            return;
+        }
+        if (printing()) println("Score now: " + score);
+        if (playing)
+            print("> ");
+        else
+            endGame();
+    }
+
+    private void endGame()
+    {
+        playing = false;
+        score += engine.endGame();
+        if (printing())
+        {
+            println("Final score: " + score);
+            println("Total steps: " + engine.getSteps());
+        }
+    }
+
+    private void printHint()
+    {
+        if (engine.isLargeRoom())
+        {
+            println("Hint: no hints in a large room");
+            return;
+        }
+        if (mode != null)
+        {
+            // the next command is a direction for the pending mode, which the plan does not start with
+            println("Hint: choose a direction for " + (mode == Command.SPRING_MODE ? "spring" : "jump") + " mode first, then ask again");
+            return;
+        }
+        if (solver == null) solver = new Solver();
+        int hint = solver.hint(engine);
+        if (hint == Command.INVALID)
+        {
+            println("Hint: no hint, too many ways to play from here");
+            return;
+        }
+        String[] aliases = Command.of(hint).aliases();
+        if (printing()) println("Hint: " + aliases[aliases.length - 1] + " (best final score " + (score + solver.getScoreGain()) + ")");
+    }
+
+    /*
+     * @return true if the session prints, to build what it prints only then
+     */
+    private boolean printing()
+    {
+        return out != null;
+    }
+
+    /*
+     * Print through the engine's event bus when it has one, so the text comes out after the
+     * events before it and stays off the game thread like them
+     */
+    private void print(String text)
+    {
+        if (out == null) return;
+        EventBus events = engine.getEvents();
+        if (events != null) events.print(out, text);
+        else out.print(text);
+    }
+
+    /*
+     * The detrap question with the engine's removal cost, built again only when the cost changes
+     */
+    private String detrapQuestion()
+    {
+        int cost = engine.getTrapRemovalCost();
+        if (cost != detrapCost)
+        {
+            detrapQuestion = "Detrap for " + cost + " points? (y/n): ";
+            detrapCost = cost;
+        }
+        return detrapQuestion;
+    }
+
+    private void println(String line)
+    {
+        print(line + System.lineSeparator());
+    }
+
+    /*
+     * Report the traps next to the player for find or check, which print the same under their own label
+     */
+    private void scanTraps(String label)
+    {
+        int traps = engine.getAdjacentTraps();
+        print(label);
+        if (traps == 0)
+        {
+            println("no traps adjacent");
+        }
+        else
+        {
+            for (int dir = Board.RIGHT; dir <= Board.DOWN; dir++)
+            {
+                if ((traps & 1 << dir) != 0) print(DIRECTION_NAMES[dir]);
+            }
+            println("");
+        }
+        scannedCells = Board.neighbors(1L << engine.getPlayerCell());
+        scannedTraps = scannedCells & engine.getLiveTraps();
+    }
+
+    private void printHelp()
+    {
+        println("Commands: right/left/up/down (r/l/u/d). Keyboard: WASD/Arrows for movement");
+        println("jump (jr/jl/ju/jd or space + direction), pickup (p), find, check (c), spring (sr/sl/su/sd or t + direction)");
+        println("add a count to repeat a move or jump, e.g. r5 or jr3");
+        println("removetrap (rt), score, hint, replay, restart, quit (q)");
+    }
+}
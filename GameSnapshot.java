@@ -0,0 +1,64 @@
+/**
+ * An immutable copy of what a renderer needs from a {@link GameEngine}: the layout's walls, the
+ * traps and prizes still in play and the player, taken with {@link GameEngine#snapshot()}.
+ * <P>
+ * The engine is only ever changed by the game thread. A renderer on another thread, such as the
+ * Swing event thread, reads a snapshot the game thread published through a volatile field instead
+ * of the engine itself, so a frame never mixes two moves or a board in the middle of a restart,
+ * and neither thread ever waits for the other. Everything is a few longs and ints, so taking one
+ * costs a single small allocation.
+ */
+public final class GameSnapshot
+{
+    private final int boardVersion;
+    private final long wallsRight;
+    private final long wallsDown;
+    private final long traps;
+    private final long prizes;
+    private final int playerCell;
+    private final int steps;
+    private final int trapCollisions;
+
+    GameSnapshot(int boardVersion, long wallsRight, long wallsDown, long traps, long prizes,
+                 int playerCell, int steps, int trapCollisions)
+    {
+        this.boardVersion = boardVersion;
+        this.wallsRight = wallsRight;
+        this.wallsDown = wallsDown;
+        this.traps = traps;
+        this.prizes = prizes;
+        this.playerCell = playerCell;
+        this.steps = steps;
+        this.trapCollisions = trapCollisions;
+    }
+
+    /** @return the version of the layout, see {@link Board#getVersion()} */
+    public int getBoardVersion() { return boardVersion; }
+
+    /** @return the cells with a wall on their right edge */
+    public long getWallsRight() { return wallsRight; }
+
+    /** @return the cells with a wall on their bottom edge */
+    public long getWallsDown() { return wallsDown; }
+
+    /** @return the traps not sprung or removed */
+    public long getTraps() { return traps; }
+
+    /** @return the prizes not picked up */
+    public long getPrizes() { return prizes; }
+
+    /** @return the cell the player is on */
+    public int getPlayerCell() { return playerCell; }
+
+    /** @return the x pixel location of the player, as {@link GameEngine#getPlayerX()} */
+    public int getPlayerX() { return Board.col(playerCell) * GameEngine.SPACE_SIZE + GameEngine.START_LOC_X; }
+
+    /** @return the y pixel location of the player, as {@link GameEngine#getPlayerY()} */
+    public int getPlayerY() { return Board.row(playerCell) * GameEngine.SPACE_SIZE + GameEngine.START_LOC_Y; }
+
+    /** @return the number of steps taken */
+    public int getSteps() { return steps; }
+
+    /** @return the number of trap collisions */
+    public int getTrapCollisions() { return trapCollisions; }
+}
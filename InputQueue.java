@@ -0,0 +1,94 @@
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded ring buffer of command opcodes handed from the input threads (keyboard, terminal)
+ * to the game thread.
+ * <P>
+ * Opcodes are plain ints, so nothing is allocated per keypress. Producers are serialized on the
+ * queue's monitor, which keeps the ring single-producer; the single consumer never locks. An
+ * empty queue parks the consumer and the next offer unparks it, so input reaches the game within
+ * microseconds and an idle game uses no CPU.
+ */
+public class InputQueue
+{
+    private final int[] ring;
+    private final int mask;
+
+    // next slot to read (consumer) and to write (producers)
+    private volatile long head;
+    private volatile long tail;
+
+    // consumer thread while it is parked waiting for input
+    private volatile Thread waiter;
+
+    /**
+     * @param capacity the number of opcodes the queue can hold, rounded up to a power of two
+     */
+    public InputQueue(int capacity)
+    {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        ring = new int[size];
+        mask = size - 1;
+    }
+
+    /**
+     * Add an opcode, waking the consumer if it is waiting. Never blocks.
+     * <P>
+     * @param opcode the opcode to deliver
+     * @return false if the queue is full and the opcode was dropped
+     */
+    public boolean offer(int opcode)
+    {
+        synchronized (this)
+        {
+            long t = tail;
+            if (t - head == ring.length) return false;
+            ring[(int)t & mask] = opcode;
+            tail = t + 1; // publishes the slot to the consumer
+        }
+        Thread w = waiter;
+        if (w != null) LockSupport.unpark(w);
+        return true;
+    }
+
+    /**
+     * Remove the next opcode, parking until one is available. Only one thread may take.
+     * <P>
+     * @return the next opcode
+     */
+    public int take()
+    {
+        while (true)
+        {
+            long h = head;
+            if (h != tail)
+            {
+                int opcode = ring[(int)h & mask];
+                head = h + 1;
+                return opcode;
+            }
+            awaitInput();
+        }
+    }
+
+    /**
+     * Park until an opcode is waiting, without taking it. May return early, e.g. when the thread is
+     * unparked by someone else, so check {@link #size()} again. Only the thread that takes may wait.
+     */
+    public void awaitInput()
+    {
+        if (head != tail) return;
+        // announce before re-checking so an offer between the check and park() is not missed
+        waiter = Thread.currentThread();
+        if (head == tail) LockSupport.park(this);
+        waiter = null;
+    }
+
+    /**
+     * @return the number of opcodes waiting
+     */
+    public int size()
+    {
+        return (int)(tail - head);
+    }
+}
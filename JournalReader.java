@@ -0,0 +1,265 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+/**
+ * Reads a journal written by {@link JournalWriter}, one command at a time.
+ * <P>
+ * Files are memory mapped, so reading a journal copies nothing and allocates nothing per command.
+ * Journals are self-delimiting: a buffer may hold several one after another, e.g. a file made by
+ * concatenating journal files, and {@link #nextJournal()} moves on to the next. A reader can also
+ * be pointed at another buffer with {@link #reset(ByteBuffer)}, so one reader serves any number of
+ * journals.
+ */
+public class JournalReader
+{
+    private static final int COMMANDS = Command.values().length;
+
+    private ByteBuffer in;
+    private final GameConfig config = new GameConfig();
+    private final long[] start = new long[GameSession.PACKED_WORDS];
+
+    // bits read from the buffer and not used yet, in the low bitCount bits
+    private long bits;
+    private int bitCount;
+
+    private int command;
+    private int delta;
+    private boolean complete;
+    private boolean truncated;
+
+    /**
+     * Read a journal from a buffer, starting at its position.
+     * <P>
+     * @param in the journal
+     * @throws IOException if the buffer does not hold a journal
+     */
+    public JournalReader(ByteBuffer in) throws IOException
+    {
+        reset(in);
+    }
+
+    /**
+     * Create a reader with nothing to read; give it a journal with {@link #reset(ByteBuffer)}.
+     */
+    public JournalReader()
+    {
+    }
+
+    /**
+     * Start reading the journal at the position of a buffer.
+     * <P>
+     * @param in the journal
+     * @throws IOException if the buffer does not hold a journal there
+     */
+    public void reset(ByteBuffer in) throws IOException
+    {
+        this.in = in.order(ByteOrder.BIG_ENDIAN);
+        readHeader();
+    }
+
+    /**
+     * Move on to the journal that follows the current one in the buffer. The current journal must
+     * have been read to its end.
+     * <P>
+     * @return false if the buffer holds nothing more, or the current journal is not complete
+     * @throws IOException if what follows is not a journal
+     */
+    public boolean nextJournal() throws IOException
+    {
+        if (!complete) return false;
+        in.position(position());
+        if (!in.hasRemaining()) return false;
+        readHeader();
+        return true;
+    }
+
+    /**
+     * @return the position in the buffer of the next byte to read; the start of the next journal once
+     *         the current one is complete
+     */
+    public int position()
+    {
+        return in.position() - (bitCount >>> 3);
+    }
+
+    /**
+     * Map a journal file.
+     * <P>
+     * @param file the journal
+     * @return a reader positioned at the first command
+     * @throws IOException if the file cannot be read or is not a journal
+     */
+    public static JournalReader open(Path file) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(file))
+        {
+            return new JournalReader(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * @return the configuration the journal was recorded with
+     */
+    public GameConfig getConfig()
+    {
+        return config;
+    }
+
+    /**
+     * Set a session and its engine to the state the journal starts from: the recorded configuration,
+     * board and session.
+     * <P>
+     * @param session the session to replay in
+     */
+    public void start(GameSession session)
+    {
+        session.getEngine().setConfig(config);
+        session.loadPacked(start, 0);
+    }
+
+    /**
+     * Read the next command.
+     * <P>
+     * @return false at the end of the journal
+     */
+    public boolean next()
+    {
+        if (complete || truncated) return false;
+        int opcode = read(JournalWriter.OPCODE_BITS);
+        if (opcode == JournalWriter.END || opcode >= COMMANDS)
+        {
+            complete = opcode == JournalWriter.END;
+            truncated |= !complete;
+            return false;
+        }
+        Command c = Command.of(opcode);
+        int count = 1;
+        if (c.isRepeatable() && read(1) == 1) count = read(JournalWriter.COUNT_BITS);
+        delta = 0;
+        if (read(1) == 1)
+        {
+            int zeros = readZeros();
+            long zigzag = 1L << zeros | (zeros == 0 ? 0 : read(zeros) & 0xFFFFFFFFL);
+            delta = (int)(zigzag >>> 1) ^ -(int)(zigzag & 1);
+        }
+        command = Command.pack(c, count);
+        return !truncated;
+    }
+
+    /**
+     * @return the packed command read by the last call of next
+     */
+    public int command()
+    {
+        return command;
+    }
+
+    /**
+     * @return the score change recorded with the command read by the last call of next
+     */
+    public int delta()
+    {
+        return delta;
+    }
+
+    /**
+     * @return true once next has read the end of a journal that was closed properly
+     */
+    public boolean isComplete()
+    {
+        return complete;
+    }
+
+    /*------------------- private methods -------------------*/
+
+    private void readHeader() throws IOException
+    {
+        bits = 0;
+        bitCount = 0;
+        complete = false;
+        truncated = false;
+        if (in.remaining() < 8 || in.getInt() != JournalWriter.MAGIC) throw new IOException("not a journal");
+        int values = in.getInt();
+        if (values != JournalWriter.CONFIG_VALUES || in.remaining() < 4 * values + 8 * start.length)
+            throw new IOException("unsupported journal header");
+        try
+        {
+            config.setWalls(in.getInt());
+            config.setTraps(in.getInt());
+            config.setPrizes(in.getInt());
+            config.setPrizeVal(in.getInt());
+            config.setTrapVal(in.getInt());
+            config.setEndVal(in.getInt());
+            config.setTrapRemovalCost(in.getInt());
+            config.setCollisionLimit(in.getInt());
+            config.setStepPenalty(in.getInt());
+            config.setDeclineCost(in.getInt());
+        }
+        catch (IllegalArgumentException e)
+        {
+            throw new IOException("bad journal configuration: " + e.getMessage());
+        }
+        for (int i = 0; i < start.length; i++)
+            start[i] = in.getLong();
+    }
+
+    /*
+     * The next n bits, n at most 32; zeros past the end of the data, which marks the journal truncated
+     */
+    private int read(int n)
+    {
+        if (bitCount < n)
+        {
+            refill();
+            if (bitCount < n)
+            {
+                truncated = true;
+                return 0;
+            }
+        }
+        bitCount -= n;
+        return (int)(bits >>> bitCount) & (int)((1L << n) - 1);
+    }
+
+    /*
+     * The zeros before the next one bit, both read; a journal without one within 32 bits is broken
+     */
+    private int readZeros()
+    {
+        if (bitCount < 32) refill();
+        int zeros = bitCount == 0 ? 64 : Long.numberOfLeadingZeros(bits << 64 - bitCount);
+        if (zeros >= bitCount || zeros >= 32)
+        {
+            truncated = true;
+            return 0;
+        }
+        bitCount -= zeros + 1;
+        return zeros;
+    }
+
+    /*
+     * Read as many whole bytes as fit in bits, eight at a time where the buffer has them; bytes
+     * read ahead of the end of a journal are given back by position()
+     */
+    private void refill()
+    {
+        int room = (64 - bitCount) >>> 3;
+        int at = in.position();
+        if (in.limit() - at >= 8)
+        {
+            long word = in.getLong(at);
+            bits = room == 8 ? word : bits << 8 * room | word >>> 64 - 8 * room;
+            bitCount += 8 * room;
+            in.position(at + room);
+            return;
+        }
+        for (; room > 0 && in.hasRemaining(); room--)
+        {
+            bits = bits << 8 | (in.get() & 0xFF);
+            bitCount += 8;
+        }
+    }
+}
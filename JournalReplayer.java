@@ -0,0 +1,143 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Plays journals back through a silent engine, without a window, and checks every recorded score
+ * change against the one the engine produces.
+ * <P>
+ * A replayer reuses one engine and session for every journal it plays, so replaying a journal
+ * allocates nothing beyond mapping its file. From the project root:
+ * <pre>
+ * javac -d out *.java
+ * java -cp out JournalReplayer journals/ game.erj ...
+ * </pre>
+ * Every journal in a directory (<code>*.erj</code>) is replayed; journals that do not match are listed.
+ */
+public class JournalReplayer implements GameSession.CommandLog
+{
+    private final GameEngine engine = new GameEngine(0, null);
+    private final GameSession session = new GameSession(engine, null);
+
+    // the command the session accepted last, and its score change
+    private boolean accepted;
+    private int acceptedDelta;
+
+    // result of the last replay
+    private int records;
+    private boolean complete;
+    private int firstNewBoard;
+
+    public JournalReplayer()
+    {
+        session.setCommandLog(this);
+    }
+
+    /**
+     * Replay a journal from its start.
+     * <P>
+     * @param journal the journal, positioned at its first command
+     * @return the index of the first command that was not accepted or did not change the score as
+     *         recorded, or -1 if every command matched
+     */
+    public int replay(JournalReader journal)
+    {
+        journal.start(session);
+        records = 0;
+        complete = false;
+        firstNewBoard = -1;
+        while (journal.next())
+        {
+            int command = journal.command();
+            if (Command.of(command) == Command.HINT && !session.isAwaitingDetrap())
+            {
+                // a hint changes nothing but takes a search, so it is only checked to score nothing
+                if (journal.delta() != 0 || !session.isPlaying()) return records;
+                records++;
+                continue;
+            }
+            accepted = false;
+            session.execute(command);
+            if (!accepted || acceptedDelta != journal.delta()) return records;
+            records++;
+        }
+        complete = journal.isComplete();
+        return -1;
+    }
+
+    /** @return the number of commands that matched in the last replay */
+    public int getRecords() { return records; }
+
+    /**
+     * @return the index of the first restart or replay the last replay accepted, or -1 if it played
+     *         one board from start to end
+     */
+    public int getFirstNewBoard() { return firstNewBoard; }
+
+    /** @return true if the last replay read to the end of a properly closed journal */
+    public boolean isComplete() { return complete; }
+
+    /** @return the session the journals are replayed in, holding the state the last replay stopped in */
+    public GameSession getSession() { return session; }
+
+    @Override
+    public void record(int packed, int delta)
+    {
+        accepted = true;
+        acceptedDelta = delta;
+        Command command = Command.of(packed);
+        if (firstNewBoard < 0 && (command == Command.RESTART || command == Command.REPLAY)) firstNewBoard = records;
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        List<Path> files = new ArrayList<>();
+        for (String arg : args)
+        {
+            Path path = Paths.get(arg);
+            if (Files.isDirectory(path))
+            {
+                try (Stream<Path> list = Files.list(path))
+                {
+                    list.filter(p -> p.toString().endsWith(".erj")).sorted().forEach(files::add);
+                }
+            }
+            else files.add(path);
+        }
+
+        JournalReplayer replayer = new JournalReplayer();
+        long commands = 0;
+        int failed = 0;
+        long start = System.nanoTime();
+        for (Path file : files)
+        {
+            int mismatch;
+            try
+            {
+                mismatch = replayer.replay(JournalReader.open(file));
+            }
+            catch (IOException e)
+            {
+                System.out.println(file + ": " + e.getMessage());
+                failed++;
+                continue;
+            }
+            commands += replayer.getRecords();
+            if (mismatch >= 0)
+            {
+                System.out.println(file + ": command " + mismatch + " does not match the journal");
+                failed++;
+            }
+            else if (!replayer.isComplete())
+            {
+                System.out.println(file + ": truncated after " + replayer.getRecords() + " commands");
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d journals, %d commands, %d failed, %.3f s%n", files.size(), commands, failed, seconds);
+    }
+}
@@ -0,0 +1,191 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Records every command a {@link GameSession} accepts, with its score change, in a compact binary
+ * journal that {@link JournalReplayer} can play back.
+ * <P>
+ * A journal starts with a header: the magic number "ERJ1", the number of configuration values and
+ * the values in {@link GameConfig#set(String, int)} order, then the session packed by
+ * {@link GameSession#storePacked(long[], int)}, which holds the board seed and the random stream.
+ * The commands follow as a bit stream, most significant bit first:
+ * <ul>
+ * <li>5 bits: the command's opcode, 31 for the end of the journal</li>
+ * <li>repeatable commands only: 1 bit set if the count is not 1, then 7 bits of count</li>
+ * <li>1 bit set if the score changed, then the zigzag encoded change in Elias gamma code</li>
+ * </ul>
+ * A move that scores nothing takes 7 bits, a prize pickup 15. Writes go through a direct buffer of
+ * {@link #BLOCK_SIZE} bytes to a FileChannel, written after the header, whenever the buffer fills,
+ * at {@link #sync()} and at {@link #close()}, so recording a command is not a system call. A game
+ * cut short by a crash or a kill leaves the commands up to the last write in the file; the journal
+ * is complete, with its end code, once closed. Closing is safe from another thread, e.g. a
+ * shutdown hook, and commands recorded after it are dropped.
+ */
+public class JournalWriter implements GameSession.CommandLog, AutoCloseable
+{
+    /** "ERJ1", the first four bytes of every journal. */
+    public static final int MAGIC = 0x45524A31;
+
+    static final int OPCODE_BITS = 5;
+    static final int END = (1 << OPCODE_BITS) - 1;
+    static final int COUNT_BITS = 7;
+    static final int CONFIG_VALUES = 10;
+
+    /** Bytes of commands held before they are written to the file. */
+    public static final int BLOCK_SIZE = 8192;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BLOCK_SIZE);
+
+    // bits not yet written to the buffer, in the low bitCount bits
+    private long bits;
+    private int bitCount;
+
+    /**
+     * Create a journal and write its header from the current state of a session. Call before the
+     * session runs the first command to record, then make the journal its command log.
+     * <P>
+     * @param file the journal to create, replacing any file of that name
+     * @param session the session to record
+     * @throws IOException if the file cannot be written
+     */
+    public JournalWriter(Path file, GameSession session) throws IOException
+    {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+        GameConfig config = session.getEngine().getConfig();
+        buffer.putInt(MAGIC);
+        buffer.putInt(CONFIG_VALUES);
+        buffer.putInt(config.getWalls()).putInt(config.getTraps()).putInt(config.getPrizes());
+        buffer.putInt(config.getPrizeVal()).putInt(config.getTrapVal()).putInt(config.getEndVal());
+        buffer.putInt(config.getTrapRemovalCost()).putInt(config.getCollisionLimit());
+        buffer.putInt(config.getStepPenalty()).putInt(config.getDeclineCost());
+        long[] packed = new long[GameSession.PACKED_WORDS];
+        session.storePacked(packed, 0);
+        for (long word : packed)
+            buffer.putLong(word);
+        try
+        {
+            drain();
+        }
+        catch (UncheckedIOException e)
+        {
+            channel.close();
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Append a command. It reaches the file when the buffer fills, at {@link #sync()} or at {@link #close()}.
+     * <P>
+     * @throws UncheckedIOException if the journal cannot be written
+     */
+    @Override
+    public synchronized void record(int packed, int delta)
+    {
+        if (!channel.isOpen()) return;
+        Command command = Command.of(packed);
+        write(command.ordinal(), OPCODE_BITS);
+        if (command.isRepeatable())
+        {
+            int count = Command.count(packed);
+            if (count == 1)
+                write(0, 1);
+            else
+                write(1 << COUNT_BITS | count, 1 + COUNT_BITS);
+        }
+        if (delta == 0)
+        {
+            write(0, 1);
+        }
+        else
+        {
+            // gamma code: length - 1 zeros, then the value in length bits
+            int zigzag = (delta << 1) ^ (delta >> 31);
+            int length = 32 - Integer.numberOfLeadingZeros(zigzag);
+            write(1, 1);
+            write(0, length - 1);
+            write(zigzag & 0xFFFFFFFFL, length);
+        }
+    }
+
+    /**
+     * Write the commands recorded so far to the file, but the bits of a last partial byte, e.g.
+     * when the game is over or its session is parked. Does nothing if the journal is closed.
+     * <P>
+     * @throws IOException if the journal cannot be written
+     */
+    public synchronized void sync() throws IOException
+    {
+        if (!channel.isOpen() || buffer.position() == 0) return;
+        try
+        {
+            drain();
+        }
+        catch (UncheckedIOException e)
+        {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Write the end of the journal and close the file. Does nothing if it is already closed.
+     * <P>
+     * @throws IOException if the journal cannot be written
+     */
+    @Override
+    public synchronized void close() throws IOException
+    {
+        if (!channel.isOpen()) return;
+        try
+        {
+            write(END, OPCODE_BITS);
+            if (bitCount > 0) write(0, 8 - bitCount); // pad the last byte
+            drain();
+        }
+        catch (UncheckedIOException e)
+        {
+            throw e.getCause();
+        }
+        finally
+        {
+            channel.close();
+        }
+    }
+
+    /*------------------- private methods -------------------*/
+
+    /*
+     * Append the low n bits of value, n at most 32
+     */
+    private void write(long value, int n)
+    {
+        bits = bits << n | (value & ((1L << n) - 1));
+        bitCount += n;
+        while (bitCount >= 8)
+        {
+            bitCount -= 8;
+            if (!buffer.hasRemaining()) drain();
+            buffer.put((byte)(bits >>> bitCount));
+        }
+    }
+
+    private void drain()
+    {
+        try
+        {
+            buffer.flip();
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+            buffer.clear();
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,256 @@
+import java.util.SplittableRandom;
+
+/**
+ * A room of any size up to {@value #MAX_SIDE} x {@value #MAX_SIDE} cells, for maps too big for the
+ * 40-bit bitboards of {@link Board}. A {@link GameEngine} plays in one after
+ * {@link GameEngine#setSize(int, int)}, with the same rules as on the normal board.
+ * <P>
+ * Traps, prizes and walls are kept in {@link SparseGrid}s, so every lookup a move, a trap check or a
+ * pickup makes is one hash probe, and memory grows with the number of things in the room rather
+ * than its area: tens of thousands of traps and walls on 10,000 x 10,000 cells take a few megabytes.
+ * Sprung traps and picked up prizes are kept in grids of their own, so {@link #restore()} only has
+ * to clear them.
+ * <P>
+ * A flood fill over a room this size would visit up to 10^8 cells, so instead of generate-and-test
+ * as in {@link BoardGenerator} the generator keeps walls off a path to everything: no wall on the
+ * right edge of a cell in the top row, and no wall on the bottom edge of a cell in the last column
+ * or in a column with a prize. The player can always walk along the top row, then down to any prize
+ * or to either finish corner.
+ */
+public class LargeBoard implements Room
+{
+    /** Cells along each side of the largest room. */
+    public static final int MAX_SIDE = 10_000;
+
+    // layout layers
+    final SparseGrid traps;
+    final SparseGrid prizes;
+    final SparseGrid wallsRight; // wall on the right edge of the cell
+    final SparseGrid wallsDown;  // wall on the bottom edge of the cell
+
+    // traps of the layout sprung or removed, prizes of the layout picked up
+    private final SparseGrid sprung;
+    private final SparseGrid pickedUp;
+
+    private final int width;
+    private final int height;
+    private long seed;
+
+    /**
+     * An empty room.
+     * <P>
+     * @param width columns, from Board.COLS to MAX_SIDE
+     * @param height rows, from Board.ROWS to MAX_SIDE
+     * @param entities about how many traps, prizes and walls it will hold, to size the index
+     * @throws IllegalArgumentException if the size is out of range
+     */
+    public LargeBoard(int width, int height, int entities)
+    {
+        if (width < Board.COLS || width > MAX_SIDE || height < Board.ROWS || height > MAX_SIDE)
+            throw new IllegalArgumentException("board size " + width + " x " + height + " is not between "
+                    + Board.COLS + " x " + Board.ROWS + " and " + MAX_SIDE + " x " + MAX_SIDE);
+        this.width = width;
+        this.height = height;
+        traps = new SparseGrid(entities);
+        prizes = new SparseGrid(entities);
+        wallsRight = new SparseGrid(entities);
+        wallsDown = new SparseGrid(entities);
+        sprung = new SparseGrid(entities / 4);
+        pickedUp = new SparseGrid(entities / 4);
+    }
+
+    /**
+     * Fill the room with a random layout that can always be won, replacing what it held.
+     * <P>
+     * @param seed the seed of the layout
+     * @param walls number of walls, all on different edges
+     * @param traps number of traps, each on its own cell
+     * @param prizes number of prizes, each on its own cell
+     * @throws IllegalArgumentException if the counts do not fit in the room
+     */
+    @Override
+    public void generate(long seed, int walls, int traps, int prizes)
+    {
+        long area = (long)width * height;
+        if (traps > area / 2 || prizes > area / 2 || walls > area / 2)
+            throw new IllegalArgumentException("at most " + area / 2 + " walls, traps or prizes fit on the board");
+        this.seed = seed;
+        this.traps.clear();
+        this.prizes.clear();
+        wallsRight.clear();
+        wallsDown.clear();
+        restore();
+        SplittableRandom rand = new SplittableRandom(seed);
+        boolean[] openColumn = new boolean[width];
+        openColumn[width - 1] = true;
+        for (int n = 0; n < prizes; )
+        {
+            int col = rand.nextInt(width);
+            if (this.prizes.add(col, rand.nextInt(height)))
+            {
+                openColumn[col] = true;
+                n++;
+            }
+        }
+        for (int n = 0; n < traps; )
+        {
+            if (this.traps.add(rand.nextInt(width), rand.nextInt(height))) n++;
+        }
+        for (int n = 0; n < walls; )
+        {
+            int col = rand.nextInt(width);
+            int row = rand.nextInt(height);
+            if (rand.nextBoolean())
+            {
+                // vertical wall, never across the top row
+                if (row > 0 && col < width - 1 && wallsRight.add(col, row)) n++;
+            }
+            else
+            {
+                // horizontal wall, never across a column the path needs
+                if (!openColumn[col] && row < height - 1 && wallsDown.add(col, row)) n++;
+            }
+        }
+    }
+
+    @Override
+    public int getWidth()
+    {
+        return width;
+    }
+
+    @Override
+    public int getHeight()
+    {
+        return height;
+    }
+
+    @Override
+    public long getSeed()
+    {
+        return seed;
+    }
+
+    @Override
+    public void restore()
+    {
+        sprung.clear();
+        pickedUp.clear();
+    }
+
+    @Override
+    public boolean isRestored()
+    {
+        return sprung.size() == 0 && pickedUp.size() == 0;
+    }
+
+    @Override
+    public long sweep(int cell, int dir, int cells)
+    {
+        int col = cell % width;
+        int row = cell / width;
+        int edge;
+        switch (dir)
+        {
+            case Board.RIGHT: edge = width - 1 - col; break;
+            case Board.LEFT:  edge = col; break;
+            case Board.UP:    edge = row; break;
+            default:          edge = height - 1 - row; break;
+        }
+        int reach = Math.min(cells, edge);
+        int reason = cells > edge ? Board.OFF_GRID : Board.CLEAR;
+        int dx = dir == Board.RIGHT ? 1 : dir == Board.LEFT ? -1 : 0;
+        int dy = dir == Board.DOWN ? 1 : dir == Board.UP ? -1 : 0;
+        int moved = 0;
+        while (moved < reach)
+        {
+            if (isBlocked(col, row, dir))
+            {
+                if (reason == Board.CLEAR) reason = Board.WALL;
+                break;
+            }
+            col += dx;
+            row += dy;
+            moved++;
+        }
+        return (long)reason << 32 | (row * width + col);
+    }
+
+    @Override
+    public boolean isLiveTrap(int cell)
+    {
+        return isLiveTrap(cell % width, cell / width);
+    }
+
+    @Override
+    public boolean removeTrap(int cell)
+    {
+        int col = cell % width;
+        int row = cell / width;
+        return isLiveTrap(col, row) && sprung.add(col, row);
+    }
+
+    @Override
+    public boolean removePrize(int cell)
+    {
+        int col = cell % width;
+        int row = cell / width;
+        return prizes.contains(col, row) && pickedUp.add(col, row);
+    }
+
+    @Override
+    public int adjacentTraps(int cell)
+    {
+        int col = cell % width;
+        int row = cell / width;
+        return (isLiveTrap(col + 1, row) ? 1 << Board.RIGHT : 0)
+             | (isLiveTrap(col - 1, row) ? 1 << Board.LEFT : 0)
+             | (isLiveTrap(col, row - 1) ? 1 << Board.UP : 0)
+             | (isLiveTrap(col, row + 1) ? 1 << Board.DOWN : 0);
+    }
+
+    /**
+     * Copies the cells a few shifts per row of the viewport, from the tiles they lie in.
+     */
+    @Override
+    public void viewport(int col, int row, Board dst)
+    {
+        long right = 0;
+        long down = 0;
+        long liveTraps = 0;
+        long livePrizes = 0;
+        for (int r = 0; r < Board.ROWS; r++)
+        {
+            int shift = r * Board.COLS;
+            right |= wallsRight.row(col, row + r, Board.COLS) << shift;
+            down |= wallsDown.row(col, row + r, Board.COLS) << shift;
+            liveTraps |= (traps.row(col, row + r, Board.COLS) & ~sprung.row(col, row + r, Board.COLS)) << shift;
+            livePrizes |= (prizes.row(col, row + r, Board.COLS) & ~pickedUp.row(col, row + r, Board.COLS)) << shift;
+        }
+        dst.setWalls(right, down);
+        dst.traps = liveTraps;
+        dst.prizes = livePrizes;
+        dst.seed = seed;
+    }
+
+    /**
+     * @return true if a wall is on the edge of the cell in the direction
+     */
+    public boolean isBlocked(int col, int row, int dir)
+    {
+        switch (dir)
+        {
+            case Board.RIGHT: return wallsRight.contains(col, row);
+            case Board.LEFT:  return wallsRight.contains(col - 1, row);
+            case Board.UP:    return wallsDown.contains(col, row - 1);
+            default:          return wallsDown.contains(col, row);
+        }
+    }
+
+    /*------------------- private methods -------------------*/
+
+    private boolean isLiveTrap(int col, int row)
+    {
+        return col >= 0 && col < width && row >= 0 && row < height && traps.contains(col, row) && !sprung.contains(col, row);
+    }
+}
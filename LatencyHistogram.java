@@ -0,0 +1,116 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts durations in nanoseconds in buckets that grow with the value, for percentiles within
+ * 12.5% of the true value from a few nanoseconds to hours.
+ * <P>
+ * Each power of two is split into {@value #SUB_BUCKETS} buckets, so recording a value is a couple
+ * of shifts and one atomic add into a fixed array: nothing is allocated and any number of threads
+ * can record at once, while another reads.
+ */
+public class LatencyHistogram
+{
+    /** Buckets each power of two is split into. */
+    public static final int SUB_BUCKETS = 8;
+
+    private static final int SUB_BITS = 3;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(64 * SUB_BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * @param nanos a duration, negative ones count as 0
+     */
+    public void record(long nanos)
+    {
+        if (nanos < 0) nanos = 0;
+        buckets.incrementAndGet(bucket(nanos));
+        count.incrementAndGet();
+        total.addAndGet(nanos);
+        long m = max.get();
+        while (nanos > m && !max.compareAndSet(m, nanos)) m = max.get();
+    }
+
+    /** @return the number of durations recorded */
+    public long getCount()
+    {
+        return count.get();
+    }
+
+    /** @return the mean duration, 0 if none was recorded */
+    public long getMean()
+    {
+        long n = count.get();
+        return n == 0 ? 0 : total.get() / n;
+    }
+
+    /** @return the longest duration recorded */
+    public long getMax()
+    {
+        return max.get();
+    }
+
+    /**
+     * @param quantile from 0 to 1, e.g. 0.99 for the 99th percentile
+     * @return the upper bound of the bucket the quantile falls in, at most the maximum; 0 if nothing
+     *         was recorded
+     */
+    public long getPercentile(double quantile)
+    {
+        long n = count.get();
+        if (n == 0) return 0;
+        long rank = Math.max(1, (long)Math.ceil(quantile * n));
+        long seen = 0;
+        for (int i = 0; i < buckets.length(); i++)
+        {
+            seen += buckets.get(i);
+            if (seen >= rank) return Math.min(upperBound(i), max.get());
+        }
+        return max.get();
+    }
+
+    /**
+     * Forget everything recorded. Durations recorded at the same time may be partly kept.
+     */
+    public void reset()
+    {
+        for (int i = 0; i < buckets.length(); i++)
+            buckets.set(i, 0);
+        count.set(0);
+        total.set(0);
+        max.set(0);
+    }
+
+    /**
+     * @return the count, mean, median, 99th percentile and maximum, in microseconds
+     */
+    @Override
+    public String toString()
+    {
+        return String.format("n=%d mean=%.1fus p50=%.1fus p99=%.1fus max=%.1fus", getCount(),
+                getMean() / 1e3, getPercentile(0.5) / 1e3, getPercentile(0.99) / 1e3, getMax() / 1e3);
+    }
+
+    /*------------------- private methods -------------------*/
+
+    /*
+     * Values below SUB_BUCKETS get a bucket each; above, the top SUB_BITS + 1 bits pick the bucket
+     */
+    private static int bucket(long nanos)
+    {
+        if (nanos < SUB_BUCKETS) return (int)nanos;
+        int exp = 63 - Long.numberOfLeadingZeros(nanos) - SUB_BITS;
+        return (exp + 1) * SUB_BUCKETS + (int)(nanos >>> exp) - SUB_BUCKETS;
+    }
+
+    private static long upperBound(int bucket)
+    {
+        if (bucket < SUB_BUCKETS) return bucket;
+        int exp = bucket / SUB_BUCKETS - 1;
+        long sub = bucket % SUB_BUCKETS + SUB_BUCKETS;
+        return ((sub + 1) << exp) - 1;
+    }
+}
@@ -0,0 +1,278 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Supplier;
+
+/**
+ * Estimates the expected score, finish rate and trap collision distribution of a configuration
+ * by playing many seeded games with a {@link Policy}.
+ * <P>
+ * The games are split over a fork-join pool. Each worker thread plays on its own silent
+ * {@link GameEngine} and policy, reused from game to game, and collects its own {@link ScoreStats};
+ * nothing is shared between workers until the statistics are merged, so the run scales with the
+ * number of cores. Game i is played from a seed derived from the run's seed and i alone, so the
+ * results do not depend on the number of threads.
+ * <P>
+ * From the project root:
+ * <pre>
+ * javac -d out *.java
+ * java -cp out MonteCarlo -n 1000000 -policy random -traps 10 -prizeVal 20
+ * </pre>
+ * Options: <code>-n</code> games, <code>-threads</code>, <code>-seed</code>, <code>-policy random|solver</code>,
+ * <code>-max</code> commands before a game is quit, and any {@link GameConfig} setting, e.g. <code>-collisionLimit 4</code>.
+ */
+public class MonteCarlo
+{
+    /** Commands a policy may play before its game is quit. */
+    public static final int DEFAULT_MAX_COMMANDS = 1000;
+
+    // games played by one task before it stops splitting
+    private static final long GAMES_PER_TASK = 1024;
+
+    private final GameConfig config;
+    private final Supplier<? extends Policy> policy;
+    private long seed;
+    private int maxCommands = DEFAULT_MAX_COMMANDS;
+
+    /**
+     * @param config the configuration to play
+     * @param policy creates the player of each worker thread
+     */
+    public MonteCarlo(GameConfig config, Supplier<? extends Policy> policy)
+    {
+        this.config = config;
+        this.policy = policy;
+    }
+
+    /**
+     * @param seed the seed every game seed is derived from
+     */
+    public void setSeed(long seed)
+    {
+        this.seed = seed;
+    }
+
+    /**
+     * @param maxCommands commands a policy may play before its game is quit
+     */
+    public void setMaxCommands(int maxCommands)
+    {
+        this.maxCommands = maxCommands;
+    }
+
+    /**
+     * Play games on the common fork-join pool.
+     * <P>
+     * @param games the number of games
+     * @return the statistics of all games
+     */
+    public ScoreStats run(long games)
+    {
+        return run(games, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Play games on a fork-join pool.
+     * <P>
+     * @param games the number of games
+     * @param pool the pool to play on
+     * @return the statistics of all games
+     */
+    public ScoreStats run(long games, ForkJoinPool pool)
+    {
+        ThreadLocal<Player> players = ThreadLocal.withInitial(Player::new);
+        return pool.invoke(new Batch(0, games, players));
+    }
+
+    /**
+     * @return the seed of game i of a run started from seed
+     */
+    public static long gameSeed(long seed, long i)
+    {
+        // SplitMix64 finalizer of the i-th step of the sequence
+        long z = seed + (i + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Play one game to its end on a silent engine: the policy's commands until the game is over or
+     * maxCommands were played, then the detrap question declined and the game quit.
+     * <P>
+     * @param engine the engine to play on, with the configuration to play
+     * @param gameSeed the seed of the game
+     * @param policy the player
+     * @param maxCommands commands the policy may play before the game is quit
+     * @param stats where to add the game's result
+     */
+    static void play(GameEngine engine, long gameSeed, Policy policy, int maxCommands, ScoreStats stats)
+    {
+        engine.newGame(gameSeed);
+        GameSession session = new GameSession(engine, null);
+        policy.newGame(session, ~gameSeed);
+        for (int n = 0; n < maxCommands && session.isPlaying(); n++)
+            session.execute(policy.nextCommand(session));
+        if (session.isPlaying())
+        {
+            if (session.isAwaitingDetrap()) session.execute(Command.NO.packed());
+            session.execute(Command.QUIT.packed());
+        }
+        stats.add(session.getScore(), engine.isAtFinish(), engine.getSteps(), engine.getTrapCollisions());
+    }
+
+    public static void main(String[] args)
+    {
+        Options options = new Options(args, "-policy");
+        GameConfig config = options.config;
+        long games = options.games;
+        int threads = options.threads;
+        long seed = options.seed;
+        int maxCommands = options.maxCommands;
+        String policyName = options.value("-policy", "random");
+        if (!options.words.isEmpty()) throw new IllegalArgumentException("unknown argument " + options.words.get(0));
+        Supplier<Policy> policy;
+        switch (policyName)
+        {
+            case "random": policy = Policy.random(); break;
+            case "solver": policy = Policy.solver(); break;
+            default: throw new IllegalArgumentException("unknown policy " + policyName);
+        }
+
+        MonteCarlo evaluator = new MonteCarlo(config, policy);
+        evaluator.setSeed(seed);
+        evaluator.setMaxCommands(maxCommands);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        long start = System.nanoTime();
+        ScoreStats stats = evaluator.run(games, pool);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        pool.shutdown();
+
+        System.out.printf("games      %d  policy %s  seed %d  threads %d  %.2f s (%.0f games/s)%n",
+                games, policyName, seed, threads, seconds, games / seconds);
+        System.out.println("config     " + config);
+        stats.report(System.out);
+    }
+
+    /**
+     * The command line options of a batch of games, shared with {@link Tournament}: <code>-n</code>
+     * games, <code>-threads</code>, <code>-seed</code>, <code>-max</code> commands, any
+     * {@link GameConfig} setting, and options of the program itself.
+     */
+    static final class Options
+    {
+        final GameConfig config = new GameConfig();
+        long games = 100_000;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long seed = 1;
+        int maxCommands = DEFAULT_MAX_COMMANDS;
+        // arguments that are not options, in order
+        final List<String> words = new ArrayList<>();
+
+        private final String[] names;
+        private final String[] values;
+
+        /**
+         * @param args the command line
+         * @param names options of the program that take a value, e.g. -policy
+         * @throws IllegalArgumentException if a GameConfig setting is unknown or out of range
+         */
+        Options(String[] args, String... names)
+        {
+            this.names = names;
+            this.values = new String[names.length];
+            for (int i = 0; i < args.length; i++)
+            {
+                switch (args[i])
+                {
+                    case "-n": games = Long.parseLong(args[++i]); break;
+                    case "-threads": threads = Integer.parseInt(args[++i]); break;
+                    case "-seed": seed = Long.parseLong(args[++i]); break;
+                    case "-max": maxCommands = Integer.parseInt(args[++i]); break;
+                    default:
+                        int k = indexOf(args[i]);
+                        if (k >= 0) values[k] = args[++i];
+                        else if (args[i].startsWith("-")) config.set(args[i].substring(1), Integer.parseInt(args[++i]));
+                        else words.add(args[i]);
+                        break;
+                }
+            }
+        }
+
+        /**
+         * @return the value given for one of the program's options, or fallback if it was not given
+         */
+        String value(String name, String fallback)
+        {
+            int k = indexOf(name);
+            return k >= 0 && values[k] != null ? values[k] : fallback;
+        }
+
+        private int indexOf(String name)
+        {
+            for (int k = 0; k < names.length; k++)
+                if (names[k].equals(name)) return k;
+            return -1;
+        }
+    }
+
+    /*------------------- private classes -------------------*/
+
+    /*
+     * The engine and policy of one worker thread
+     */
+    private final class Player
+    {
+        final GameEngine engine = new GameEngine(0, null);
+        final Policy policy = MonteCarlo.this.policy.get();
+
+        Player()
+        {
+            engine.setConfig(config);
+        }
+
+        void play(long i, ScoreStats stats)
+        {
+            MonteCarlo.play(engine, gameSeed(seed, i), policy, maxCommands, stats);
+        }
+    }
+
+    /*
+     * Games [from, to), split in halves until small enough to play
+     */
+    private final class Batch extends RecursiveTask<ScoreStats>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final long from;
+        private final long to;
+        private final ThreadLocal<Player> players;
+
+        Batch(long from, long to, ThreadLocal<Player> players)
+        {
+            this.from = from;
+            this.to = to;
+            this.players = players;
+        }
+
+        @Override
+        protected ScoreStats compute()
+        {
+            if (to - from <= GAMES_PER_TASK)
+            {
+                ScoreStats stats = new ScoreStats();
+                Player player = players.get();
+                for (long i = from; i < to; i++)
+                    player.play(i, stats);
+                return stats;
+            }
+            long middle = (from + to) >>> 1;
+            Batch left = new Batch(from, middle, players);
+            Batch right = new Batch(middle, to, players);
+            right.fork();
+            ScoreStats stats = left.compute();
+            return stats.merge(right.join());
+        }
+    }
+}
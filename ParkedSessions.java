@@ -0,0 +1,246 @@
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * Idle sessions packed into one array, so a server can keep a very large number of games waiting
+ * for their players without an engine, board or session object for each.
+ * <P>
+ * A parked session takes {@link GameSession#PACKED_WORDS} longs plus two longs and two ints of
+ * bookkeeping, about 72 bytes; a million of them fit in about 70 MB of heap. Parking and unparking
+ * copy the session in and out of the array; on the way out the session's engine takes its state
+ * back from the packed words and generates the board layout again from its seed. Every session in
+ * a store must be played with the same {@link GameConfig}. Safe to use from many threads.
+ * <P>
+ * A session is parked under a ticket: its slot and a random 64-bit secret drawn when it was
+ * parked, which unparking compares with the slot's in constant time. A ticket cannot be guessed
+ * from another, and the ticket of a session that was unparked does not open the next session
+ * stored in its slot.
+ * <P>
+ * A session stays parked for at most the store's time to live. When the store holds its most
+ * sessions, parking another evicts the one parked longest ago; parked sessions are never read
+ * until they are unparked, so that is also the least recently used one.
+ */
+public class ParkedSessions
+{
+    /** Most sessions a store can hold. */
+    public static final int MAX_SESSIONS = 1 << 21;
+
+    /** How long a session stays parked unless another time to live is given. */
+    public static final Duration DEFAULT_TIME_TO_LIVE = Duration.ofHours(24);
+
+    private static final int WORDS = GameSession.PACKED_WORDS;
+    private static final int NONE = -1;
+
+    private final int maxSessions;
+    private final long timeToLive;
+    private final SecureRandom random = new SecureRandom();
+
+    private long[] words;
+    private long[] secret;   // 0 while a slot is empty
+    private long[] parkedAt; // System.nanoTime() when the slot's session was parked
+    // the slots holding sessions, in the order they were parked, linked both ways
+    private int[] older;
+    private int[] newer;
+    private int oldest = NONE;
+    private int newest = NONE;
+    private int[] free;      // stack of empty slots below the high water mark
+    private int freeCount;
+    private int used;        // slots ever handed out
+    private int size;
+    private long evictions;
+
+    /**
+     * A store holding up to {@link #MAX_SESSIONS} sessions for {@link #DEFAULT_TIME_TO_LIVE} each.
+     * <P>
+     * @param capacity the number of sessions to make room for at first
+     */
+    public ParkedSessions(int capacity)
+    {
+        this(capacity, MAX_SESSIONS, DEFAULT_TIME_TO_LIVE);
+    }
+
+    /**
+     * @param capacity the number of sessions to make room for at first
+     * @param maxSessions the most sessions to hold, at most {@link #MAX_SESSIONS}
+     * @param timeToLive how long a session stays parked
+     * @throws IllegalArgumentException if maxSessions is out of range or timeToLive is not positive
+     */
+    public ParkedSessions(int capacity, int maxSessions, Duration timeToLive)
+    {
+        if (maxSessions < 1 || maxSessions > MAX_SESSIONS)
+            throw new IllegalArgumentException("maxSessions must be 1.." + MAX_SESSIONS + ", not " + maxSessions);
+        if (timeToLive.isNegative() || timeToLive.isZero())
+            throw new IllegalArgumentException("timeToLive must be positive, not " + timeToLive);
+        this.maxSessions = maxSessions;
+        this.timeToLive = timeToLive.toNanos();
+        capacity = Math.max(1, Math.min(capacity, maxSessions));
+        words = new long[capacity * WORDS];
+        secret = new long[capacity];
+        parkedAt = new long[capacity];
+        older = new int[capacity];
+        newer = new int[capacity];
+        free = new int[16];
+    }
+
+    /**
+     * Park a session. The session itself is not changed and may be reused for another game. If
+     * the store is full, the session parked longest ago is evicted to make room.
+     * <P>
+     * @param session the session to park
+     * @return the ticket to unpark it with
+     */
+    public synchronized String park(GameSession session)
+    {
+        long now = System.nanoTime();
+        expire(now);
+        if (size == maxSessions)
+        {
+            remove(oldest);
+            evictions++;
+        }
+        int slot = freeCount > 0 ? free[freeCount - 1] : used;
+        if (slot == secret.length) grow();
+        // write the state before claiming the slot, so a session that cannot be packed takes none
+        session.storePacked(words, slot * WORDS);
+        if (freeCount > 0) freeCount--;
+        else used++;
+        long s;
+        do
+        {
+            s = random.nextLong();
+        }
+        while (s == 0);
+        secret[slot] = s;
+        parkedAt[slot] = now;
+        older[slot] = newest;
+        newer[slot] = NONE;
+        if (newest != NONE) newer[newest] = slot;
+        else oldest = slot;
+        newest = slot;
+        size++;
+        return slot + "-" + Long.toHexString(s);
+    }
+
+    /**
+     * Continue a parked session in a session and its engine, removing it from the store.
+     * <P>
+     * @param ticket the ticket park returned
+     * @param into the session to continue the game in
+     * @return false if no session is parked under the ticket, or it was evicted or expired
+     */
+    public synchronized boolean unpark(String ticket, GameSession into)
+    {
+        expire(System.nanoTime());
+        int slot = find(ticket);
+        if (slot == NONE) return false;
+        into.loadPacked(words, slot * WORDS);
+        remove(slot);
+        return true;
+    }
+
+    /**
+     * @return true if a session is parked under the ticket
+     */
+    public synchronized boolean holds(String ticket)
+    {
+        expire(System.nanoTime());
+        return find(ticket) != NONE;
+    }
+
+    /**
+     * @return the number of parked sessions
+     */
+    public synchronized int size()
+    {
+        expire(System.nanoTime());
+        return size;
+    }
+
+    /**
+     * @return the number of sessions evicted to make room for others, not counting expired ones
+     */
+    public synchronized long getEvictions()
+    {
+        return evictions;
+    }
+
+    /**
+     * @return how long a session stays parked
+     */
+    public Duration getTimeToLive()
+    {
+        return Duration.ofNanos(timeToLive);
+    }
+
+    /*------------------- private methods -------------------*/
+
+    /*
+     * The slot of the session parked under a ticket, NONE if there is none or the ticket is malformed
+     */
+    private int find(String ticket)
+    {
+        if (ticket == null) return NONE;
+        int dash = ticket.indexOf('-');
+        if (dash <= 0) return NONE;
+        int slot;
+        long s;
+        try
+        {
+            slot = Integer.parseInt(ticket.substring(0, dash));
+            s = Long.parseUnsignedLong(ticket.substring(dash + 1), 16);
+        }
+        catch (NumberFormatException e)
+        {
+            return NONE;
+        }
+        if (slot < 0 || slot >= used || s == 0) return NONE;
+        // compared in constant time, as for any bearer secret
+        if (!MessageDigest.isEqual(bytes(secret[slot]), bytes(s))) return NONE;
+        return slot;
+    }
+
+    private static byte[] bytes(long value)
+    {
+        return ByteBuffer.allocate(Long.BYTES).putLong(value).array();
+    }
+
+    /*
+     * Drop the sessions parked longer than the time to live, oldest first
+     */
+    private void expire(long now)
+    {
+        while (oldest != NONE && now - parkedAt[oldest] >= timeToLive)
+            remove(oldest);
+    }
+
+    /*
+     * Empty a slot holding a session
+     */
+    private void remove(int slot)
+    {
+        secret[slot] = 0;
+        if (older[slot] != NONE) newer[older[slot]] = newer[slot];
+        else oldest = newer[slot];
+        if (newer[slot] != NONE) older[newer[slot]] = older[slot];
+        else newest = older[slot];
+        if (freeCount == free.length) free = Arrays.copyOf(free, 2 * free.length);
+        free[freeCount++] = slot;
+        size--;
+    }
+
+    /*
+     * Double the room for sessions
+     */
+    private void grow()
+    {
+        int capacity = (int)Math.min(maxSessions, 2L * secret.length);
+        words = Arrays.copyOf(words, capacity * WORDS);
+        secret = Arrays.copyOf(secret, capacity);
+        parkedAt = Arrays.copyOf(parkedAt, capacity);
+        older = Arrays.copyOf(older, capacity);
+        newer = Arrays.copyOf(newer, capacity);
+    }
+}
@@ -0,0 +1,93 @@
+/**
+ * What a player at the keyboard can know about a game, for a {@link Strategy}: where they stand,
+ * the walls and prizes on the board, the score and counters, and what find and check showed.
+ * Traps are invisible and the finish is not marked; it is one of {@link #FINISH_CELLS}.
+ * <P>
+ * Cells are numbered as in {@link Board} and sets of cells are bitmasks of them. A view only reads
+ * its session, so a strategy cannot change the game except through the commands it returns.
+ */
+public final class PlayerView
+{
+    /** The cells the finish may be on, top-right and bottom-right; which one is not shown. */
+    public static final long FINISH_CELLS = 1L << Board.cell(Board.COLS - 1, 0)
+                                          | 1L << Board.cell(Board.COLS - 1, Board.ROWS - 1);
+
+    private final GameSession session;
+    private final GameEngine engine;
+
+    /**
+     * @param session the game to view
+     */
+    public PlayerView(GameSession session)
+    {
+        this.session = session;
+        this.engine = session.getEngine();
+    }
+
+    /** @return the cell the player stands on */
+    public int getPlayerCell() { return engine.getPlayerCell(); }
+
+    /** @return the prizes not picked up yet */
+    public long getPrizes() { return engine.getLivePrizes(); }
+
+    /** @return the cells with a wall on their right edge */
+    public long getWallsRight() { return engine.getBoard().getWallsRight(); }
+
+    /** @return the cells with a wall on their bottom edge */
+    public long getWallsDown() { return engine.getBoard().getWallsDown(); }
+
+    /**
+     * @return true if a wall is on the edge of the cell in the direction
+     */
+    public boolean isBlocked(int cell, int dir)
+    {
+        return engine.getBoard().isBlocked(cell, dir);
+    }
+
+    /**
+     * @return the cells one step from any of the given cells, see {@link Board#step(long)}
+     */
+    public long step(long cells)
+    {
+        return engine.getBoard().step(cells);
+    }
+
+    /**
+     * @return every cell the player could walk to from a cell without entering the avoided cells,
+     *         see {@link Board#reachable(int, long)}
+     */
+    public long reachable(int from, long avoid)
+    {
+        return engine.getBoard().reachable(from, avoid);
+    }
+
+    /** @return the cells next to the player when find or check last ran */
+    public long getScannedCells() { return session.getScannedCells(); }
+
+    /** @return the cells among {@link #getScannedCells()} that held a trap */
+    public long getScannedTraps() { return session.getScannedTraps(); }
+
+    /** @return the score so far */
+    public int getScore() { return session.getScore(); }
+
+    /** @return the number of steps taken */
+    public int getSteps() { return engine.getSteps(); }
+
+    /** @return the number of commands run */
+    public int getCommandCount() { return session.getCommandCount(); }
+
+    /** @return the number of trap collisions so far */
+    public int getTrapCollisions() { return engine.getTrapCollisions(); }
+
+    /** @return the collisions after which finishing costs a penalty */
+    public int getCollisionLimit() { return engine.getCollisionLimit(); }
+
+    /** @return the number of traps removed by answering yes to the detrap question */
+    public int getTrapRemovals() { return engine.getTrapRemovals(); }
+
+    /** @return true if the detrap question is waiting for YES or NO */
+    public boolean isAwaitingDetrap() { return session.isAwaitingDetrap(); }
+
+    /** @return true while the game is being played */
+    public boolean isPlaying() { return session.isPlaying(); }
+}
@@ -0,0 +1,58 @@
+import java.util.function.Supplier;
+
+/**
+ * Chooses the commands of a computer player, e.g. for {@link MonteCarlo}.
+ * <P>
+ * A policy may keep state between calls and is only used by one thread at a time; an evaluator
+ * creates one per worker from a Supplier, such as {@link #random()} or {@link #solver()}.
+ */
+public interface Policy
+{
+    /**
+     * Called before each game.
+     * <P>
+     * @param session the session about to be played
+     * @param seed the seed for anything random the policy does in this game
+     */
+    default void newGame(GameSession session, long seed)
+    {
+    }
+
+    /**
+     * @param session the session being played
+     * @return the next packed command; while the session is awaiting the detrap answer this must be YES or NO
+     */
+    int nextCommand(GameSession session);
+
+    /**
+     * A player that picks up every prize it stands on, runs find on every cell it reaches and springs
+     * the traps it shows, and otherwise moves or jumps in a random direction. Detrap answers are random.
+     * It plays {@link Strategy#random()}, so it only knows of the traps find showed and pays for
+     * finding them like a player would.
+     */
+    static Supplier<Policy> random()
+    {
+        Supplier<Strategy> strategy = Strategy.random();
+        return () -> strategy.get().asPolicy();
+    }
+
+    /**
+     * A player that always plays the next command of the best plan, see {@link Solver}. It quits
+     * when no plan is found within the solver's state budget.
+     */
+    static Supplier<Policy> solver()
+    {
+        return () -> new Policy()
+        {
+            private final Solver solver = new Solver();
+
+            @Override
+            public int nextCommand(GameSession session)
+            {
+                int hint = solver.hint(session.getEngine());
+                if (hint != Command.INVALID) return hint;
+                return session.isAwaitingDetrap() ? Command.NO.packed() : Command.QUIT.packed();
+            }
+        };
+    }
+}
@@ -0,0 +1,97 @@
+/**
+ * Where a {@link GameEngine} plays: the layout of a room and which of its traps and prizes are
+ * still live. The engine holds every rule and all the scoring; a room only answers where things are
+ * and keeps track of what was sprung, removed or picked up.
+ * <P>
+ * The normal game plays in a {@link BitboardRoom}, the 8 x 5 {@link Board} with its live traps and
+ * prizes in two more longs. A {@link LargeBoard} holds rooms of up to 10,000 x 10,000 cells in
+ * sparse grids. Cells are numbered <code>row * getWidth() + col</code> in both, so the start is
+ * cell 0 and a cell of the normal board is the same number as in Board.
+ */
+public interface Room
+{
+    /** @return the number of columns */
+    int getWidth();
+
+    /** @return the number of rows */
+    int getHeight();
+
+    /**
+     * Fill the room with a random layout that can always be won, every trap and prize live.
+     * <P>
+     * @param seed the seed of the layout
+     * @param walls number of walls
+     * @param traps number of traps, each on its own cell
+     * @param prizes number of prizes, each on its own cell
+     */
+    void generate(long seed, int walls, int traps, int prizes);
+
+    /** @return the seed the layout was generated from */
+    long getSeed();
+
+    /**
+     * Make every trap and prize of the layout live again.
+     */
+    void restore();
+
+    /** @return true if every trap and prize of the layout is live */
+    boolean isRestored();
+
+    /**
+     * Resolve a straight move of several cells, as {@link Board#sweep(int, int, int)} does: the
+     * reason is OFF_GRID if the destination is off the room, otherwise WALL if a wall is crossed on
+     * the way, otherwise CLEAR, and the move stops before the first wall or the edge.
+     * <P>
+     * @param cell the starting cell
+     * @param dir Board.RIGHT, Board.LEFT, Board.UP or Board.DOWN
+     * @param cells how many cells to move
+     * @return the packed result, read it with {@link #stopCell(long)} and {@link #stopReason(long)}
+     */
+    long sweep(int cell, int dir, int cells);
+
+    /** @return true if the cell holds a live trap */
+    boolean isLiveTrap(int cell);
+
+    /**
+     * Take the live trap off a cell, when it is sprung or removed.
+     * <P>
+     * @return true if the cell held a live trap
+     */
+    boolean removeTrap(int cell);
+
+    /**
+     * Take the live prize off a cell, when it is picked up.
+     * <P>
+     * @return true if the cell held a live prize
+     */
+    boolean removePrize(int cell);
+
+    /**
+     * @return a mask with bit Board.RIGHT, LEFT, UP or DOWN set for each neighbour of the cell
+     *         holding a live trap, walls or not
+     */
+    int adjacentTraps(int cell);
+
+    /**
+     * Copy the Board.COLS x Board.ROWS cells from a column and row into a board, for a renderer of
+     * the normal game: the walls, and the live traps and prizes as the board's traps and prizes.
+     * The board's version only changes when its walls do.
+     * <P>
+     * @param col the column of the left edge, at most getWidth() - Board.COLS
+     * @param row the row of the top edge, at most getHeight() - Board.ROWS
+     * @param dst the board to fill
+     */
+    void viewport(int col, int row, Board dst);
+
+    /** @return the cell a sweep stopped on */
+    static int stopCell(long sweep)
+    {
+        return (int)sweep;
+    }
+
+    /** @return why a sweep stopped: Board.CLEAR, WALL or OFF_GRID */
+    static int stopReason(long sweep)
+    {
+        return (int)(sweep >>> 32);
+    }
+}
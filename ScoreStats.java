@@ -0,0 +1,175 @@
+import java.io.PrintStream;
+
+/**
+ * Statistics of many finished games: score, finish rate, steps and trap collisions.
+ * <P>
+ * Scores are accumulated with Welford's method and two ScoreStats merge exactly (Chan et al.),
+ * so every worker of a parallel run keeps its own and they are combined at the end.
+ */
+public class ScoreStats
+{
+    /** Collision counts at or above this share the last bucket of the histogram. */
+    public static final int HISTOGRAM_SIZE = 16;
+
+    /** Scores below SCORE_MIN or above SCORE_MAX count as that score in the score distribution. */
+    public static final int SCORE_MIN = -256;
+    public static final int SCORE_MAX = 255;
+
+    // two-sided 95% normal quantile
+    private static final double Z95 = 1.959963984540054;
+
+    private long games;
+    private double mean;
+    private double m2;     // sum of squared deviations from the mean
+    private int min = Integer.MAX_VALUE;
+    private int max = Integer.MIN_VALUE;
+    private long finished;
+    private long steps;
+    private final long[] collisions = new long[HISTOGRAM_SIZE];
+    private final long[] scores = new long[SCORE_MAX - SCORE_MIN + 1];
+
+    /**
+     * Add one finished game.
+     * <P>
+     * @param score the final score
+     * @param reachedFinish true if the player made it to the finish, false if the game was quit
+     * @param steps steps taken
+     * @param trapCollisions trap collisions during the game
+     */
+    public void add(int score, boolean reachedFinish, int steps, int trapCollisions)
+    {
+        games++;
+        double delta = score - mean;
+        mean += delta / games;
+        m2 += delta * (score - mean);
+        min = Math.min(min, score);
+        max = Math.max(max, score);
+        if (reachedFinish) finished++;
+        this.steps += steps;
+        collisions[Math.min(trapCollisions, HISTOGRAM_SIZE - 1)]++;
+        scores[Math.max(SCORE_MIN, Math.min(SCORE_MAX, score)) - SCORE_MIN]++;
+    }
+
+    /**
+     * Add every game of another ScoreStats to this one.
+     * <P>
+     * @param other the statistics to add
+     * @return this
+     */
+    public ScoreStats merge(ScoreStats other)
+    {
+        if (other.games == 0) return this;
+        long n = games + other.games;
+        double delta = other.mean - mean;
+        mean += delta * other.games / n;
+        m2 += other.m2 + delta * delta * games * other.games / n;
+        games = n;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        finished += other.finished;
+        steps += other.steps;
+        for (int i = 0; i < HISTOGRAM_SIZE; i++)
+            collisions[i] += other.collisions[i];
+        for (int i = 0; i < scores.length; i++)
+            scores[i] += other.scores[i];
+        return this;
+    }
+
+    /** @return the number of games */
+    public long getGames() { return games; }
+
+    /** @return the mean final score */
+    public double getMean() { return mean; }
+
+    /** @return the sample standard deviation of the final score */
+    public double getStandardDeviation()
+    {
+        return games > 1 ? Math.sqrt(m2 / (games - 1)) : 0;
+    }
+
+    /** @return half the width of the 95% confidence interval of the mean score */
+    public double getMeanError()
+    {
+        return games > 0 ? Z95 * getStandardDeviation() / Math.sqrt(games) : 0;
+    }
+
+    /** @return the lowest final score */
+    public int getMin() { return min; }
+
+    /** @return the highest final score */
+    public int getMax() { return max; }
+
+    /**
+     * @param fraction between 0 and 1, e.g. 0.5 for the median
+     * @return the lowest score at least that fraction of the games scored at most, clamped to
+     *         SCORE_MIN and SCORE_MAX
+     */
+    public int getScoreQuantile(double fraction)
+    {
+        long rank = Math.max(1, (long)Math.ceil(fraction * games));
+        long seen = 0;
+        for (int i = 0; i < scores.length; i++)
+        {
+            seen += scores[i];
+            if (seen >= rank) return i + SCORE_MIN;
+        }
+        return SCORE_MAX;
+    }
+
+    /** @return the fraction of games that reached the finish */
+    public double getFinishRate()
+    {
+        return games > 0 ? (double)finished / games : 0;
+    }
+
+    /**
+     * @return the 95% Wilson score interval of the finish rate, as {low, high}
+     */
+    public double[] getFinishRateInterval()
+    {
+        if (games == 0) return new double[] { 0, 1 };
+        double p = getFinishRate();
+        double z2n = Z95 * Z95 / games;
+        double center = (p + z2n / 2) / (1 + z2n);
+        double half = Z95 * Math.sqrt(p * (1 - p) / games + z2n / (4 * games)) / (1 + z2n);
+        return new double[] { Math.max(0, center - half), Math.min(1, center + half) };
+    }
+
+    /** @return the mean number of steps per game */
+    public double getMeanSteps()
+    {
+        return games > 0 ? (double)steps / games : 0;
+    }
+
+    /**
+     * @param count a number of trap collisions, HISTOGRAM_SIZE - 1 for that many or more
+     * @return the number of games with that many trap collisions
+     */
+    public long getCollisionCount(int count)
+    {
+        return collisions[count];
+    }
+
+    /**
+     * Print a summary of the statistics.
+     * <P>
+     * @param out where to print
+     */
+    public void report(PrintStream out)
+    {
+        double[] rate = getFinishRateInterval();
+        out.printf("score      mean %.3f +- %.3f (95%% CI)  sd %.3f  min %d  max %d%n",
+                mean, getMeanError(), getStandardDeviation(), min, max);
+        out.printf("quantiles  5%% %d  25%% %d  50%% %d  75%% %d  95%% %d%n", getScoreQuantile(0.05),
+                getScoreQuantile(0.25), getScoreQuantile(0.5), getScoreQuantile(0.75), getScoreQuantile(0.95));
+        out.printf("finish     %.3f%% (95%% CI %.3f%% - %.3f%%)%n", 100 * getFinishRate(), 100 * rate[0], 100 * rate[1]);
+        out.printf("steps      mean %.2f%n", getMeanSteps());
+        out.println("collisions");
+        for (int i = 0; i < HISTOGRAM_SIZE; i++)
+        {
+            if (collisions[i] == 0) continue;
+            String label = i == HISTOGRAM_SIZE - 1 ? i + "+" : Integer.toString(i);
+            out.printf("  %4s  %12d  %7.3f%%%n", label, collisions[i], 100.0 * collisions[i] / games);
+        }
+    }
+}
@@ -0,0 +1,346 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.SplittableRandom;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hosts many escape room games at once over a local socket, one game per connection.
+ * <P>
+ * The protocol is the terminal game: the client sends the commands of {@link CommandParser}, one
+ * per line, and receives the same text a terminal player sees. Every session owns its engine,
+ * {@link GameSession}, input and output, and nothing is shared between sessions, so there is no
+ * global input queue and no window. Each session runs on its own thread, a virtual thread when
+ * the JVM has them (Java 21 and later) and otherwise a platform thread with a small stack, and
+ * blocks only on its own socket.
+ * <P>
+ * A client that closes its side of the connection before the game is over gets its session
+ * parked in a {@link ParkedSessions} store and is told its ticket; a later connection whose first
+ * line is <code>resume &lt;ticket&gt;</code> continues that game, if it comes before the session
+ * expires or is evicted to make room for others.
+ * <P>
+ * From the project root:
+ * <pre>
+ * javac -d out *.java
+ * java -cp out SessionServer [-port 4242] [-journal DIRECTORY]
+ * </pre>
+ * then e.g. <code>nc localhost 4242</code>.
+ */
+public class SessionServer implements AutoCloseable
+{
+    /** Port the server listens on unless another is given. */
+    public static final int DEFAULT_PORT = 4242;
+
+    // longest command line kept, the rest of a longer line is ignored
+    private static final int MAX_LINE = 256;
+
+    // stack of a platform session thread; a session needs very little
+    private static final long PLATFORM_STACK_SIZE = 256 * 1024;
+
+    private final ServerSocket server;
+    private final ThreadFactory sessionThreads = sessionThreadFactory();
+    private final AtomicInteger sessions = new AtomicInteger();
+    private final ParkedSessions parked = new ParkedSessions(1024);
+    private Path journals;
+    private final AtomicLong journalCount = new AtomicLong();
+    private Thread acceptor;
+
+    // hints run a search that takes milliseconds of CPU; at most this many run at once, so a burst
+    // of hints queues up instead of taking the cores from every other session's commands
+    private final Semaphore searches = new Semaphore(Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+
+    /**
+     * Open the server socket on the loopback address.
+     * <P>
+     * @param port the port to listen on, 0 for any free port
+     * @throws IOException if the port cannot be opened
+     */
+    public SessionServer(int port) throws IOException
+    {
+        server = new ServerSocket(port, 1024, InetAddress.getLoopbackAddress());
+    }
+
+    /**
+     * Start accepting connections in the background.
+     */
+    public synchronized void start()
+    {
+        if (acceptor != null) return;
+        acceptor = new Thread(this::acceptLoop, "session-acceptor");
+        acceptor.start();
+    }
+
+    /**
+     * Stop accepting connections. Sessions already running play on until their client leaves.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        server.close();
+    }
+
+    /**
+     * Record every session in its own journal, see {@link JournalWriter}; a resumed session starts a new one.
+     * <P>
+     * @param directory where to write the journals, or null to keep none
+     */
+    public void setJournalDirectory(Path directory)
+    {
+        journals = directory;
+    }
+
+    /**
+     * @return the port the server listens on
+     */
+    public int getPort()
+    {
+        return server.getLocalPort();
+    }
+
+    /**
+     * @return the number of sessions being played
+     */
+    public int getSessionCount()
+    {
+        return sessions.get();
+    }
+
+    /**
+     * @return the number of sessions parked waiting for their client to come back
+     */
+    public int getParkedCount()
+    {
+        return parked.size();
+    }
+
+    /**
+     * @return true if sessions run on virtual threads
+     */
+    public boolean usesVirtualThreads()
+    {
+        return !(sessionThreads instanceof PlatformThreads);
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException
+    {
+        int port = DEFAULT_PORT;
+        Path journals = null;
+        for (int i = 0; i < args.length; i++)
+        {
+            if (args[i].equals("-port")) port = Integer.parseInt(args[++i]);
+            else if (args[i].equals("-journal")) journals = Paths.get(args[++i]);
+        }
+        SessionServer server = new SessionServer(port);
+        server.setJournalDirectory(journals);
+        server.start();
+        System.out.println("EscapeRoom sessions on localhost:" + server.getPort()
+                + (server.usesVirtualThreads() ? " (virtual threads)" : " (platform threads)"));
+        server.acceptor.join();
+    }
+
+    /*------------------- private methods -------------------*/
+
+    private void acceptLoop()
+    {
+        while (!server.isClosed())
+        {
+            try
+            {
+                Socket socket = server.accept();
+                sessions.incrementAndGet();
+                try
+                {
+                    sessionThreads.newThread(() -> serve(socket)).start();
+                }
+                catch (RuntimeException | OutOfMemoryError e)
+                {
+                    // e.g. unable to create native thread: turn the client away and carry on
+                    sessions.decrementAndGet();
+                    socket.close();
+                    System.err.println("Session not started: " + e);
+                }
+            }
+            catch (IOException e)
+            {
+                if (!server.isClosed()) System.err.println("Accept failed: " + e.getMessage());
+            }
+        }
+    }
+
+    /*
+     * Play one game with one client
+     */
+    private void serve(Socket socket)
+    {
+        JournalWriter journal = null;
+        // delivers the session's output on the session's own thread, which only waits on its socket
+        EventBus events = new EventBus(null);
+        try (Socket s = socket)
+        {
+            s.setTcpNoDelay(true);
+            InputStream in = new BufferedInputStream(s.getInputStream());
+            PrintStream out = new PrintStream(new BufferedOutputStream(s.getOutputStream()), false);
+
+            events.subscribe(new ConsoleSink(out));
+            GameEngine engine = new GameEngine(new SplittableRandom().nextLong(), events);
+            engine.createBoard();
+            EscapeRoom.printWelcome(out);
+            out.println("Traps on this board: " + engine.getTotalTraps());
+
+            GameSession session = new GameSession(engine, out);
+            session.begin();
+            events.drain();
+            out.flush();
+            StringBuilder line = new StringBuilder(MAX_LINE);
+            boolean first = true;
+            while (session.isPlaying() && readLine(in, line))
+            {
+                if (first)
+                {
+                    first = false;
+                    boolean resumed = resume(line, session, out);
+                    journal = startJournal(session);
+                    if (resumed)
+                    {
+                        events.drain();
+                        out.flush();
+                        continue;
+                    }
+                }
+                int packed = CommandParser.parse(line);
+                if (packed != Command.INVALID && Command.of(packed) == Command.HINT && !session.isAwaitingDetrap())
+                {
+                    searches.acquireUninterruptibly();
+                    try
+                    {
+                        session.execute(packed);
+                    }
+                    finally
+                    {
+                        searches.release();
+                    }
+                }
+                else session.execute(packed);
+                events.drain();
+                out.flush();
+                if (out.checkError()) break; // client went away
+            }
+            if (session.isPlaying())
+            {
+                if (journal != null) journal.sync(); // the game's commands are on file before its ticket goes out
+                String ticket = parked.park(session);
+                out.println();
+                out.println("Parked as " + ticket + ", connect within " + parked.getTimeToLive().toHours()
+                        + " hours and send \"resume " + ticket + "\" to continue");
+                out.flush();
+            }
+        }
+        catch (IOException e)
+        {
+            // the client closed the connection
+        }
+        finally
+        {
+            sessions.decrementAndGet();
+            events.close();
+            closeJournal(journal);
+        }
+    }
+
+    /*
+     * Start recording the session in a new journal if journals are kept, otherwise null
+     */
+    private JournalWriter startJournal(GameSession session) throws IOException
+    {
+        if (journals == null) return null;
+        Path file = journals.resolve("session-" + journalCount.getAndIncrement() + ".erj");
+        JournalWriter journal = new JournalWriter(file, session);
+        session.setCommandLog(journal);
+        return journal;
+    }
+
+    private static void closeJournal(JournalWriter journal)
+    {
+        if (journal == null) return;
+        try
+        {
+            journal.close();
+        }
+        catch (IOException e)
+        {
+            System.err.println("Journal not written: " + e.getMessage());
+        }
+    }
+
+    /*
+     * Continue a parked session if the line is "resume <ticket>"; false if it is not a resume line
+     */
+    private boolean resume(CharSequence line, GameSession session, PrintStream out)
+    {
+        String text = line.toString().trim();
+        if (!text.startsWith("resume ")) return false;
+        String ticket = text.substring("resume ".length()).trim();
+        if (parked.unpark(ticket, session))
+            out.println("Resumed session " + ticket + ", score " + session.getScore());
+        else
+            out.println("No parked session " + ticket);
+        session.begin();
+        return true;
+    }
+
+    /*
+     * Read the next line into line, without its end of line; false at the end of the input
+     */
+    private static boolean readLine(InputStream in, StringBuilder line) throws IOException
+    {
+        line.setLength(0);
+        int c = in.read();
+        if (c < 0) return false;
+        for (; c >= 0 && c != '\n'; c = in.read())
+        {
+            if (c != '\r' && line.length() < MAX_LINE) line.append((char)c);
+        }
+        return true;
+    }
+
+    /*
+     * Virtual threads when the JVM has them, looked up by reflection so the game still builds for older Java
+     */
+    private static ThreadFactory sessionThreadFactory()
+    {
+        try
+        {
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            Object virtual = Thread.class.getMethod("ofVirtual").invoke(null);
+            virtual = builder.getMethod("name", String.class, long.class).invoke(virtual, "session-", 0L);
+            return (ThreadFactory)builder.getMethod("factory").invoke(virtual);
+        }
+        catch (ReflectiveOperationException e)
+        {
+            return new PlatformThreads();
+        }
+    }
+
+    private static final class PlatformThreads implements ThreadFactory
+    {
+        private final AtomicLong count = new AtomicLong();
+
+        @Override
+        public Thread newThread(Runnable r)
+        {
+            Thread t = new Thread(null, r, "session-" + count.getAndIncrement(), PLATFORM_STACK_SIZE);
+            t.setDaemon(true);
+            return t;
+        }
+    }
+}
@@ -0,0 +1,423 @@
+import java.util.Arrays;
+
+/**
+ * Finds the plan with the best final score from the current state of a game, for the hint command.
+ * <P>
+ * The search runs over the full play state: the player cell, the live prizes and traps, the
+ * removal counters, the step penalty and pending detrap flags, and the collision count (capped just
+ * above the collision limit, the only thing scoring looks at). Transitions are played on a scratch
+ * copy of the engine, so the scores are exactly those of movePlayer, springTrap, pickupPrize,
+ * removeTrap and the finish, and the detrap y/n answer is part of the plan.
+ * <P>
+ * It is an A* search on regret: {@link GameEngine#rewardBound(long)} bounds the points still
+ * available and, as {@link GameConfig} keeps every score non-negative, every action's regret
+ * (points given up against that bound) is never negative, so the plan found has the best score,
+ * unless the state budget runs out first; {@link #isBest()} tells which.
+ * Moving is free, so among plans with that score a short one is preferred: the commands still
+ * needed (one per prize and trap left, plus half the distance to the finish) guide the search
+ * through the many free moves, weighted by {@value #ESTIMATE_WEIGHT}. Proving the very fewest
+ * commands took most of the search, since the best score is almost always every point on the
+ * board; with the weight a plan has at most twice the fewest commands, in practice a few percent
+ * more, and a fresh solve of a default board takes a few milliseconds instead of 10-20. The
+ * weighted estimate stays far below a point, so the score is still exact. A transposition table
+ * merges states reached by different paths. The tables grow with the states explored, up to the budget, and are reused by
+ * the next search, so a Solver that is rarely asked stays small.
+ */
+public class Solver
+{
+    /** States explored before giving up. */
+    public static final int DEFAULT_MAX_STATES = 1 << 17;
+
+    // states the tables are first sized for
+    private static final int INITIAL_STATES = 1 << 12;
+
+    // actions tried from a state without a pending trap collision; spring misses and empty
+    // pickups only lose points and are left out
+    private static final int[] ACTIONS = {
+        Command.RIGHT.packed(), Command.LEFT.packed(), Command.UP.packed(), Command.DOWN.packed(),
+        Command.JUMP_RIGHT.packed(), Command.JUMP_LEFT.packed(), Command.JUMP_UP.packed(), Command.JUMP_DOWN.packed(),
+        Command.SPRING_RIGHT.packed(), Command.SPRING_LEFT.packed(), Command.SPRING_UP.packed(), Command.SPRING_DOWN.packed(),
+        Command.PICKUP.packed(), Command.QUIT.packed() };
+    private static final int[] ANSWERS = { Command.YES.packed(), Command.NO.packed() };
+
+    private static final long COLLISIONS_MASK = (long)GameEngine.MAX_COLLISIONS << GameEngine.COLLISIONS_SHIFT;
+
+    // a cost is regret * COMMAND_SCALE + commands, so one point outweighs any number of commands
+    private static final int COMMAND_SCALE = 1 << 10;
+    // the estimate of commands still needed counts this much, trading the fewest commands for speed
+    private static final int ESTIMATE_WEIGHT = 2;
+
+    private final GameEngine scratch = new GameEngine(0, null);
+    private final int maxStates;
+
+    // cells the player can stand on before the game ends, and those it can spring traps on
+    private long walkable;
+    private long springable;
+
+    // explored states: packed play state, best cost, and how it was reached
+    private long[] states;
+    private int[] cost;
+    private int[] parent;
+    private int[] action;
+    private int count;
+
+    // transposition table: state index + 1, 0 for an empty slot; at most half full
+    private int[] table;
+    private int tableMask;
+
+    // priority queue of (cost + estimate << 32 | state index)
+    private long[] heap = new long[1024];
+    private int heapSize;
+
+    // best finished plan: cost, the state it ends from and its last action
+    private int bestCost;
+    private int bestParent;
+    private int bestAction;
+    private boolean exhaustive; // no state was dropped for the budget, so the plan is the best
+
+    // result of the last solve: the commands, the state before each and the points still to come from it
+    private int[] plan = new int[64];
+    private long[] planStates = new long[128];
+    private int[] planGain = new int[64];
+    private int planLength;
+    private int planStep;
+    private GameEngine planGame;
+    private int planVersion;
+    private final long[] state = new long[2];
+
+    /**
+     * Create a solver exploring at most DEFAULT_MAX_STATES states.
+     */
+    public Solver()
+    {
+        this(DEFAULT_MAX_STATES);
+    }
+
+    /**
+     * @param maxStates states explored before giving up
+     */
+    public Solver(int maxStates)
+    {
+        this.maxStates = maxStates;
+        allocate(Math.min(maxStates, INITIAL_STATES));
+    }
+
+    /**
+     * Find the best plan from the game's current state, searching even if the game is on the last plan. The game is not changed.
+     * <P>
+     * @param game the game to solve, which must have its board created
+     * @return true if a plan was found within the state budget; it is the best plan unless
+     *         {@link #isBest()} says the budget ran out first
+     */
+    public boolean solve(GameEngine game)
+    {
+        exhaustive = true;
+        scratch.copyFrom(game);
+        Arrays.fill(table, 0);
+        count = 0;
+        heapSize = 0;
+        planLength = 0;
+        planStep = 0;
+        planGame = game;
+        planVersion = game.getBoard().getVersion();
+        bestCost = Integer.MAX_VALUE;
+        bestParent = -1;
+
+        int collisionCap = scratch.getCollisionLimit() + 1;
+        walkable = scratch.getBoard().reachable(scratch.getPlayerCell(), 1L << scratch.getFinishCell());
+        springable = walkable | Board.neighbors(walkable);
+        scratch.saveState(state, 0);
+        add(key(state[0], collisionCap), state[1] & Board.ALL_CELLS, 0, -1, 0);
+
+        while (heapSize > 0)
+        {
+            long top = pop();
+            int f = (int)(top >>> 32);
+            int s = (int)top;
+            if (f >= bestCost) break;
+            if (f > cost[s] + estimate(s)) continue; // a cheaper path to s was found after this entry was queued
+            expand(s, collisionCap);
+        }
+        if (bestParent < 0) return false;
+
+        // walk back from the finish to build the plan
+        int length = 1;
+        for (int s = bestParent; parent[s] >= 0; s = parent[s]) length++;
+        if (plan.length < length)
+        {
+            plan = new int[length];
+            planStates = new long[2 * length];
+            planGain = new int[length];
+        }
+        planLength = length;
+        int regret = bestCost / COMMAND_SCALE;
+        int last = bestAction;
+        for (int s = bestParent; s >= 0; s = parent[s])
+        {
+            plan[--length] = last;
+            planStates[2 * length] = states[2 * s];
+            planStates[2 * length + 1] = states[2 * s + 1];
+            scratch.loadState(states, 2 * s);
+            planGain[length] = scratch.rewardBound(walkable) - (regret - cost[s] / COMMAND_SCALE);
+            last = action[s];
+        }
+        return true;
+    }
+
+    /**
+     * The next command of the best plan from the game's current state. While the game follows the
+     * plan of an earlier call, the answer is looked up in that plan instead of searching again, so
+     * asking after every command costs a search only when the player leaves the plan.
+     * <P>
+     * @param game the game to advise, which must have its board created
+     * @return the packed command, or Command.INVALID if no plan was found within the state budget
+     */
+    public int hint(GameEngine game)
+    {
+        if (game == planGame && game.getBoard().getVersion() == planVersion && planLength > 0)
+        {
+            game.saveState(state, 0);
+            long k0 = key(state[0], game.getCollisionLimit() + 1);
+            long k1 = state[1] & Board.ALL_CELLS;
+            for (int i = planStep; i < planLength; i++)
+                if (planStates[2 * i] == k0 && planStates[2 * i + 1] == k1)
+                {
+                    planStep = i;
+                    return plan[i];
+                }
+        }
+        return solve(game) ? plan[0] : Command.INVALID;
+    }
+
+    /**
+     * @return the number of commands in the best plan of the last solve, including detrap answers and the final move or quit
+     */
+    public int getPlanLength()
+    {
+        return planLength;
+    }
+
+    /**
+     * @return the packed command at a step of the best plan
+     */
+    public int getPlanCommand(int step)
+    {
+        return plan[step];
+    }
+
+    /**
+     * @return how many points the rest of the best plan adds to the score, from the step of the last hint, including the finish
+     */
+    public int getScoreGain()
+    {
+        return planLength > 0 ? planGain[planStep] : 0;
+    }
+
+    /**
+     * @return false if the last solve ran out of its state budget before it could rule out every
+     *         better plan, so the plan it found may score less than the best
+     */
+    public boolean isBest()
+    {
+        return exhaustive;
+    }
+
+    /**
+     * @return the number of states explored by the last solve
+     */
+    public int getStatesExplored()
+    {
+        return count;
+    }
+
+    /*------------------- private methods -------------------*/
+
+    private void expand(int s, int collisionCap)
+    {
+        int base = cost[s] + 1;
+        boolean pending = (states[2 * s] & 1L << GameEngine.PENDING_BIT) != 0;
+        int[] actions = pending ? ANSWERS : ACTIONS;
+        for (int a : actions)
+        {
+            scratch.loadState(states, 2 * s);
+            int before = scratch.rewardBound(walkable);
+            int delta;
+            boolean finished = false;
+            switch (Command.of(a))
+            {
+                case YES: delta = scratch.resolveTrapCollision(true); break;
+                case NO: delta = scratch.resolveTrapCollision(false); break;
+                case PICKUP:
+                    if ((scratch.getLivePrizes() & 1L << scratch.getPlayerCell()) == 0) continue;
+                    delta = scratch.pickupPrize();
+                    break;
+                case QUIT:
+                    delta = scratch.endGame();
+                    finished = true;
+                    break;
+                case JUMP_RIGHT: case JUMP_LEFT: case JUMP_UP: case JUMP_DOWN:
+                    delta = scratch.jump(Command.of(a).dir());
+                    break;
+                case SPRING_RIGHT: case SPRING_LEFT: case SPRING_UP: case SPRING_DOWN:
+                    if ((scratch.getAdjacentTraps() & 1 << Command.of(a).dir()) == 0) continue;
+                    delta = scratch.springTrap(Command.of(a).dir());
+                    break;
+                default:
+                    delta = scratch.move(Command.of(a).dir(), 1);
+                    break;
+            }
+            if (!finished && !scratch.hasPendingTrapCollision() && scratch.isAtFinish())
+            {
+                delta += scratch.endGame();
+                finished = true;
+            }
+
+            if (finished)
+            {
+                int total = base + (before - delta) * COMMAND_SCALE;
+                if (total < bestCost)
+                {
+                    bestCost = total;
+                    bestParent = s;
+                    bestAction = a;
+                }
+                continue;
+            }
+            scratch.saveState(state, 0);
+            int next = base + (before - scratch.rewardBound(walkable) - delta) * COMMAND_SCALE;
+            if (next >= bestCost) continue;
+            add(key(state[0], collisionCap), state[1] & Board.ALL_CELLS, next, s, a);
+        }
+    }
+
+    /*
+     * Record a state reached at a cost, queueing it if it is new or cheaper than before
+     */
+    private void add(long k0, long k1, int g, int from, int via)
+    {
+        int slot = (int)mix(k0, k1) & tableMask;
+        int s;
+        while ((s = table[slot]) != 0)
+        {
+            s--;
+            if (states[2 * s] == k0 && states[2 * s + 1] == k1)
+            {
+                if (g >= cost[s]) return;
+                cost[s] = g;
+                parent[s] = from;
+                action[s] = via;
+                push(g + estimate(s), s);
+                return;
+            }
+            slot = (slot + 1) & tableMask;
+        }
+        if (count == cost.length)
+        {
+            if (count == maxStates)
+            {
+                exhaustive = false;
+                return;
+            }
+            allocate((int)Math.min(maxStates, 2L * count));
+            slot = (int)mix(k0, k1) & tableMask;
+            while (table[slot] != 0)
+                slot = (slot + 1) & tableMask;
+        }
+        s = count++;
+        table[slot] = s + 1;
+        states[2 * s] = k0;
+        states[2 * s + 1] = k1;
+        cost[s] = g;
+        parent[s] = from;
+        action[s] = via;
+        push(g + estimate(s), s);
+    }
+
+    /*
+     * Fewest commands that can finish from a state without giving up points, times ESTIMATE_WEIGHT:
+     * a pickup or spring for every prize and trap left that can still be reached, and at least one
+     * move per two cells (a jump) to the finish. Leaving anything behind costs at least a point,
+     * which outweighs this estimate.
+     */
+    private int estimate(int s)
+    {
+        long a = states[2 * s];
+        int items = Long.bitCount(a & springable) + Long.bitCount(states[2 * s + 1] & walkable);
+        int cell = (int)(a >>> GameEngine.CELL_SHIFT) & 63;
+        int finish = (a & 1L << GameEngine.FINISH_TOP_BIT) != 0 ? Board.cell(Board.COLS - 1, 0)
+                                                                 : Board.cell(Board.COLS - 1, Board.ROWS - 1);
+        int distance = Math.abs(Board.col(cell) - Board.col(finish)) + Math.abs(Board.row(cell) - Board.row(finish));
+        return ESTIMATE_WEIGHT * (items + Math.max(1, (distance + 1) / 2));
+    }
+
+    /*
+     * Size the state arrays for a number of states, keeping the states explored so far
+     */
+    private void allocate(int capacity)
+    {
+        states = states == null ? new long[2 * capacity] : Arrays.copyOf(states, 2 * capacity);
+        cost = cost == null ? new int[capacity] : Arrays.copyOf(cost, capacity);
+        parent = parent == null ? new int[capacity] : Arrays.copyOf(parent, capacity);
+        action = action == null ? new int[capacity] : Arrays.copyOf(action, capacity);
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 2;
+        table = new int[size];
+        tableMask = size - 1;
+        for (int s = 0; s < count; s++)
+        {
+            int slot = (int)mix(states[2 * s], states[2 * s + 1]) & tableMask;
+            while (table[slot] != 0)
+                slot = (slot + 1) & tableMask;
+            table[slot] = s + 1;
+        }
+    }
+
+    /*
+     * The first state long with the collision count capped where it stops mattering
+     */
+    private static long key(long a, int collisionCap)
+    {
+        long collisions = Math.min(a >>> GameEngine.COLLISIONS_SHIFT, collisionCap);
+        return (a & ~COLLISIONS_MASK) | collisions << GameEngine.COLLISIONS_SHIFT;
+    }
+
+    private static long mix(long a, long b)
+    {
+        long h = a * 0x9E3779B97F4A7C15L + b;
+        h ^= h >>> 31;
+        h *= 0xBF58476D1CE4E5B9L;
+        return h ^ (h >>> 29);
+    }
+
+    private void push(int f, int s)
+    {
+        if (heapSize == heap.length) heap = Arrays.copyOf(heap, heapSize * 2);
+        long entry = (long)f << 32 | s;
+        int i = heapSize++;
+        while (i > 0)
+        {
+            int p = (i - 1) >>> 1;
+            if (heap[p] <= entry) break;
+            heap[i] = heap[p];
+            i = p;
+        }
+        heap[i] = entry;
+    }
+
+    private long pop()
+    {
+        long top = heap[0];
+        long last = heap[--heapSize];
+        int i = 0;
+        while (true)
+        {
+            int c = 2 * i + 1;
+            if (c >= heapSize) break;
+            if (c + 1 < heapSize && heap[c + 1] < heap[c]) c++;
+            if (heap[c] >= last) break;
+            heap[i] = heap[c];
+            i = c;
+        }
+        heap[i] = last;
+        return top;
+    }
+}
@@ -0,0 +1,190 @@
+import java.util.Arrays;
+
+/**
+ * A set of cells on a grid of up to {@value #MAX_SIDE} x {@value #MAX_SIDE} cells, for layouts too
+ * big for the bitboards of {@link Board}.
+ * <P>
+ * The grid is cut into tiles of {@value #TILE} x {@value #TILE} cells, and each tile that ever held
+ * a cell is one <code>long</code> with a bit per cell, row by row, like a small Board. Tiles are
+ * found through an open-addressing hash table, so looking up, adding or removing a cell costs one
+ * probe on average however big the grid is, and memory grows with the number of tiles in use, not
+ * with the area. A tile stays in the table when its last cell is removed; {@link #clear()} empties
+ * the table without allocating.
+ */
+public final class SparseGrid
+{
+    /** Cells along each side of a tile. */
+    public static final int TILE = 8;
+    /** Cells along each side of the largest grid. */
+    public static final int MAX_SIDE = 1 << 16;
+
+    private static final int EMPTY = -1;
+
+    private int[] keys;    // tile key of each slot, EMPTY if the slot is free
+    private long[] tiles;  // the cells of each slot's tile
+    private int tileCount;
+    private int size;
+
+    /**
+     * @param expectedCells how many cells the set is expected to hold, to size the table
+     */
+    public SparseGrid(int expectedCells)
+    {
+        int slots = Integer.highestOneBit(Math.max(16, expectedCells) * 2 - 1) << 1;
+        keys = new int[slots];
+        tiles = new long[slots];
+        Arrays.fill(keys, EMPTY);
+    }
+
+    /**
+     * @return true if the cell at the column and row is in the set; cells off the grid are not
+     */
+    public boolean contains(int col, int row)
+    {
+        if ((col | row) < 0 || col >= MAX_SIDE || row >= MAX_SIDE) return false;
+        return (tile(col / TILE, row / TILE) & bit(col, row)) != 0;
+    }
+
+    /**
+     * Add the cell at the column and row.
+     * <P>
+     * @return true if it was not in the set
+     * @throws IndexOutOfBoundsException if the cell is off the grid
+     */
+    public boolean add(int col, int row)
+    {
+        int slot = slot(key(col, row), true);
+        long bit = bit(col, row);
+        if ((tiles[slot] & bit) != 0) return false;
+        tiles[slot] |= bit;
+        size++;
+        return true;
+    }
+
+    /**
+     * Remove the cell at the column and row.
+     * <P>
+     * @return true if it was in the set
+     */
+    public boolean remove(int col, int row)
+    {
+        if ((col | row) < 0 || col >= MAX_SIDE || row >= MAX_SIDE) return false;
+        int slot = slot(key(col, row), false);
+        long bit = bit(col, row);
+        if (slot < 0 || (tiles[slot] & bit) == 0) return false;
+        tiles[slot] &= ~bit;
+        size--;
+        return true;
+    }
+
+    /**
+     * @return the cells of the tile at the tile column and row, bit <code>row * TILE + col</code>
+     *         for the cell at (col, row) in the tile, 0 if the tile has none
+     */
+    public long tile(int tileCol, int tileRow)
+    {
+        int slot = slot(tileCol | tileRow << 16, false);
+        return slot < 0 ? 0 : tiles[slot];
+    }
+
+    /**
+     * Read a run of up to 64 cells of one row, e.g. to copy part of the grid into a viewport.
+     * <P>
+     * @param col the column of the first cell, which may be negative
+     * @param row the row
+     * @param count how many cells, at most 64
+     * @return bit i set if the cell at column col + i is in the set
+     */
+    public long row(int col, int row, int count)
+    {
+        if (row < 0 || row >= MAX_SIDE || count <= 0) return 0;
+        long bits = 0;
+        int from = Math.max(col, 0);
+        int to = Math.min(col + count, MAX_SIDE);
+        for (int c = from - from % TILE; c < to; c += TILE)
+        {
+            long line = tile(c / TILE, row / TILE) >>> (row % TILE * TILE) & 0xFF;
+            int shift = c - col;
+            bits |= shift >= 0 ? line << shift : line >>> -shift;
+        }
+        return count == 64 ? bits : bits & ((1L << count) - 1);
+    }
+
+    /** @return the number of cells in the set */
+    public int size()
+    {
+        return size;
+    }
+
+    /** @return the number of tiles the table holds, which is what the set's memory grows with */
+    public int tileCount()
+    {
+        return tileCount;
+    }
+
+    /**
+     * Remove every cell, keeping the table's capacity.
+     */
+    public void clear()
+    {
+        Arrays.fill(keys, EMPTY);
+        Arrays.fill(tiles, 0);
+        tileCount = 0;
+        size = 0;
+    }
+
+    /*------------------- private methods -------------------*/
+
+    private static int key(int col, int row)
+    {
+        if ((col | row) < 0 || col >= MAX_SIDE || row >= MAX_SIDE)
+            throw new IndexOutOfBoundsException("cell " + col + ", " + row + " is off the grid");
+        return col / TILE | row / TILE << 16;
+    }
+
+    private static long bit(int col, int row)
+    {
+        return 1L << (row % TILE * TILE + col % TILE);
+    }
+
+    /*
+     * The slot of a tile key, -1 if it is not in the table, or a new slot for it if create is set
+     */
+    private int slot(int key, boolean create)
+    {
+        int mask = keys.length - 1;
+        int hash = key * 0x9E3779B9;
+        int i = (hash ^ hash >>> 16) & mask;
+        while (keys[i] != key)
+        {
+            if (keys[i] == EMPTY)
+            {
+                if (!create) return -1;
+                if ((tileCount + 1) * 4 > keys.length * 3)
+                {
+                    grow();
+                    return slot(key, true);
+                }
+                keys[i] = key;
+                tileCount++;
+                return i;
+            }
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    private void grow()
+    {
+        int[] oldKeys = keys;
+        long[] oldTiles = tiles;
+        keys = new int[oldKeys.length * 2];
+        tiles = new long[oldTiles.length * 2];
+        Arrays.fill(keys, EMPTY);
+        tileCount = 0;
+        for (int i = 0; i < oldKeys.length; i++)
+        {
+            if (oldKeys[i] != EMPTY) tiles[slot(oldKeys[i], true)] = oldTiles[i];
+        }
+    }
+}
@@ -0,0 +1,196 @@
+import java.util.SplittableRandom;
+import java.util.function.Supplier;
+
+/**
+ * A bot that plays by what a player could know, e.g. in a {@link Tournament}.
+ * <P>
+ * Unlike a {@link Policy}, which sees the whole engine, a strategy only gets a {@link PlayerView}:
+ * no traps until find or check shows them, and no finish until it is reached. A strategy may keep
+ * state between calls and is only used by one thread at a time; a tournament creates one per
+ * worker from a Supplier, such as {@link #random()} or {@link #explorer()}, or from a class with a
+ * public no-argument constructor.
+ */
+public interface Strategy
+{
+    /**
+     * Called before each game.
+     * <P>
+     * @param view the game about to be played
+     * @param seed the seed for anything random the strategy does in this game
+     */
+    default void newGame(PlayerView view, long seed)
+    {
+    }
+
+    /**
+     * @param view the game being played
+     * @return the next packed command; while the detrap question is waiting this must be YES or NO
+     */
+    int nextCommand(PlayerView view);
+
+    /**
+     * @return a policy that plays this strategy through a {@link PlayerView} of each game, e.g. to
+     *         play it with {@link MonteCarlo#play(GameEngine, long, Policy, int, ScoreStats)}
+     */
+    default Policy asPolicy()
+    {
+        Strategy strategy = this;
+        return new Policy()
+        {
+            private PlayerView view;
+
+            @Override
+            public void newGame(GameSession session, long seed)
+            {
+                view = new PlayerView(session);
+                strategy.newGame(view, seed);
+            }
+
+            @Override
+            public int nextCommand(GameSession session)
+            {
+                return strategy.nextCommand(view);
+            }
+        };
+    }
+
+    /**
+     * A player that picks up every prize it stands on, runs find on every cell it reaches and springs
+     * the traps it shows, and otherwise moves or jumps in a random direction. Detrap answers are random.
+     */
+    static Supplier<Strategy> random()
+    {
+        return () -> new Strategy()
+        {
+            private final int[] moves = {
+                Command.RIGHT.packed(), Command.LEFT.packed(), Command.UP.packed(), Command.DOWN.packed(),
+                Command.JUMP_RIGHT.packed(), Command.JUMP_LEFT.packed(), Command.JUMP_UP.packed(), Command.JUMP_DOWN.packed() };
+            private SplittableRandom rand = new SplittableRandom(0);
+            private int lastFind = -1;
+            private long traps; // traps next to the player, as the last find showed them
+
+            @Override
+            public void newGame(PlayerView view, long seed)
+            {
+                rand = new SplittableRandom(seed);
+                lastFind = -1;
+            }
+
+            @Override
+            public int nextCommand(PlayerView view)
+            {
+                if (view.isAwaitingDetrap())
+                    return rand.nextBoolean() ? Command.YES.packed() : Command.NO.packed();
+                int cell = view.getPlayerCell();
+                if ((view.getPrizes() & 1L << cell) != 0)
+                    return Command.PICKUP.packed();
+                if (lastFind != cell)
+                {
+                    lastFind = cell;
+                    traps = -1;
+                    return Command.FIND.packed();
+                }
+                if (traps == -1) traps = view.getScannedTraps();
+                int spring = springCommand(cell, traps);
+                if (spring == Command.INVALID) return moves[rand.nextInt(moves.length)];
+                traps &= ~(1L << Board.neighbor(cell, Command.of(spring).dir()));
+                return spring;
+            }
+        };
+    }
+
+    /**
+     * A player that runs find on every cell it reaches, springs every trap it finds, walks the
+     * shortest way around walls and known traps to the nearest prize, and then to the nearest corner
+     * the finish may be in. It answers no to the detrap question.
+     */
+    static Supplier<Strategy> explorer()
+    {
+        return () -> new Strategy()
+        {
+            private final long[] layers = new long[Board.CELLS];
+            private long knownTraps;  // traps shown by find and not sprung since
+            private long found;       // cells find has run on
+            private long notFinish;   // corners reached without finishing
+            private boolean finding;  // find just ran, its result is not in knownTraps yet
+
+            @Override
+            public void newGame(PlayerView view, long seed)
+            {
+                knownTraps = 0;
+                found = 0;
+                notFinish = 0;
+                finding = false;
+            }
+
+            @Override
+            public int nextCommand(PlayerView view)
+            {
+                if (view.isAwaitingDetrap()) return Command.NO.packed();
+                int cell = view.getPlayerCell();
+                long here = 1L << cell;
+                notFinish |= here & PlayerView.FINISH_CELLS;
+                if ((view.getPrizes() & here) != 0) return Command.PICKUP.packed();
+                if (finding)
+                {
+                    knownTraps = knownTraps & ~view.getScannedCells() | view.getScannedTraps();
+                    finding = false;
+                }
+                if ((found & here) == 0)
+                {
+                    found |= here;
+                    finding = true;
+                    return Command.FIND.packed();
+                }
+                int spring = springCommand(cell, knownTraps);
+                if (spring != Command.INVALID)
+                {
+                    knownTraps &= ~(1L << Board.neighbor(cell, Command.of(spring).dir()));
+                    return spring;
+                }
+                long targets = view.getPrizes() != 0 ? view.getPrizes() : PlayerView.FINISH_CELLS & ~notFinish;
+                int dir = firstStep(view, cell, targets, knownTraps);
+                if (dir < 0) dir = firstStep(view, cell, targets, 0);
+                return dir < 0 ? Command.QUIT.packed() : Command.move(dir).packed();
+            }
+
+            /*
+             * The direction of the first step of a shortest walk to any target, -1 if there is none
+             */
+            private int firstStep(PlayerView view, int cell, long targets, long avoid)
+            {
+                long visited = 1L << cell;
+                layers[0] = visited;
+                int k = 0;
+                while ((layers[k] & targets) == 0)
+                {
+                    long next = view.step(layers[k]) & ~visited & ~avoid;
+                    if (next == 0) return -1;
+                    layers[++k] = next;
+                    visited |= next;
+                }
+                if (k == 0) return -1;
+                long at = Long.lowestOneBit(layers[k] & targets);
+                for (int j = k - 1; j > 0; j--)
+                    at = Long.lowestOneBit(view.step(at) & layers[j]);
+                int diff = Long.numberOfTrailingZeros(at) - cell;
+                return diff == 1 ? Board.RIGHT : diff == -1 ? Board.LEFT : diff < 0 ? Board.UP : Board.DOWN;
+            }
+        };
+    }
+
+    /**
+     * @param cell the player's cell
+     * @param traps cells known to hold a trap
+     * @return the command springing a known trap next to the cell, or Command.INVALID if there is none
+     */
+    static int springCommand(int cell, long traps)
+    {
+        for (int dir = Board.RIGHT; dir <= Board.DOWN; dir++)
+        {
+            if (Board.distanceToEdge(cell, dir) > 0 && (traps & 1L << Board.neighbor(cell, dir)) != 0)
+                return Command.move(dir).withMode(Command.SPRING_MODE).packed();
+        }
+        return Command.INVALID;
+    }
+}
@@ -0,0 +1,594 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.Stream;
+import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Checks score submissions before they go on a leaderboard, by playing them again.
+ * <P>
+ * A submission is a journal recorded by {@link JournalWriter}. It passes if it was recorded with
+ * the leaderboard's configuration, starts from a new game, every command is accepted and changes
+ * the score exactly as recorded when played again on the seeded board (detrap questions and the
+ * end of the game included, as in {@link EscapeRoom}), and the game is over when the journal ends.
+ * Its score is then the final score the game reported. Anything else fails at the first command
+ * that does not match.
+ * <P>
+ * A new game alone does not stop a player from starting games until one has an easy board. With a
+ * server secret, the leaderboard assigns each submission its board: {@link #assignSeed(CharSequence)}
+ * derives the seed from the submission's id with an HMAC keyed by the secret, the player plays
+ * that seed, and a submission only passes if its journal starts from the seed of its id and plays
+ * that one board to the end. Without the secret no one can tell which seed an id gets, or find an
+ * id with an easy board. Restart and replay draw their boards and finish sides from the same
+ * seeded stream, which the player knows once given the seed, so with a secret a journal that
+ * restarts or replays fails at that command. In
+ * {@link #main(String[])} a submission's id is its file name without <code>.erj</code>, followed by
+ * <code>#</code> and its index for each journal after the first in a file, and for every journal of
+ * a large file of concatenated journals.
+ * <P>
+ * A verifier checks one submission at a time and reuses its engine, session, reader and HMAC for
+ * all of them, so checking a submission allocates nothing. {@link #main(String[])} checks
+ * directories of journal files and large files of concatenated journals (<code>cat *.erj &gt;
+ * all.erj</code>) on all cores, one verifier per worker thread, and reports the submissions that
+ * failed in input order. A journal that cannot be read to its end is reported, and checking goes
+ * on from the next journal header after it. From the project root:
+ * <pre>
+ * javac -d out *.java
+ * java -cp out SubmissionVerifier [-threads N] [-v] [-secret FILE] [-traps 10 ...] submissions/ all.erj ...
+ * java -cp out SubmissionVerifier -secret FILE -assign ID
+ * </pre>
+ * <code>-v</code> also lists the submissions that passed, with their scores; <code>-secret</code>
+ * gives the file holding the server secret; <code>-assign</code> prints the seed of a submission
+ * id; any {@link GameConfig} setting changes the configuration submissions must have been played with.
+ */
+public class SubmissionVerifier
+{
+    /** What a check found. */
+    public enum Verdict
+    {
+        PASS("pass"),
+        UNREADABLE("not a journal"),
+        CONFIGURATION("played with another configuration"),
+        NOT_NEW_GAME("does not start from a new game"),
+        WRONG_SEED("not the board assigned to the submission"),
+        NEW_BOARD("restarts or replays the assigned board"),
+        MISMATCH("does not match the game"),
+        TRUNCATED("journal cut short"),
+        UNFINISHED("game not over");
+
+        private final String description;
+
+        Verdict(String description)
+        {
+            this.description = description;
+        }
+
+        @Override
+        public String toString()
+        {
+            return description;
+        }
+    }
+
+    // files up to this size are read whole by one task, larger ones are split between tasks
+    private static final long SPLIT_BYTES = 1 << 20;
+
+    // most of a large file mapped at once
+    private static final long WINDOW_BYTES = 1 << 30;
+
+    // journals or small files verified by one task
+    private static final int JOURNALS_PER_TASK = 2048;
+    private static final int FILES_PER_TASK = 64;
+
+    private static final String HMAC = "HmacSHA256";
+
+    private final GameConfig config;
+    private final Mac mac; // keyed with the server secret, null to accept any seed
+    private final byte[] digest;
+    private final JournalReplayer replayer = new JournalReplayer();
+    private int step;
+    private int score;
+
+    /**
+     * A verifier that accepts a new game of any seed.
+     * <P>
+     * @param config the configuration submissions must have been played with, or null to accept any
+     */
+    public SubmissionVerifier(GameConfig config)
+    {
+        this(config, null);
+    }
+
+    /**
+     * @param config the configuration submissions must have been played with, or null to accept any
+     * @param secret the server secret seeds are assigned with, or null to accept a new game of any seed
+     * @throws IllegalArgumentException if the secret is empty
+     */
+    public SubmissionVerifier(GameConfig config, byte[] secret)
+    {
+        this.config = config;
+        if (secret == null)
+        {
+            mac = null;
+            digest = null;
+            return;
+        }
+        try
+        {
+            mac = Mac.getInstance(HMAC);
+            mac.init(new SecretKeySpec(secret, HMAC));
+        }
+        catch (GeneralSecurityException e)
+        {
+            throw new IllegalStateException(HMAC + " not available", e);
+        }
+        digest = new byte[mac.getMacLength()];
+    }
+
+    /**
+     * The seed of the board a submission must be played on, from the server secret.
+     * <P>
+     * @param id the submission's id
+     * @return the seed to start the submission's game from
+     * @throws IllegalStateException if the verifier has no secret
+     */
+    public long assignSeed(CharSequence id)
+    {
+        if (mac == null) throw new IllegalStateException("no secret to assign seeds with");
+        for (int i = 0; i < id.length(); i++)
+        {
+            char c = id.charAt(i);
+            mac.update((byte)(c >>> 8));
+            mac.update((byte)c);
+        }
+        try
+        {
+            mac.doFinal(digest, 0);
+        }
+        catch (ShortBufferException e)
+        {
+            throw new IllegalStateException(e);
+        }
+        long seed = 0;
+        for (int i = 0; i < Long.BYTES; i++)
+            seed = seed << 8 | (digest[i] & 0xFF);
+        return seed;
+    }
+
+    /**
+     * Check a submission. Whatever the verdict, the journal is read to its end, so the next journal
+     * in its buffer can follow.
+     * <P>
+     * @param journal the submission, positioned at its first command
+     * @param id the submission's id, which gives its seed if the verifier has a secret
+     * @return PASS, or why the submission fails
+     */
+    public Verdict verify(JournalReader journal, CharSequence id)
+    {
+        Verdict verdict = check(journal, id);
+        while (journal.next())
+        {
+            // skip the rest of a failed journal
+        }
+        return verdict;
+    }
+
+    /**
+     * @return the index of the command the last submission failed at, or the number of commands it
+     *         held if it passed
+     */
+    public int getStep()
+    {
+        return step;
+    }
+
+    /**
+     * @return the score of the last submission when it passed or stopped
+     */
+    public int getScore()
+    {
+        return score;
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        GameConfig config = new GameConfig();
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean verbose = false;
+        byte[] secret = null;
+        String assign = null;
+        List<Path> inputs = new ArrayList<>();
+        for (int i = 0; i < args.length; i++)
+        {
+            if (args[i].equals("-threads")) threads = Integer.parseInt(args[++i]);
+            else if (args[i].equals("-v")) verbose = true;
+            else if (args[i].equals("-secret")) secret = Files.readAllBytes(Paths.get(args[++i]));
+            else if (args[i].equals("-assign")) assign = args[++i];
+            else if (args[i].startsWith("-")) config.set(args[i].substring(1), Integer.parseInt(args[++i]));
+            else inputs.add(Paths.get(args[i]));
+        }
+        if (assign != null)
+        {
+            System.out.println(new SubmissionVerifier(config, secret).assignSeed(assign));
+            return;
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        Run run = new Run(config, secret, verbose, pool, 4 * threads);
+        long start = System.nanoTime();
+        for (Path input : inputs)
+        {
+            if (Files.isDirectory(input))
+            {
+                List<Path> files = new ArrayList<>();
+                try (Stream<Path> list = Files.list(input))
+                {
+                    list.filter(p -> p.toString().endsWith(".erj")).sorted().forEach(files::add);
+                }
+                for (Path file : files)
+                    run.add(file);
+            }
+            else run.add(input);
+        }
+        run.finish();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        pool.shutdown();
+
+        System.out.printf("%d submissions, %d passed, %d failed, %d commands, %.3f s (%.0f submissions/s)%n",
+                run.passed + run.failed, run.passed, run.failed, run.commands, seconds,
+                (run.passed + run.failed) / seconds);
+    }
+
+    /*------------------- private methods -------------------*/
+
+    private Verdict check(JournalReader journal, CharSequence id)
+    {
+        step = 0;
+        score = 0;
+        if (config != null && !config.equals(journal.getConfig())) return Verdict.CONFIGURATION;
+        GameSession session = replayer.getSession();
+        journal.start(session);
+        if (!session.isNewGame()) return Verdict.NOT_NEW_GAME;
+        if (mac != null && session.getEngine().getSeed() != assignSeed(id)) return Verdict.WRONG_SEED;
+        int mismatch = replayer.replay(journal);
+        step = replayer.getRecords();
+        score = session.getScore();
+        if (mac != null && replayer.getFirstNewBoard() >= 0)
+        {
+            step = replayer.getFirstNewBoard();
+            return Verdict.NEW_BOARD;
+        }
+        if (mismatch >= 0) return Verdict.MISMATCH;
+        if (!replayer.isComplete()) return Verdict.TRUNCATED;
+        if (session.isPlaying()) return Verdict.UNFINISHED;
+        return Verdict.PASS;
+    }
+
+    /*------------------- private classes -------------------*/
+
+    /*
+     * Tasks in input order, at most a few per thread in flight, reported as they finish
+     */
+    private static final class Run
+    {
+        final boolean verbose;
+        final ForkJoinPool pool;
+        final int maxPending;
+        final ThreadLocal<Worker> workers;
+        final ArrayDeque<ForkJoinTask<Task>> pending = new ArrayDeque<>();
+        final List<Path> files = new ArrayList<>();
+        long passed;
+        long failed;
+        long commands;
+
+        Run(GameConfig config, byte[] secret, boolean verbose, ForkJoinPool pool, int maxPending)
+        {
+            this.verbose = verbose;
+            this.pool = pool;
+            this.maxPending = maxPending;
+            workers = ThreadLocal.withInitial(() -> new Worker(config, secret));
+        }
+
+        /*
+         * Verify a file, small files together in groups
+         */
+        void add(Path file) throws IOException
+        {
+            if (Files.size(file) <= SPLIT_BYTES)
+            {
+                files.add(file);
+                if (files.size() == FILES_PER_TASK) flushFiles();
+            }
+            else
+            {
+                flushFiles();
+                addLargeFile(file);
+            }
+        }
+
+        void flushFiles()
+        {
+            if (files.isEmpty()) return;
+            submit(new Task(files.toArray(new Path[0]), verbose, workers));
+            files.clear();
+        }
+
+        /*
+         * Find where each journal of a large file starts, a window of the file at a time, and hand
+         * out the journals in runs
+         */
+        void addLargeFile(Path file) throws IOException
+        {
+            JournalReader scan = new JournalReader();
+            try (FileChannel channel = FileChannel.open(file))
+            {
+                long size = channel.size();
+                long windowStart = 0;
+                long index = 0;
+                while (windowStart < size)
+                {
+                    long windowEnd = Math.min(size, windowStart + WINDOW_BYTES);
+                    ByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, windowEnd - windowStart);
+                    int[] starts = new int[JOURNALS_PER_TASK];
+                    int count = 0;
+                    int next = 0;
+                    while (next < window.limit())
+                    {
+                        window.position(next);
+                        boolean broken;
+                        try
+                        {
+                            scan.reset(window);
+                            while (scan.next())
+                            {
+                                // find the end of the journal
+                            }
+                            broken = !scan.isComplete();
+                        }
+                        catch (IOException e)
+                        {
+                            broken = true;
+                        }
+                        if (broken && windowEnd < size && next > 0) break; // continues in the next window
+                        starts[count++] = next;
+                        // the end of a broken journal cannot be found, go on from the next header
+                        next = broken ? nextHeader(window, next + 1) : scan.position();
+                        if (count == starts.length)
+                        {
+                            submit(new Task(file, window.duplicate(), starts, count, index, verbose, workers));
+                            index += count;
+                            starts = new int[JOURNALS_PER_TASK];
+                            count = 0;
+                        }
+                    }
+                    if (count > 0) submit(new Task(file, window.duplicate(), starts, count, index, verbose, workers));
+                    index += count;
+                    windowStart += next;
+                }
+            }
+        }
+
+        /*
+         * The position of the next journal header from a position on, or the limit if there is none
+         */
+        static int nextHeader(ByteBuffer window, int from)
+        {
+            for (int i = from; i <= window.limit() - Integer.BYTES; i++)
+            {
+                if (window.get(i) == (byte)(JournalWriter.MAGIC >>> 24) && window.getInt(i) == JournalWriter.MAGIC) return i;
+            }
+            return window.limit();
+        }
+
+        void submit(Task task)
+        {
+            if (pending.size() == maxPending) report(pending.removeFirst().join());
+            pending.addLast(pool.submit(task));
+        }
+
+        void finish()
+        {
+            flushFiles();
+            while (!pending.isEmpty())
+                report(pending.removeFirst().join());
+        }
+
+        void report(Task task)
+        {
+            passed += task.passed;
+            failed += task.failed;
+            commands += task.commands;
+            System.out.print(task.report);
+        }
+    }
+
+    /*
+     * The verifier, reader and file buffer of one worker thread
+     */
+    private static final class Worker
+    {
+        final SubmissionVerifier verifier;
+        final JournalReader reader = new JournalReader();
+        ByteBuffer file = ByteBuffer.allocate(4096);
+
+        final StringBuilder id = new StringBuilder();
+        final boolean ids;
+
+        Worker(GameConfig config, byte[] secret)
+        {
+            verifier = new SubmissionVerifier(config, secret);
+            ids = secret != null;
+        }
+
+        /*
+         * Read a whole file into the reused buffer
+         */
+        ByteBuffer read(Path path) throws IOException
+        {
+            try (FileChannel channel = FileChannel.open(path))
+            {
+                long size = channel.size();
+                if (size > file.capacity()) file = ByteBuffer.allocate((int)Math.max(size, 2L * file.capacity()));
+                file.clear();
+                file.limit((int)Math.min(size, file.capacity()));
+                while (file.hasRemaining() && channel.read(file) >= 0)
+                {
+                    // fill the buffer
+                }
+                file.flip();
+                return file;
+            }
+        }
+    }
+
+    /*
+     * Whole small files, or a run of journals in a window of a large file
+     */
+    private static final class Task implements Callable<Task>
+    {
+        private final Path[] files;
+        private final Path file;
+        private final ByteBuffer window;
+        private final int[] starts;
+        private final int count;
+        private final long first;
+        private final boolean verbose;
+        private final ThreadLocal<Worker> workers;
+
+        final StringBuilder report = new StringBuilder();
+        long passed;
+        long failed;
+        long commands;
+
+        Task(Path[] files, boolean verbose, ThreadLocal<Worker> workers)
+        {
+            this(files, null, null, null, 0, 0, verbose, workers);
+        }
+
+        Task(Path file, ByteBuffer window, int[] starts, int count, long first, boolean verbose, ThreadLocal<Worker> workers)
+        {
+            this(null, file, window, starts, count, first, verbose, workers);
+        }
+
+        private Task(Path[] files, Path file, ByteBuffer window, int[] starts, int count, long first,
+                     boolean verbose, ThreadLocal<Worker> workers)
+        {
+            this.files = files;
+            this.file = file;
+            this.window = window;
+            this.starts = starts;
+            this.count = count;
+            this.first = first;
+            this.verbose = verbose;
+            this.workers = workers;
+        }
+
+        @Override
+        public Task call()
+        {
+            Worker worker = workers.get();
+            if (files != null)
+            {
+                for (Path path : files)
+                    verifyFile(worker, path);
+            }
+            else
+            {
+                ByteBuffer in = window;
+                for (int i = 0; i < count; i++)
+                {
+                    in.position(starts[i]);
+                    verifyAt(worker, in, file, first + i);
+                }
+            }
+            return this;
+        }
+
+        /*
+         * Every journal of a small file, one after another
+         */
+        private void verifyFile(Worker worker, Path path)
+        {
+            ByteBuffer in;
+            try
+            {
+                in = worker.read(path);
+            }
+            catch (IOException e)
+            {
+                failed++;
+                report.append(path).append(": ").append(e.getMessage()).append('\n');
+                return;
+            }
+            for (long index = 0; in.hasRemaining(); index++)
+            {
+                int start = in.position();
+                if (verifyAt(worker, in, path, index)) in.position(worker.reader.position());
+                else in.position(Run.nextHeader(in, start + 1));
+            }
+        }
+
+        /*
+         * The journal at the position of in; false if nothing after it can be read
+         */
+        private boolean verifyAt(Worker worker, ByteBuffer in, Path path, long index)
+        {
+            SubmissionVerifier verifier = worker.verifier;
+            JournalReader reader = worker.reader;
+            Verdict verdict;
+            try
+            {
+                reader.reset(in);
+                verdict = verifier.verify(reader, worker.ids ? id(worker.id, path, index) : null);
+            }
+            catch (IOException e)
+            {
+                verdict = Verdict.UNREADABLE;
+            }
+            if (verdict != Verdict.UNREADABLE) commands += verifier.getStep();
+            if (verdict == Verdict.PASS)
+            {
+                passed++;
+                if (verbose) name(path, index).append(": pass, score ").append(verifier.getScore()).append('\n');
+                return reader.isComplete();
+            }
+            failed++;
+            name(path, index).append(": ").append(verdict);
+            if (verdict != Verdict.UNREADABLE) report.append(" at command ").append(verifier.getStep());
+            report.append('\n');
+            return reader.isComplete() && verdict != Verdict.UNREADABLE;
+        }
+
+        /*
+         * The id of a submission: its file name without .erj, with its index unless it is the
+         * first journal of a small file
+         */
+        private CharSequence id(StringBuilder id, Path path, long index)
+        {
+            String name = path.getFileName().toString();
+            id.setLength(0);
+            id.append(name, 0, name.endsWith(".erj") ? name.length() - 4 : name.length());
+            if (index > 0 || files == null) id.append('#').append(index);
+            return id;
+        }
+
+        private StringBuilder name(Path path, long index)
+        {
+            report.append(path);
+            if (index > 0 || files == null) report.append('#').append(index);
+            return report;
+        }
+    }
+}
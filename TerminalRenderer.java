@@ -0,0 +1,261 @@
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Draws a game in a text terminal with ANSI escape codes, for playing without a window, e.g. over
+ * SSH. Uses nothing from AWT or Swing, so a game played this way never loads them.
+ * <P>
+ * The board sits at the top of the screen: walls as <code>|</code> and <code>---</code>, prizes as
+ * <code>$</code>, the player as <code>@</code> and the finish as a <code>&gt;</code> in the right
+ * edge, top or bottom, with a status line under it. In a large room the board is the view around
+ * the player, with <code>:</code> and <code>.</code> on the edges the room goes on past. Everything
+ * else the game prints scrolls in the lines below, which are set up as the terminal's scrolling
+ * region, so the board stays put.
+ * <P>
+ * Each frame is composed into a character grid and compared with the grid already on screen;
+ * only runs of characters that changed are written, each after a cursor move, in a single write.
+ * A move therefore rewrites two cells rather than the whole board, an idle game writes nothing,
+ * and a frame allocates nothing. Like the game it draws, the renderer is used on the game thread,
+ * except for {@link #close()}.
+ */
+public class TerminalRenderer implements GameLoop.View
+{
+    /** Characters per line of the board. */
+    public static final int WIDTH = Board.COLS * 4 + 1;
+    /** Lines of the board and its status line. */
+    public static final int LINES = Board.ROWS * 2 + 2;
+
+    private static final byte ESC = 27;
+    // whole screen scrolling again, cursor on the bottom line, then a new line
+    private static final byte[] RESET = ("\u001b[r\u001b[999;1H" + System.lineSeparator()).getBytes(StandardCharsets.US_ASCII);
+    // unchanged characters a run may span rather than starting a new run after a cursor move
+    private static final int GAP = 4;
+
+    private final GameEngine engine;
+    private final PrintStream out;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    // the frame being composed and the one on screen, line by line
+    private final char[] frame = new char[LINES * WIDTH];
+    private final char[] shown = new char[LINES * WIDTH];
+
+    // bytes of the next write: every changed run, each with its cursor move
+    private final byte[] buffer = new byte[LINES * WIDTH * 8 + 64];
+    private int length;
+
+    /**
+     * @param engine the game to draw
+     * @param out the terminal
+     */
+    public TerminalRenderer(GameEngine engine, PrintStream out)
+    {
+        this.engine = engine;
+        this.out = out;
+    }
+
+    /**
+     * Clear the screen, keep the top lines for the board and move the cursor below them. Call it
+     * before anything else is printed; the board itself is drawn by the first {@link #render(double)}.
+     */
+    public void start()
+    {
+        length = 0;
+        escape("[2J");
+        append(ESC, (byte)'[');
+        appendNumber(LINES + 2);
+        buffer[length++] = 'r';
+        moveTo(LINES + 2, 1);
+        flush();
+        // nothing on screen matches a frame, so the first render draws all of it
+        Arrays.fill(shown, '\0');
+    }
+
+    /**
+     * Give the whole screen back to scrolling and put the cursor at its bottom, and draw nothing
+     * more. Only the first call does anything. Can be called from any thread, e.g. a shutdown
+     * hook while the game thread is rendering: it writes in one call of its own and does not
+     * touch the frame buffers.
+     */
+    public void close()
+    {
+        if (closed.getAndSet(true)) return;
+        out.write(RESET, 0, RESET.length);
+        out.flush();
+    }
+
+    /** Nothing moves between cells, so there is nothing to animate. */
+    @Override
+    public boolean tick()
+    {
+        return false;
+    }
+
+    /**
+     * Draw what changed since the last frame.
+     */
+    @Override
+    public void render(double alpha)
+    {
+        if (closed.get()) return;
+        compose();
+        length = 0;
+        append(ESC, (byte)'7'); // save the cursor, which is where the player is typing
+        int before = length;
+        for (int line = 0; line < LINES; line++)
+        {
+            int base = line * WIDTH;
+            int col = 0;
+            while (col < WIDTH)
+            {
+                if (frame[base + col] == shown[base + col])
+                {
+                    col++;
+                    continue;
+                }
+                // a run of changes, carried across short stretches that did not change
+                int end = col + 1;
+                for (int k = end; k < WIDTH && k - end < GAP; k++)
+                {
+                    if (frame[base + k] != shown[base + k]) end = k + 1;
+                }
+                moveTo(line + 1, col + 1);
+                for (int k = col; k < end; k++)
+                {
+                    buffer[length++] = (byte)frame[base + k];
+                    shown[base + k] = frame[base + k];
+                }
+                col = end;
+            }
+        }
+        if (length == before) return;
+        append(ESC, (byte)'8');
+        flush();
+    }
+
+    /*------------------- private methods -------------------*/
+
+    /*
+     * Draw the board as it is now into frame
+     */
+    private void compose()
+    {
+        Board board = engine.getBoard();
+        long wallsRight = board.getWallsRight();
+        long wallsDown = board.getWallsDown();
+        long prizes = engine.getLivePrizes();
+        int player = engine.getPlayerCell();
+        int finish = engine.getFinishCell();
+        // edges of a large room's view the room goes on past
+        boolean moreLeft = engine.getViewCol() > 0;
+        boolean moreRight = engine.getViewCol() + Board.COLS < engine.getWidth();
+        boolean moreUp = engine.getViewRow() > 0;
+        boolean moreDown = engine.getViewRow() + Board.ROWS < engine.getHeight();
+        for (int line = 0; line < Board.ROWS * 2 + 1; line++)
+        {
+            int base = line * WIDTH;
+            int row = line / 2;
+            boolean edge = line % 2 == 0;
+            for (int x = 0; x < WIDTH; x++)
+            {
+                int col = x / 4;
+                char c = ' ';
+                if (edge)
+                {
+                    // a line of posts, with a bottom wall of the row above between them
+                    if (x % 4 == 0) c = '+';
+                    else if (line == 0) c = moreUp ? '.' : '-';
+                    else if (line == Board.ROWS * 2) c = moreDown ? '.' : '-';
+                    else if ((wallsDown >>> Board.cell(col, row - 1) & 1) != 0) c = '-';
+                }
+                else if (x % 4 == 0)
+                {
+                    // the left edge, or the right wall of the cell to the left
+                    if (x == 0) c = moreLeft ? ':' : '|';
+                    else if (x == WIDTH - 1) c = Board.cell(col - 1, row) == finish ? '>' : moreRight ? ':' : '|';
+                    else if ((wallsRight >>> Board.cell(col - 1, row) & 1) != 0) c = '|';
+                }
+                else if (x % 4 == 2)
+                {
+                    int cell = Board.cell(col, row);
+                    if (cell == player) c = '@';
+                    else if ((prizes >>> cell & 1) != 0) c = '$';
+                }
+                frame[base + x] = c;
+            }
+        }
+        int status = (LINES - 1) * WIDTH;
+        int n = status;
+        n = text(n, "Steps ");
+        n = number(n, engine.getSteps());
+        n = text(n, "  Collisions ");
+        n = number(n, engine.getTrapCollisions());
+        n = text(n, "/");
+        n = number(n, engine.getCollisionLimit());
+        while (n < status + WIDTH)
+            frame[n++] = ' ';
+    }
+
+    private int text(int at, String s)
+    {
+        for (int i = 0; i < s.length() && at < frame.length; i++)
+            frame[at++] = s.charAt(i);
+        return at;
+    }
+
+    private int number(int at, int value)
+    {
+        if (value < 0)
+        {
+            if (at < frame.length) frame[at++] = '-';
+            value = -value;
+        }
+        int digits = 1;
+        for (int v = value / 10; v > 0; v /= 10)
+            digits++;
+        for (int i = digits - 1; i >= 0; i--, value /= 10)
+        {
+            if (at + i < frame.length) frame[at + i] = (char)('0' + value % 10);
+        }
+        return Math.min(at + digits, frame.length);
+    }
+
+    /*
+     * Append a cursor move to a line and column, both from 1
+     */
+    private void moveTo(int line, int col)
+    {
+        append(ESC, (byte)'[');
+        appendNumber(line);
+        buffer[length++] = ';';
+        appendNumber(col);
+        buffer[length++] = 'H';
+    }
+
+    private void escape(String sequence)
+    {
+        buffer[length++] = ESC;
+        for (int i = 0; i < sequence.length(); i++)
+            buffer[length++] = (byte)sequence.charAt(i);
+    }
+
+    private void append(byte a, byte b)
+    {
+        buffer[length++] = a;
+        buffer[length++] = b;
+    }
+
+    private void appendNumber(int value)
+    {
+        if (value >= 10) appendNumber(value / 10);
+        buffer[length++] = (byte)('0' + value % 10);
+    }
+
+    private void flush()
+    {
+        out.write(buffer, 0, length);
+        out.flush();
+        length = 0;
+    }
+}
@@ -0,0 +1,272 @@
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Supplier;
+
+/**
+ * Plays strategies against each other on the same seeded boards and ranks them by score.
+ * <P>
+ * Every strategy plays every board, so no strategy is luckier with its boards than another. Board
+ * i is generated from a seed derived from the tournament's seed and i alone, as in
+ * {@link MonteCarlo}, so the results do not depend on the number of threads. The boards are split
+ * over a fork-join pool; each worker thread keeps a silent engine and one instance of every
+ * strategy, reused from game to game, and its own {@link ScoreStats} for each strategy, merged at
+ * the end. Commands go from the strategy straight to a {@link GameSession}: nothing is parsed or
+ * printed.
+ * <P>
+ * From the project root:
+ * <pre>
+ * javac -d out *.java
+ * java -cp out Tournament -n 1000000 random explorer MyStrategy
+ * </pre>
+ * Options: <code>-n</code> boards, <code>-threads</code>, <code>-seed</code>, <code>-max</code>
+ * commands before a game is quit, and any {@link GameConfig} setting. Every other argument is a
+ * strategy: <code>random</code>, <code>explorer</code> or the name of a class implementing
+ * {@link Strategy} with a public no-argument constructor.
+ */
+public class Tournament
+{
+    // boards played by one task before it stops splitting
+    private static final long BOARDS_PER_TASK = 256;
+
+    private final GameConfig config;
+    private final List<String> names = new ArrayList<>();
+    private final List<Supplier<? extends Strategy>> strategies = new ArrayList<>();
+    private long seed;
+    private int maxCommands = MonteCarlo.DEFAULT_MAX_COMMANDS;
+
+    /**
+     * @param config the configuration every board is played with
+     */
+    public Tournament(GameConfig config)
+    {
+        this.config = config;
+    }
+
+    /**
+     * Enter a strategy.
+     * <P>
+     * @param name the name to rank it under
+     * @param strategy creates the strategy of each worker thread
+     */
+    public void add(String name, Supplier<? extends Strategy> strategy)
+    {
+        names.add(name);
+        strategies.add(strategy);
+    }
+
+    /**
+     * @param seed the seed every board seed is derived from
+     */
+    public void setSeed(long seed)
+    {
+        this.seed = seed;
+    }
+
+    /**
+     * @param maxCommands commands a strategy may play before its game is quit
+     */
+    public void setMaxCommands(int maxCommands)
+    {
+        this.maxCommands = maxCommands;
+    }
+
+    /**
+     * Play every strategy on every board on a fork-join pool.
+     * <P>
+     * @param boards the number of boards
+     * @param pool the pool to play on
+     * @return the standings, best mean score first
+     */
+    public Standing[] run(long boards, ForkJoinPool pool)
+    {
+        ThreadLocal<Player> players = ThreadLocal.withInitial(Player::new);
+        ScoreStats[] stats = pool.invoke(new Batch(0, boards, players));
+        Standing[] standings = new Standing[stats.length];
+        for (int k = 0; k < stats.length; k++)
+            standings[k] = new Standing(names.get(k), stats[k]);
+        Arrays.sort(standings, Comparator.comparingDouble((Standing s) -> s.getStats().getMean()).reversed());
+        return standings;
+    }
+
+    /**
+     * Print the standings as a leaderboard with the distribution of each strategy's scores.
+     * <P>
+     * @param standings the standings, in rank order
+     * @param out where to print
+     */
+    public static void report(Standing[] standings, PrintStream out)
+    {
+        out.printf("%4s  %-16s %20s %8s  %6s %6s %6s %6s %6s  %6s %6s%n", "rank", "strategy", "mean score (95% CI)",
+                "finish", "5%", "25%", "50%", "75%", "95%", "min", "max");
+        for (int i = 0; i < standings.length; i++)
+        {
+            ScoreStats s = standings[i].getStats();
+            out.printf("%4d  %-16s %11.3f +- %-6.3f %7.2f%%  %6d %6d %6d %6d %6d  %6d %6d%n", i + 1,
+                    standings[i].getName(), s.getMean(), s.getMeanError(), 100 * s.getFinishRate(),
+                    s.getScoreQuantile(0.05), s.getScoreQuantile(0.25), s.getScoreQuantile(0.5),
+                    s.getScoreQuantile(0.75), s.getScoreQuantile(0.95), s.getMin(), s.getMax());
+        }
+    }
+
+    /**
+     * @param name random, explorer or the name of a class implementing Strategy with a public
+     *             no-argument constructor
+     * @return a supplier of new instances of the strategy
+     * @throws IllegalArgumentException if there is no such strategy
+     */
+    public static Supplier<Strategy> strategy(String name)
+    {
+        switch (name)
+        {
+            case "random": return Strategy.random();
+            case "explorer": return Strategy.explorer();
+            default: break;
+        }
+        try
+        {
+            Class<? extends Strategy> type = Class.forName(name).asSubclass(Strategy.class);
+            type.getConstructor();
+            return () -> {
+                try
+                {
+                    return type.getConstructor().newInstance();
+                }
+                catch (ReflectiveOperationException e)
+                {
+                    throw new IllegalStateException("cannot create " + name, e);
+                }
+            };
+        }
+        catch (ReflectiveOperationException | ClassCastException e)
+        {
+            throw new IllegalArgumentException("no strategy " + name);
+        }
+    }
+
+    public static void main(String[] args)
+    {
+        MonteCarlo.Options options = new MonteCarlo.Options(args);
+        GameConfig config = options.config;
+        long boards = options.games;
+        int threads = options.threads;
+        long seed = options.seed;
+        int maxCommands = options.maxCommands;
+        List<String> entrants = options.words;
+        if (entrants.isEmpty())
+        {
+            entrants.add("random");
+            entrants.add("explorer");
+        }
+
+        Tournament tournament = new Tournament(config);
+        for (String name : entrants)
+            tournament.add(name, strategy(name));
+        tournament.setSeed(seed);
+        tournament.setMaxCommands(maxCommands);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        long start = System.nanoTime();
+        Standing[] standings = tournament.run(boards, pool);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        pool.shutdown();
+
+        long games = boards * entrants.size();
+        System.out.printf("boards %d  strategies %d  seed %d  threads %d  %.2f s (%.0f games/s)%n",
+                boards, entrants.size(), seed, threads, seconds, games / seconds);
+        System.out.println("config " + config);
+        report(standings, System.out);
+    }
+
+    /**
+     * A strategy's place in a tournament.
+     */
+    public static final class Standing
+    {
+        private final String name;
+        private final ScoreStats stats;
+
+        Standing(String name, ScoreStats stats)
+        {
+            this.name = name;
+            this.stats = stats;
+        }
+
+        /** @return the name the strategy was entered under */
+        public String getName() { return name; }
+
+        /** @return the statistics of the strategy's games */
+        public ScoreStats getStats() { return stats; }
+    }
+
+    /*------------------- private classes -------------------*/
+
+    /*
+     * The engine and strategies of one worker thread
+     */
+    private final class Player
+    {
+        final GameEngine engine = new GameEngine(0, null);
+        final Policy[] players = new Policy[strategies.size()];
+
+        Player()
+        {
+            engine.setConfig(config);
+            for (int k = 0; k < players.length; k++)
+                players[k] = strategies.get(k).get().asPolicy();
+        }
+
+        void play(long i, ScoreStats[] stats)
+        {
+            long boardSeed = MonteCarlo.gameSeed(seed, i);
+            for (int k = 0; k < players.length; k++)
+                MonteCarlo.play(engine, boardSeed, players[k], maxCommands, stats[k]);
+        }
+    }
+
+    /*
+     * Boards [from, to), split in halves until small enough to play
+     */
+    private final class Batch extends RecursiveTask<ScoreStats[]>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final long from;
+        private final long to;
+        private final ThreadLocal<Player> players;
+
+        Batch(long from, long to, ThreadLocal<Player> players)
+        {
+            this.from = from;
+            this.to = to;
+            this.players = players;
+        }
+
+        @Override
+        protected ScoreStats[] compute()
+        {
+            if (to - from <= BOARDS_PER_TASK)
+            {
+                ScoreStats[] stats = new ScoreStats[strategies.size()];
+                for (int k = 0; k < stats.length; k++)
+                    stats[k] = new ScoreStats();
+                Player player = players.get();
+                for (long i = from; i < to; i++)
+                    player.play(i, stats);
+                return stats;
+            }
+            long middle = (from + to) >>> 1;
+            Batch left = new Batch(from, middle, players);
+            Batch right = new Batch(middle, to, players);
+            right.fork();
+            ScoreStats[] stats = left.compute();
+            ScoreStats[] other = right.join();
+            for (int k = 0; k < stats.length; k++)
+                stats[k].merge(other[k]);
+            return stats;
+        }
+    }
+}
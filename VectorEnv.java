@@ -0,0 +1,261 @@
+import java.util.SplittableRandom;
+
+/**
+ * A reinforcement learning environment over the game rules, in the style of Gym's vector
+ * environments: K boards stepped in lockstep with {@link #reset()} and {@link #step(int[])}.
+ * <P>
+ * Actions are indices into {@link #ACTIONS}, one per board. Every step writes the observation of
+ * each board into {@link #getObservations()}, OBSERVATION_SIZE ints per board at the OBS_ offsets,
+ * its reward into {@link #getRewards()} and whether its episode ended into {@link #getDones()}. The
+ * buffers are allocated once and overwritten; a step creates no objects. A reward is the score
+ * change the command made in a {@link GameSession}, the end of the game included, so rewards add up
+ * to exactly the final score the game reports. A board whose episode ends starts a new one at once,
+ * and its observation is already the first of the new episode; the final score of the old one is
+ * in {@link #getFinalScores()}.
+ * <P>
+ * The observation holds what a player can know, as in {@link PlayerView}: the sets of cells are
+ * 40-bit masks stored as two ints, low 32 bits first. Hidden traps and the finish are not observed.
+ * <P>
+ * One environment runs on the thread that steps it; for more throughput step one environment per
+ * core. From the project root, to measure steps per second with random actions:
+ * <pre>
+ * javac -d out *.java
+ * java -cp out VectorEnv -envs 1024 -steps 100000000 -threads 4
+ * </pre>
+ */
+public class VectorEnv
+{
+    /** The commands an action index stands for. */
+    public static final Command[] ACTIONS = {
+        Command.RIGHT, Command.LEFT, Command.UP, Command.DOWN,
+        Command.JUMP_RIGHT, Command.JUMP_LEFT, Command.JUMP_UP, Command.JUMP_DOWN,
+        Command.SPRING_RIGHT, Command.SPRING_LEFT, Command.SPRING_UP, Command.SPRING_DOWN,
+        Command.PICKUP, Command.FIND, Command.CHECK, Command.REMOVE_TRAP,
+        Command.YES, Command.NO, Command.QUIT };
+
+    // offsets of the observation of one board
+    public static final int OBS_PLAYER = 0;        // the player's cell
+    public static final int OBS_SCORE = 1;
+    public static final int OBS_STEPS = 2;
+    public static final int OBS_COLLISIONS = 3;
+    public static final int OBS_REMOVALS = 4;
+    public static final int OBS_DETRAP = 5;        // 1 while the detrap question waits for YES or NO
+    public static final int OBS_PRIZES = 6;        // prizes not picked up
+    public static final int OBS_WALLS_RIGHT = 8;
+    public static final int OBS_WALLS_DOWN = 10;
+    public static final int OBS_SCANNED = 12;      // cells the last find or check looked at
+    public static final int OBS_SCANNED_TRAPS = 14; // and the traps among them
+    public static final int OBSERVATION_SIZE = 16;
+
+    /** Done value of a board whose episode goes on. */
+    public static final int RUNNING = 0;
+    /** Done value of a board whose game ended. */
+    public static final int TERMINATED = 1;
+    /** Done value of a board whose episode was cut off after the most steps. */
+    public static final int TRUNCATED = 2;
+
+    private final GameSession[] sessions;
+    private final int[] packedActions = new int[ACTIONS.length];
+    private final int[] observations;
+    private final float[] rewards;
+    private final int[] dones;
+    private final int[] finalScores;
+    private final int[] episodeSteps;
+    private long seed;
+    private long episodes;
+    private int maxSteps = MonteCarlo.DEFAULT_MAX_COMMANDS;
+
+    /**
+     * @param envs the number of boards K
+     * @param config the configuration every board is played with
+     */
+    public VectorEnv(int envs, GameConfig config)
+    {
+        sessions = new GameSession[envs];
+        for (int i = 0; i < envs; i++)
+        {
+            GameEngine engine = new GameEngine(0, null);
+            engine.setConfig(config);
+            sessions[i] = new GameSession(engine, null);
+        }
+        for (int a = 0; a < ACTIONS.length; a++)
+            packedActions[a] = ACTIONS[a].packed();
+        observations = new int[envs * OBSERVATION_SIZE];
+        rewards = new float[envs];
+        dones = new int[envs];
+        finalScores = new int[envs];
+        episodeSteps = new int[envs];
+    }
+
+    /**
+     * @param seed the seed every episode's board is derived from, used from the next reset
+     */
+    public void setSeed(long seed)
+    {
+        this.seed = seed;
+    }
+
+    /**
+     * @param maxSteps steps after which an episode is truncated
+     */
+    public void setMaxSteps(int maxSteps)
+    {
+        this.maxSteps = maxSteps;
+    }
+
+    /**
+     * Start a new episode on every board and write the first observations. Episode n of a
+     * sequence of resets and steps plays the board of {@link MonteCarlo#gameSeed(long, long)} of
+     * the seed and n, so runs are reproducible.
+     */
+    public void reset()
+    {
+        episodes = 0;
+        for (int i = 0; i < sessions.length; i++)
+        {
+            newEpisode(i);
+            rewards[i] = 0;
+            dones[i] = RUNNING;
+        }
+    }
+
+    /**
+     * Run one action on every board.
+     * <P>
+     * @param actions an index into ACTIONS for each board
+     * @throws ArrayIndexOutOfBoundsException if an action is not an index into ACTIONS
+     */
+    public void step(int[] actions)
+    {
+        for (int i = 0; i < sessions.length; i++)
+        {
+            GameSession session = sessions[i];
+            int before = session.getScore();
+            session.execute(packedActions[actions[i]]);
+            int score = session.getScore();
+            rewards[i] = score - before;
+            int done = !session.isPlaying() ? TERMINATED : ++episodeSteps[i] >= maxSteps ? TRUNCATED : RUNNING;
+            dones[i] = done;
+            if (done == RUNNING)
+            {
+                observe(i);
+            }
+            else
+            {
+                finalScores[i] = score;
+                newEpisode(i);
+            }
+        }
+    }
+
+    /** @return the number of boards */
+    public int getEnvCount() { return sessions.length; }
+
+    /** @return the observations of the boards, OBSERVATION_SIZE ints each */
+    public int[] getObservations() { return observations; }
+
+    /** @return the reward of the last step of each board */
+    public float[] getRewards() { return rewards; }
+
+    /** @return RUNNING, TERMINATED or TRUNCATED for the last step of each board */
+    public int[] getDones() { return dones; }
+
+    /** @return the final score of each board's last episode that ended */
+    public int[] getFinalScores() { return finalScores; }
+
+    public static void main(String[] args) throws InterruptedException
+    {
+        int envs = 1024;
+        long steps = 100_000_000;
+        int threads = 1;
+        for (int i = 0; i < args.length; i++)
+        {
+            switch (args[i])
+            {
+                case "-envs": envs = Integer.parseInt(args[++i]); break;
+                case "-steps": steps = Long.parseLong(args[++i]); break;
+                case "-threads": threads = Integer.parseInt(args[++i]); break;
+                default: throw new IllegalArgumentException("unknown option " + args[i]);
+            }
+        }
+        long rounds = Math.max(1, steps / ((long)envs * threads));
+        int k = envs;
+        long[] episodes = new long[threads];
+        double[] scores = new double[threads];
+        Thread[] workers = new Thread[threads];
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++)
+        {
+            int id = t;
+            workers[t] = new Thread(() -> {
+                VectorEnv env = new VectorEnv(k, new GameConfig());
+                env.setSeed(id);
+                env.reset();
+                int[] actions = new int[k];
+                SplittableRandom rand = new SplittableRandom(id);
+                for (long r = 0; r < rounds; r++)
+                {
+                    for (int i = 0; i < k; i++)
+                        actions[i] = rand.nextInt(ACTIONS.length);
+                    env.step(actions);
+                    for (int i = 0; i < k; i++)
+                    {
+                        if (env.dones[i] == RUNNING) continue;
+                        episodes[id]++;
+                        scores[id] += env.finalScores[i];
+                    }
+                }
+            });
+            workers[t].start();
+        }
+        long total = 0;
+        double sum = 0;
+        for (int t = 0; t < threads; t++)
+        {
+            workers[t].join();
+            total += episodes[t];
+            sum += scores[t];
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long done = rounds * k * threads;
+        System.out.printf("%d steps on %d x %d boards in %.2f s: %.1f M steps/s, %d episodes, mean score %.2f%n",
+                done, threads, k, seconds, done / seconds / 1e6, total, total > 0 ? sum / total : 0);
+    }
+
+    /*------------------- private methods -------------------*/
+
+    private void newEpisode(int i)
+    {
+        sessions[i].newGame(MonteCarlo.gameSeed(seed, episodes++));
+        episodeSteps[i] = 0;
+        observe(i);
+    }
+
+    /*
+     * Write the observation of board i
+     */
+    private void observe(int i)
+    {
+        GameSession session = sessions[i];
+        GameEngine engine = session.getEngine();
+        Board board = engine.getBoard();
+        int o = i * OBSERVATION_SIZE;
+        observations[o + OBS_PLAYER] = engine.getPlayerCell();
+        observations[o + OBS_SCORE] = session.getScore();
+        observations[o + OBS_STEPS] = engine.getSteps();
+        observations[o + OBS_COLLISIONS] = engine.getTrapCollisions();
+        observations[o + OBS_REMOVALS] = engine.getTrapRemovals();
+        observations[o + OBS_DETRAP] = session.isAwaitingDetrap() ? 1 : 0;
+        mask(o + OBS_PRIZES, engine.getLivePrizes());
+        mask(o + OBS_WALLS_RIGHT, board.getWallsRight());
+        mask(o + OBS_WALLS_DOWN, board.getWallsDown());
+        mask(o + OBS_SCANNED, session.getScannedCells());
+        mask(o + OBS_SCANNED_TRAPS, session.getScannedTraps());
+    }
+
+    private void mask(int at, long cells)
+    {
+        observations[at] = (int)cells;
+        observations[at + 1] = (int)(cells >>> 32);
+    }
+}
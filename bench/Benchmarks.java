@@ -0,0 +1,327 @@
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+/**
+ * Micro benchmarks for the game engine and rendering hot paths.
+ * <P>
+ * Modeled on JMH: every benchmark runs warmup iterations, then timed measurement iterations,
+ * and reports the average time per operation with its error, together with the bytes allocated
+ * per operation and the garbage collections seen (the numbers JMH's <code>-prof gc</code> reports).
+ * <P>
+ * Build and run from the project root (the images are loaded from the working directory):
+ * <pre>
+ * javac -d out *.java bench/Benchmarks.java
+ * java -Djava.awt.headless=true -cp out Benchmarks [regex]
+ * </pre>
+ * Options: <code>-wi N</code> warmup iterations, <code>-i N</code> measurement iterations,
+ * <code>-t MS</code> milliseconds per iteration. The checked in baseline is bench/baseline.txt.
+ */
+public class Benchmarks
+{
+    /** One operation of a benchmark; the result is consumed so the work cannot be optimized away. */
+    interface Operation
+    {
+        long run(int i);
+    }
+
+    /** Creates the state of a benchmark and returns its operation. */
+    interface Setup
+    {
+        Operation create();
+    }
+
+    private static final class Case
+    {
+        final String name;
+        final String params;
+        final Setup setup;
+
+        Case(String name, String params, Setup setup)
+        {
+            this.name = name;
+            this.params = params;
+            this.setup = setup;
+        }
+    }
+
+    private static final int MOVE = GameEngine.SPACE_SIZE;
+    private static final PrintStream NO_OUTPUT = new PrintStream(OutputStream.nullOutputStream());
+
+    private static volatile long sink;
+
+    private int warmupIterations = 3;
+    private int iterations = 5;
+    private long iterationMillis = 500;
+    private final List<Case> cases = new ArrayList<>();
+
+    public static void main(String[] args)
+    {
+        Benchmarks bench = new Benchmarks();
+        Pattern filter = Pattern.compile(".*");
+        for (int i = 0; i < args.length; i++)
+        {
+            switch (args[i])
+            {
+                case "-wi": bench.warmupIterations = Integer.parseInt(args[++i]); break;
+                case "-i":  bench.iterations = Integer.parseInt(args[++i]); break;
+                case "-t":  bench.iterationMillis = Long.parseLong(args[++i]); break;
+                default:    filter = Pattern.compile(args[i]); break;
+            }
+        }
+        bench.register();
+        bench.runAll(filter);
+    }
+
+    /*------------------- benchmarks -------------------*/
+
+    private void register()
+    {
+        for (int walls : new int[] { 0, 20, 40 })
+            for (int traps : new int[] { 1, 8, 20 })
+                for (int prizes : new int[] { 1, 3, 10 })
+                {
+                    final int w = walls, t = traps, p = prizes;
+                    String params = "walls=" + w + " traps=" + t + " prizes=" + p;
+                    add("createBoard", params, () -> {
+                        GameEngine e = engine(w, t, p);
+                        return i -> { e.createBoard(); return e.getBoard().getTraps(); };
+                    });
+                    add("scriptedGame", params, () -> {
+                        GameEngine e = engine(w, t, p);
+                        int[] script = script(200, 42);
+                        return i -> playScript(e, script);
+                    });
+                }
+
+        add("movePlayer.open", "", () -> {
+            GameEngine e = engine(0, 0, 0);
+            e.createBoard();
+            return i -> e.movePlayer((i & 1) == 0 ? MOVE : -MOVE, 0);
+        });
+        add("movePlayer.blocked", "", () -> {
+            GameEngine e = engine(0, 0, 0);
+            e.createBoard();
+            Board b = e.getBoard();
+            b.wallsRight = 1L << e.getPlayerCell();
+            b.compile();
+            return i -> e.movePlayer(MOVE, 0);
+        });
+        add("movePlayer.offGrid", "", () -> {
+            GameEngine e = engine(0, 0, 0);
+            e.createBoard();
+            return i -> e.movePlayer(-MOVE, 0);
+        });
+        add("isTrap", "", () -> {
+            GameEngine e = engine(20, 8, 3);
+            e.createBoard();
+            return i -> e.isTrap((i & 1) == 0 ? MOVE : 0, (i & 1) == 0 ? 0 : MOVE) ? 1 : 0;
+        });
+        add("springTrap.miss", "", () -> {
+            GameEngine e = engine(0, 0, 0);
+            e.createBoard();
+            return i -> e.springTrap(MOVE, 0);
+        });
+        add("springTrap.hit+replay", "", () -> {
+            GameEngine e = engine(0, 0, 0);
+            e.createBoard();
+            e.getBoard().traps = 1L << Board.neighbor(e.getPlayerCell(), Board.RIGHT);
+            e.replay();
+            return i -> e.springTrap(MOVE, 0) + e.replay();
+        });
+        add("pickupPrize.miss", "", () -> {
+            GameEngine e = engine(0, 0, 0);
+            e.createBoard();
+            return i -> e.pickupPrize();
+        });
+        add("pickupPrize.hit+replay", "", () -> {
+            GameEngine e = engine(0, 0, 0);
+            e.createBoard();
+            e.getBoard().prizes = 1L << e.getPlayerCell();
+            e.replay();
+            return i -> e.pickupPrize() + e.replay();
+        });
+        add("replay", "", () -> {
+            GameEngine e = engine(20, 8, 3);
+            e.createBoard();
+            return i -> e.replay();
+        });
+        add("restart", "", () -> {
+            GameEngine e = engine(20, 8, 3);
+            e.createBoard();
+            return i -> e.restart();
+        });
+        add("paintComponent", "", () -> {
+            GameEngine e = engine(20, 8, 3);
+            e.createBoard();
+            GameGUI gui = new GameGUI(e);
+            gui.setSize(GameEngine.WIDTH, GameEngine.HEIGHT);
+            BufferedImage image = new BufferedImage(GameEngine.WIDTH, GameEngine.HEIGHT, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = image.createGraphics();
+            return i -> {
+                e.movePlayer((i & 1) == 0 ? MOVE : -MOVE, 0);
+                gui.paintComponent(g);
+                return image.getRGB(0, 0);
+            };
+        });
+    }
+
+    private void add(String name, String params, Setup setup)
+    {
+        cases.add(new Case(name, params, setup));
+    }
+
+    private static GameEngine engine(int walls, int traps, int prizes)
+    {
+        GameEngine e = new GameEngine();
+        e.setWalls(walls);
+        e.setTraps(traps);
+        e.setPrizes(prizes);
+        return e;
+    }
+
+    /*
+     * A fixed sequence of commands: 0-3 move, 4-7 jump, 8-11 spring, 12 pickup
+     */
+    private static int[] script(int length, long seed)
+    {
+        Random rand = new Random(seed);
+        int[] script = new int[length];
+        for (int i = 0; i < length; i++)
+            script[i] = rand.nextInt(13);
+        return script;
+    }
+
+    /*
+     * Play the script on a new board, answering every detrap prompt with yes
+     */
+    private static long playScript(GameEngine e, int[] script)
+    {
+        e.restart();
+        long score = 0;
+        for (int cmd : script)
+        {
+            int dx = (cmd & 3) == 0 ? MOVE : (cmd & 3) == 1 ? -MOVE : 0;
+            int dy = (cmd & 3) == 2 ? -MOVE : (cmd & 3) == 3 ? MOVE : 0;
+            if (cmd < 4) score += e.movePlayer(dx, dy);
+            else if (cmd < 8) score += e.jump(dx, dy);
+            else if (cmd < 12) score += e.springTrap(dx, dy);
+            else score += e.pickupPrize();
+
+            if (e.hasPendingTrapCollision())
+            {
+                score += e.removeTrap();
+                e.clearPendingTrapCollision();
+            }
+            if (e.isAtFinish()) break;
+        }
+        return score + e.endGame();
+    }
+
+    /*------------------- harness -------------------*/
+
+    private void runAll(Pattern filter)
+    {
+        PrintStream out = System.out;
+        out.printf("# JVM %s, %d warmup x %d ms, %d measurement x %d ms%n", System.getProperty("java.vm.version"),
+                warmupIterations, iterationMillis, iterations, iterationMillis);
+        out.printf("%-26s %-28s %4s %14s %10s %14s %8s%n", "Benchmark", "(params)", "Cnt", "Score", "Error", "alloc B/op", "gc.count");
+        for (Case c : cases)
+        {
+            if (!filter.matcher(c.name).find()) continue;
+            // the engine reports every event on the console, keep that out of the measurement
+            System.setOut(NO_OUTPUT);
+            double[] result;
+            try
+            {
+                result = run(c);
+            }
+            finally
+            {
+                System.setOut(out);
+            }
+            out.printf("%-26s %-28s %4d %11.1f ns %10.1f %14.1f %8d%n", c.name, c.params, iterations,
+                    result[0], result[1], result[2], (long)result[3]);
+        }
+    }
+
+    /*
+     * @return mean ns/op, its 99.9% error, allocated bytes/op and the number of collections
+     */
+    private double[] run(Case c)
+    {
+        Operation op = c.setup.create();
+        for (int w = 0; w < warmupIterations; w++)
+            iteration(op, null);
+
+        double[] nsPerOp = new double[iterations];
+        long allocated = 0;
+        long ops = 0;
+        long gcBefore = collections();
+        for (int m = 0; m < iterations; m++)
+        {
+            long[] counters = new long[2];
+            nsPerOp[m] = iteration(op, counters);
+            allocated += counters[0];
+            ops += counters[1];
+        }
+        long gcCount = collections() - gcBefore;
+
+        double mean = 0;
+        for (double v : nsPerOp) mean += v;
+        mean /= iterations;
+        double var = 0;
+        for (double v : nsPerOp) var += (v - mean) * (v - mean);
+        double error = iterations > 1 ? 3.291 * Math.sqrt(var / (iterations - 1)) / Math.sqrt(iterations) : Double.NaN;
+        return new double[] { mean, error, (double)allocated / ops, gcCount };
+    }
+
+    /*
+     * Run the operation for one iteration, returning ns/op; counters receives allocated bytes and operations
+     */
+    private double iteration(Operation op, long[] counters)
+    {
+        long deadline = System.nanoTime() + iterationMillis * 1_000_000L;
+        long allocBefore = allocatedBytes();
+        long start = System.nanoTime();
+        long ops = 0;
+        long acc = 0;
+        long now;
+        do
+        {
+            for (int i = 0; i < 256; i++)
+                acc += op.run(i);
+            ops += 256;
+            now = System.nanoTime();
+        } while (now < deadline);
+        long allocAfter = allocatedBytes();
+        sink += acc;
+        if (counters != null)
+        {
+            counters[0] = allocAfter - allocBefore;
+            counters[1] = ops;
+        }
+        return (double)(now - start) / ops;
+    }
+
+    private static long allocatedBytes()
+    {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static long collections()
+    {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+            count += Math.max(0, gc.getCollectionCount());
+        return count;
+    }
+}
@@ -0,0 +1,53 @@
+/**
+ * The assertions of the tests in this directory: each failed check throws an AssertionError naming
+ * what was checked, and every check is counted for the summary of {@link Tests}.
+ */
+final class Check
+{
+    private static int checks;
+
+    private Check()
+    {
+    }
+
+    /**
+     * @param condition what must hold
+     * @param what what was checked, for the failure message
+     */
+    static void that(boolean condition, String what)
+    {
+        checks++;
+        if (!condition) throw new AssertionError(what);
+    }
+
+    /**
+     * @param expected the value that must come out
+     * @param actual the value that came out
+     * @param what what was checked, for the failure message
+     */
+    static void equal(long expected, long actual, String what)
+    {
+        checks++;
+        if (expected != actual) throw new AssertionError(what + ": expected " + expected + ", got " + actual);
+    }
+
+    /**
+     * @param expected the value that must come out
+     * @param actual the value that came out
+     * @param what what was checked, for the failure message
+     */
+    static void equal(Object expected, Object actual, String what)
+    {
+        checks++;
+        if (expected == null ? actual != null : !expected.equals(actual))
+            throw new AssertionError(what + ": expected " + expected + ", got " + actual);
+    }
+
+    /**
+     * @return the number of checks made so far
+     */
+    static int count()
+    {
+        return checks;
+    }
+}
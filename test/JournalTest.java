@@ -0,0 +1,199 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.stream.Stream;
+
+/**
+ * The journal format of {@link JournalWriter} and {@link JournalReader}: the header, the opcode,
+ * count and Elias gamma/zigzag score codes of every command, and journals cut short or put one
+ * after another.
+ */
+public class JournalTest
+{
+    private static final int[] DELTAS = {
+        0, 1, -1, 2, -2, 5, -5, 10, -10, 15, 1000, -1000, Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE + 1 };
+
+    public static void main(String[] args) throws Exception
+    {
+        run();
+        System.out.println(Check.count() + " checks passed");
+    }
+
+    static void run() throws IOException
+    {
+        Path dir = Files.createTempDirectory("journal-test");
+        try
+        {
+            roundTrip(dir.resolve("round.erj"));
+            header(dir.resolve("header.erj"));
+            cutShort(dir.resolve("cut.erj"));
+            concatenated(dir.resolve("a.erj"), dir.resolve("b.erj"));
+        }
+        finally
+        {
+            try (Stream<Path> files = Files.list(dir))
+            {
+                files.forEach(file -> file.toFile().delete());
+            }
+            Files.delete(dir);
+        }
+    }
+
+    /*
+     * Every command with counts and score changes of every size comes back as written, over more
+     * than one buffer of the writer
+     */
+    private static void roundTrip(Path file) throws IOException
+    {
+        GameSession session = newSession(7);
+        int[] commands = new int[20_000];
+        int[] deltas = new int[commands.length];
+        SplittableRandom rand = new SplittableRandom(1);
+        Command[] all = Command.values();
+        for (int i = 0; i < commands.length; i++)
+        {
+            Command c = all[i < all.length ? i : rand.nextInt(all.length)];
+            int count = !c.isRepeatable() ? 1 : i % 3 == 0 ? 1 : rand.nextInt(2, 1 << JournalWriter.COUNT_BITS);
+            commands[i] = Command.pack(c, count);
+            deltas[i] = i < DELTAS.length ? DELTAS[i] : rand.nextBoolean() ? DELTAS[rand.nextInt(DELTAS.length)] : rand.nextInt();
+        }
+        try (JournalWriter writer = new JournalWriter(file, session))
+        {
+            for (int i = 0; i < commands.length; i++)
+                writer.record(commands[i], deltas[i]);
+        }
+        Check.that(Files.size(file) > JournalWriter.BLOCK_SIZE, "journal spans more than one block");
+
+        JournalReader reader = JournalReader.open(file);
+        for (int i = 0; i < commands.length; i++)
+        {
+            Check.that(reader.next(), "command " + i + " read");
+            Check.equal(commands[i], reader.command(), "command " + i);
+            Check.equal(deltas[i], reader.delta(), "score change of command " + i);
+        }
+        Check.that(!reader.next(), "nothing after the last command");
+        Check.that(reader.isComplete(), "closed journal is complete");
+        Check.equal(Files.size(file), reader.position(), "reader stops at the end of the journal");
+    }
+
+    /*
+     * The header holds the configuration and the packed session the journal starts from
+     */
+    private static void header(Path file) throws IOException
+    {
+        GameConfig config = new GameConfig();
+        config.setTraps(10);
+        config.setPrizeVal(20);
+        config.setDeclineCost(3);
+        GameEngine engine = new GameEngine(99, null);
+        engine.setConfig(config);
+        GameSession session = new GameSession(engine, null);
+        session.newGame(99);
+        session.execute(Command.pack(Command.RIGHT, 2));
+        session.execute(Command.DOWN.packed());
+        long[] recorded = new long[GameSession.PACKED_WORDS];
+        session.storePacked(recorded, 0);
+        new JournalWriter(file, session).close();
+
+        JournalReader reader = JournalReader.open(file);
+        Check.equal(config, reader.getConfig(), "configuration");
+        GameSession replay = newSession(1);
+        reader.start(replay);
+        long[] started = new long[GameSession.PACKED_WORDS];
+        replay.storePacked(started, 0);
+        Check.that(Arrays.equals(recorded, started), "session the journal starts from");
+        Check.equal(session.getScore(), replay.getScore(), "score the journal starts from");
+        Check.equal(engine.getPlayerCell(), replay.getEngine().getPlayerCell(), "player cell the journal starts from");
+        Check.that(!reader.next() && reader.isComplete(), "empty journal is complete");
+    }
+
+    /*
+     * A journal synced but never closed, or missing its last byte, is read up to where it stops
+     * and is not complete
+     */
+    private static void cutShort(Path file) throws IOException
+    {
+        GameSession session = newSession(3);
+        try (JournalWriter writer = new JournalWriter(file, session))
+        {
+            for (int i = 0; i < 100; i++)
+                writer.record(Command.RIGHT.packed(), 0);
+            writer.sync();
+            JournalReader reader = JournalReader.open(file);
+            int read = 0;
+            while (reader.next())
+                read++;
+            Check.that(read > 90 && read <= 100, "synced commands readable before close, read " + read);
+            Check.that(!reader.isComplete(), "unclosed journal is not complete");
+        }
+
+        byte[] whole = Files.readAllBytes(file);
+        JournalReader reader = new JournalReader(ByteBuffer.wrap(whole, 0, whole.length - 1).slice());
+        while (reader.next())
+        {
+            // read up to the cut
+        }
+        Check.that(!reader.isComplete(), "journal without its last byte is not complete");
+
+        boolean rejected = false;
+        try
+        {
+            new JournalReader(ByteBuffer.wrap(new byte[] { 'E', 'R', 'J', '0', 0, 0, 0, 10 }));
+        }
+        catch (IOException e)
+        {
+            rejected = true;
+        }
+        Check.that(rejected, "wrong magic number rejected");
+    }
+
+    /*
+     * Journals one after another in a buffer are read one after the other
+     */
+    private static void concatenated(Path a, Path b) throws IOException
+    {
+        try (JournalWriter writer = new JournalWriter(a, newSession(11)))
+        {
+            writer.record(Command.pack(Command.UP, 3), -5);
+        }
+        try (JournalWriter writer = new JournalWriter(b, newSession(12)))
+        {
+            writer.record(Command.PICKUP.packed(), 10);
+            writer.record(Command.QUIT.packed(), 0);
+        }
+        byte[] first = Files.readAllBytes(a);
+        byte[] second = Files.readAllBytes(b);
+        ByteBuffer both = ByteBuffer.allocate(first.length + second.length).put(first).put(second);
+        both.flip();
+
+        JournalReader reader = new JournalReader(both);
+        Check.that(reader.next(), "first journal's command");
+        Check.equal(Command.pack(Command.UP, 3), reader.command(), "first journal's command");
+        Check.equal(-5, reader.delta(), "first journal's score change");
+        Check.that(!reader.next() && reader.isComplete(), "first journal complete");
+        Check.that(reader.nextJournal(), "second journal follows");
+        GameSession replay = newSession(1);
+        reader.start(replay);
+        Check.equal(12, replay.getEngine().getSeed(), "second journal's seed");
+        Check.that(reader.next(), "second journal's first command");
+        Check.equal(Command.PICKUP.packed(), reader.command(), "second journal's first command");
+        Check.equal(10, reader.delta(), "second journal's first score change");
+        Check.that(reader.next(), "second journal's second command");
+        Check.equal(Command.QUIT.packed(), reader.command(), "second journal's second command");
+        Check.that(!reader.next() && reader.isComplete(), "second journal complete");
+        Check.that(!reader.nextJournal(), "nothing after the second journal");
+    }
+
+    /*
+     * A silent session at the start of a new game
+     */
+    static GameSession newSession(long seed)
+    {
+        GameSession session = new GameSession(new GameEngine(seed, null), null);
+        session.newGame(seed);
+        return session;
+    }
+}
@@ -0,0 +1,129 @@
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+/**
+ * The plans of {@link Solver} on fixed seeds: the score a plan promises is the score playing it
+ * gets, it never beats the reward bound, and where the bound can be reached the plan reaches it,
+ * so its score is the best there is.
+ */
+public class SolverTest
+{
+    private static final int SEEDS = 12;
+
+    public static void main(String[] args)
+    {
+        run();
+        System.out.println(Check.count() + " checks passed");
+    }
+
+    static void run()
+    {
+        // without traps every prize the generator places can be picked up on the way to the finish
+        GameConfig noTraps = new GameConfig();
+        noTraps.setTraps(0);
+        for (long seed = 1; seed <= SEEDS; seed++)
+            Check.equal(bound(noTraps, seed), solveAndPlay(noTraps, seed, new Solver()), "best score without traps, seed " + seed);
+
+        // the default boards of these seeds have every trap springable and no forced collision
+        GameConfig defaults = new GameConfig();
+        for (long seed = 1; seed <= SEEDS; seed++)
+            Check.equal(bound(defaults, seed), solveAndPlay(defaults, seed, new Solver()), "best score of default board, seed " + seed);
+
+        // crowded boards take more states: the best score with room for them, never beaten by a
+        // player who explores, and a plan that is not claimed to be the best when the budget runs out
+        GameConfig crowded = new GameConfig();
+        crowded.setWalls(40);
+        crowded.setTraps(20);
+        for (long seed = 1; seed <= SEEDS; seed++)
+        {
+            int best = solveAndPlay(crowded, seed, new Solver(1 << 22));
+            Check.equal(bound(crowded, seed), best, "best score of crowded board, seed " + seed);
+            int explored = play(crowded, seed, Strategy.explorer().get().asPolicy());
+            Check.that(best >= explored, "solver " + best + " not beaten by explorer " + explored + ", seed " + seed);
+        }
+        Solver small = new Solver();
+        Check.that(small.solve(newGame(crowded, 1).getEngine()), "plan found within a small budget");
+        Check.that(!small.isBest(), "plan of a search cut short not claimed to be the best");
+
+        // asked in the middle of a game, the plan scores from where the player stands
+        GameSession session = newGame(defaults, 5);
+        session.execute(Command.DOWN.packed());
+        session.execute(Command.pack(Command.RIGHT, 2));
+        Solver solver = new Solver();
+        Check.that(solver.solve(session.getEngine()) && solver.isBest(), "best plan found mid-game");
+        int before = session.getScore();
+        int gain = solver.getScoreGain();
+        for (int i = 0; i < solver.getPlanLength(); i++)
+            session.execute(solver.getPlanCommand(i));
+        Check.that(!session.isPlaying(), "mid-game plan ends the game");
+        Check.equal(before + gain, session.getScore(), "mid-game plan scores as promised");
+
+        // a hint asked after t or space is not a plan's first command, the mode waits for its direction
+        ByteArrayOutputStream text = new ByteArrayOutputStream();
+        GameEngine engine = new GameEngine(5, null);
+        session = new GameSession(engine, new PrintStream(text, true));
+        session.newGame(5);
+        session.execute(Command.JUMP_MODE.packed());
+        text.reset();
+        session.execute(Command.HINT.packed());
+        Check.that(text.toString().startsWith("Hint: choose a direction for jump mode first"), "no hint with a mode pending: " + text);
+        text.reset();
+        session.execute(Command.HINT.packed());
+        session.execute(Command.RIGHT.packed());
+        GameSession walked = newGame(defaults, 5);
+        walked.execute(Command.RIGHT.packed());
+        Check.that(text.toString().contains("Hint: choose a direction"), "no hint asked again with the mode pending");
+        Check.equal(Board.cell(2, 0), engine.getPlayerCell() - GameEngine.START_CELL, "jump kept through the hints");
+        Check.equal(Board.cell(1, 0), walked.getEngine().getPlayerCell() - GameEngine.START_CELL, "step without a mode");
+        session.execute(Command.HINT.packed());
+        Check.that(text.toString().contains("best final score"), "hint once the mode is cleared");
+    }
+
+    /*
+     * Solve a new game and play the plan; the score it promised, checked against the one it got
+     */
+    private static int solveAndPlay(GameConfig config, long seed, Solver solver)
+    {
+        GameSession session = newGame(config, seed);
+        Check.that(solver.solve(session.getEngine()), "plan found, seed " + seed);
+        Check.that(solver.isBest(), "search finished within its budget, seed " + seed);
+        int gain = solver.getScoreGain();
+        for (int i = 0; i < solver.getPlanLength(); i++)
+            session.execute(solver.getPlanCommand(i));
+        Check.that(!session.isPlaying(), "plan ends the game, seed " + seed);
+        Check.equal(gain, session.getScore(), "plan scores as promised, seed " + seed);
+        return gain;
+    }
+
+    /*
+     * The most points a new game can earn, see GameEngine.rewardBound
+     */
+    private static int bound(GameConfig config, long seed)
+    {
+        GameEngine engine = newGame(config, seed).getEngine();
+        long walkable = engine.getBoard().reachable(engine.getPlayerCell(), 1L << engine.getFinishCell());
+        return engine.rewardBound(walkable);
+    }
+
+    /*
+     * The score a policy gets on a new game, quitting after a few hundred commands
+     */
+    private static int play(GameConfig config, long seed, Policy policy)
+    {
+        GameSession session = newGame(config, seed);
+        policy.newGame(session, seed);
+        for (int i = 0; i < 500 && session.isPlaying(); i++)
+            session.execute(policy.nextCommand(session));
+        if (session.isPlaying()) session.execute(Command.QUIT.packed());
+        return session.getScore();
+    }
+
+    private static GameSession newGame(GameConfig config, long seed)
+    {
+        GameEngine engine = new GameEngine(seed, null);
+        engine.setConfig(config);
+        GameSession session = new GameSession(engine, null);
+        session.newGame(seed);
+        return session;
+    }
+}
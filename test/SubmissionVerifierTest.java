@@ -0,0 +1,178 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+/**
+ * The verdicts of {@link SubmissionVerifier} on journals recorded here: a game played to its end
+ * passes with its score, and every way a submission can be wrong fails at the command it goes wrong.
+ */
+public class SubmissionVerifierTest
+{
+    private static final byte[] SECRET = "not a real secret".getBytes(StandardCharsets.US_ASCII);
+
+    public static void main(String[] args) throws Exception
+    {
+        run();
+        System.out.println(Check.count() + " checks passed");
+    }
+
+    static void run() throws IOException
+    {
+        Path dir = Files.createTempDirectory("verifier-test");
+        try
+        {
+            verdicts(dir);
+            assignedSeeds(dir);
+        }
+        finally
+        {
+            try (Stream<Path> files = Files.list(dir))
+            {
+                files.forEach(file -> file.toFile().delete());
+            }
+            Files.delete(dir);
+        }
+    }
+
+    /*
+     * Submissions checked without a secret
+     */
+    private static void verdicts(Path dir) throws IOException
+    {
+        SubmissionVerifier verifier = new SubmissionVerifier(new GameConfig());
+
+        Path played = dir.resolve("played.erj");
+        int score = record(played, 21, -1, true, false);
+        check(verifier, played, null, SubmissionVerifier.Verdict.PASS, -1);
+        Check.equal(score, verifier.getScore(), "score of a passed submission");
+
+        Path tampered = dir.resolve("tampered.erj");
+        record(tampered, 21, 3, true, false);
+        check(verifier, tampered, null, SubmissionVerifier.Verdict.MISMATCH, 3);
+
+        Path unfinished = dir.resolve("unfinished.erj");
+        record(unfinished, 21, -1, false, false);
+        check(verifier, unfinished, null, SubmissionVerifier.Verdict.UNFINISHED, 2);
+
+        Path late = dir.resolve("late.erj");
+        GameSession session = newGame(new GameConfig(), 21);
+        session.execute(Command.DOWN.packed());
+        new JournalWriter(late, session).close();
+        check(verifier, late, null, SubmissionVerifier.Verdict.NOT_NEW_GAME, 0);
+
+        GameConfig other = new GameConfig();
+        other.setTraps(10);
+        check(new SubmissionVerifier(other), played, null, SubmissionVerifier.Verdict.CONFIGURATION, 0);
+
+        // synced but never closed: every command matches, but the journal has no end
+        Path cut = dir.resolve("cut.erj");
+        session = newGame(new GameConfig(), 21);
+        try (JournalWriter writer = new JournalWriter(cut, session))
+        {
+            session.setCommandLog(writer);
+            playPlan(session);
+            writer.sync();
+            check(verifier, cut, null, SubmissionVerifier.Verdict.TRUNCATED, -1);
+        }
+
+        // a failed journal is read to its end, so the one after it is checked from its start
+        byte[] first = Files.readAllBytes(tampered);
+        byte[] second = Files.readAllBytes(played);
+        ByteBuffer both = ByteBuffer.allocate(first.length + second.length).put(first).put(second);
+        both.flip();
+        JournalReader reader = new JournalReader(both);
+        Check.equal(SubmissionVerifier.Verdict.MISMATCH, verifier.verify(reader, null), "first of two journals");
+        Check.that(reader.nextJournal(), "second journal follows a failed one");
+        Check.equal(SubmissionVerifier.Verdict.PASS, verifier.verify(reader, null), "second of two journals");
+    }
+
+    /*
+     * Submissions checked with a secret: only the assigned board, played once, passes
+     */
+    private static void assignedSeeds(Path dir) throws IOException
+    {
+        SubmissionVerifier verifier = new SubmissionVerifier(new GameConfig(), SECRET);
+        long seed = verifier.assignSeed("alice-17");
+        Check.equal(seed, new SubmissionVerifier(null, SECRET).assignSeed("alice-17"), "seed assigned again");
+        Check.that(seed != verifier.assignSeed("alice-18"), "other id, other seed");
+        Check.that(seed != new SubmissionVerifier(null, "another secret".getBytes(StandardCharsets.US_ASCII)).assignSeed("alice-17"),
+                "other secret, other seed");
+
+        Path assigned = dir.resolve("assigned.erj");
+        int score = record(assigned, seed, -1, true, false);
+        check(verifier, assigned, "alice-17", SubmissionVerifier.Verdict.PASS, -1);
+        Check.equal(score, verifier.getScore(), "score of the assigned board");
+        check(verifier, assigned, "bob-1", SubmissionVerifier.Verdict.WRONG_SEED, 0);
+        check(new SubmissionVerifier(new GameConfig()), assigned, null, SubmissionVerifier.Verdict.PASS, -1);
+
+        Path restarted = dir.resolve("restarted.erj");
+        record(restarted, seed, -1, true, true);
+        check(verifier, restarted, "alice-17", SubmissionVerifier.Verdict.NEW_BOARD, 1);
+        // without a secret any new board may be played, restarts included
+        check(new SubmissionVerifier(new GameConfig()), restarted, null, SubmissionVerifier.Verdict.PASS, -1);
+    }
+
+    /*
+     * Verify a journal file and check the verdict and the command it stopped at, -1 for any
+     */
+    private static void check(SubmissionVerifier verifier, Path file, String id, SubmissionVerifier.Verdict expected, int step)
+            throws IOException
+    {
+        SubmissionVerifier.Verdict verdict = verifier.verify(JournalReader.open(file), id);
+        Check.equal(expected, verdict, file.getFileName() + " verdict");
+        if (step >= 0) Check.equal(step, verifier.getStep(), file.getFileName() + " failed at command");
+    }
+
+    /*
+     * Record a new game: a score and a restart if asked, then the solver's plan to the end, or two
+     * moves and a stop if not finished; one command's score change is off by one if tamper is its index
+     */
+    private static int record(Path file, long seed, int tamper, boolean finish, boolean restart) throws IOException
+    {
+        GameSession session = newGame(new GameConfig(), seed);
+        try (JournalWriter writer = new JournalWriter(file, session))
+        {
+            int[] index = { 0 };
+            session.setCommandLog((packed, delta) -> writer.record(packed, index[0]++ == tamper ? delta + 1 : delta));
+            if (restart)
+            {
+                session.execute(Command.SCORE.packed());
+                session.execute(Command.RESTART.packed());
+            }
+            if (finish)
+            {
+                playPlan(session);
+            }
+            else
+            {
+                session.execute(Command.DOWN.packed());
+                session.execute(Command.RIGHT.packed());
+            }
+        }
+        Check.that(session.isPlaying() != finish, file.getFileName() + " recorded " + (finish ? "to the end" : "unfinished"));
+        return session.getScore();
+    }
+
+    /*
+     * Play the solver's best plan to the end of the game
+     */
+    private static void playPlan(GameSession session)
+    {
+        Solver solver = new Solver();
+        Check.that(solver.solve(session.getEngine()), "plan found");
+        for (int i = 0; i < solver.getPlanLength(); i++)
+            session.execute(solver.getPlanCommand(i));
+    }
+
+    private static GameSession newGame(GameConfig config, long seed)
+    {
+        GameEngine engine = new GameEngine(seed, null);
+        engine.setConfig(config);
+        GameSession session = new GameSession(engine, null);
+        session.newGame(seed);
+        return session;
+    }
+}
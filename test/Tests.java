@@ -0,0 +1,46 @@
+/**
+ * Runs the tests of the packed formats and searches the game stores and replays: plain mains with
+ * {@link Check} assertions, no test framework needed. From the project root:
+ * <pre>
+ * javac -d out *.java test/*.java
+ * java -Djava.awt.headless=true -cp out Tests
+ * </pre>
+ * The exit status is 1 if any test failed.
+ */
+public class Tests
+{
+    /** One test class's checks. */
+    interface Test
+    {
+        void run() throws Exception;
+    }
+
+    public static void main(String[] args)
+    {
+        int failed = 0;
+        failed += run("JournalTest", JournalTest::run);
+        failed += run("SolverTest", SolverTest::run);
+        failed += run("SubmissionVerifierTest", SubmissionVerifierTest::run);
+        System.out.println(Check.count() + " checks, " + failed + " failed");
+        if (failed > 0) System.exit(1);
+    }
+
+    /*
+     * Run one test class, reporting whether it passed; 1 if it failed, otherwise 0
+     */
+    private static int run(String name, Test test)
+    {
+        try
+        {
+            test.run();
+            System.out.println(name + ": ok");
+            return 0;
+        }
+        catch (Exception | AssertionError e)
+        {
+            System.out.println(name + ": FAILED " + e);
+            e.printStackTrace(System.out);
+            return 1;
+        }
+    }
+}